@@ -0,0 +1,100 @@
+/*
+ * Copyright 2015 Charles University in Prague
+ * Copyright 2015 Vojtech Horky
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.cuni.mff.d3s.spl.demo;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+
+import org.apache.commons.math3.stat.descriptive.moment.Mean;
+
+import cz.cuni.mff.d3s.spl.utils.StatisticsUtils;
+
+/** Microbenchmark of the bootstrap kernel used by distribution learning.
+ * 
+ * <p>
+ * Compares the original two-pass computation (bootstrap into a temporary
+ * array with {@link Random}, then commons-math mean) with the fused
+ * single-pass kernel {@link StatisticsUtils#bootstrapMean(double[], int, SplittableRandom)}.
+ * JMH is not among the dependencies, hence the simple harness: each
+ * variant first runs several untimed warm-up rounds (so that neither is
+ * measured before the JIT compiles it) and then the best of several
+ * timed rounds is reported.
+ * 
+ * <p>
+ * Usage: BootstrapBenchmark [sample count] [replicates per round]
+ */
+public class BootstrapBenchmark {
+	private static final int WARMUP_ROUNDS = 5;
+	private static final int ROUNDS = 10;
+	
+	private static double sink = 0;
+	
+	public static void main(String[] args) {
+		int sampleCount = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		int replicates = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+		
+		double[] samples = new double[sampleCount];
+		Random generator = new Random(0);
+		for (int i = 0; i < samples.length; i++) {
+			samples[i] = 100 + generator.nextGaussian();
+		}
+		
+		System.out.printf("Bootstrapping %d replicates of %d samples.%n", replicates, sampleCount);
+		double twoPass = measureTwoPass(samples, replicates);
+		double fused = measureFused(samples, replicates);
+		System.out.printf("two-pass: %10.2f ns/replicate%n", twoPass);
+		System.out.printf("fused:    %10.2f ns/replicate%n", fused);
+		System.out.printf("speedup:  %10.2fx%n", twoPass / fused);
+		if (sink == 42) {
+			System.out.println();
+		}
+	}
+	
+	private static double measureTwoPass(double[] samples, int replicates) {
+		Random rnd = new Random(0);
+		double[] tmp = new double[samples.length];
+		/* Keep the original commons-math mean as the baseline. */
+		Mean mean = new Mean();
+		long best = Long.MAX_VALUE;
+		for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+			long start = System.nanoTime();
+			for (int i = 0; i < replicates; i++) {
+				StatisticsUtils.bootstrap(samples, tmp, rnd);
+				sink += mean.evaluate(tmp);
+			}
+			if (round >= WARMUP_ROUNDS) {
+				best = Math.min(best, System.nanoTime() - start);
+			}
+		}
+		return (double) best / replicates;
+	}
+	
+	private static double measureFused(double[] samples, int replicates) {
+		SplittableRandom rnd = new SplittableRandom(0);
+		long best = Long.MAX_VALUE;
+		for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+			long start = System.nanoTime();
+			for (int i = 0; i < replicates; i++) {
+				sink += StatisticsUtils.bootstrapMean(samples, samples.length, rnd);
+			}
+			if (round >= WARMUP_ROUNDS) {
+				best = Math.min(best, System.nanoTime() - start);
+			}
+		}
+		return (double) best / replicates;
+	}
+}
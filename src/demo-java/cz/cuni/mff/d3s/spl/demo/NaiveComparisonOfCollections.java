@@ -56,7 +56,7 @@ public class NaiveComparisonOfCollections {
 			long start = System.nanoTime();
 			blackHole = collection.contains(obj);
 			long end = System.nanoTime();
-			data.addSamples(end - start);
+			data.addSample(end - start);
 		}
 		
 		public String getName() {
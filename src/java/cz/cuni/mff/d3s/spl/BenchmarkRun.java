@@ -16,6 +16,9 @@
  */
 package cz.cuni.mff.d3s.spl;
 
+import cz.cuni.mff.d3s.spl.data.QuantileSketch;
+import cz.cuni.mff.d3s.spl.data.StatisticsAccumulator;
+
 /** Represents data from a single benchmark run.
  *
  * Single benchmark run can produce several (thousands of) samples.
@@ -45,4 +48,32 @@ public interface BenchmarkRun {
 	 * greater or equal to sample count.
 	 */
 	double getSample(int index);
+	
+	/** Get summary statistics of all samples.
+	 * 
+	 * <p>
+	 * The default implementation goes through all the samples on every
+	 * call. Immutable runs are expected to override it and compute the
+	 * statistics only once, thus calling this method repeatedly shall be cheap.
+	 * The returned object must not be modified by the caller.
+	 * 
+	 * @return Statistics of the samples in this run.
+	 */
+	default SampleStatistics getStatistics() {
+		return new StatisticsAccumulator().addSamples(this);
+	}
+	
+	/** Get quantile sketch of all samples.
+	 * 
+	 * <p>
+	 * As with {@link #getStatistics()}, the default implementation goes
+	 * through all the samples on every call and immutable runs are
+	 * expected to override it and compute the sketch only once.
+	 * The returned object must not be modified by the caller.
+	 * 
+	 * @return Sketch of the samples in this run with default accuracy.
+	 */
+	default QuantileSketch getQuantileSketch() {
+		return new QuantileSketch().addSamples(this);
+	}
 }
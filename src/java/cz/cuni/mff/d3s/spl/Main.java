@@ -2,10 +2,15 @@ package cz.cuni.mff.d3s.spl;
 
 
 import cz.cuni.mff.d3s.spl.data.Revision;
+import cz.cuni.mff.d3s.spl.data.readers.BinaryRevisionReader;
+import cz.cuni.mff.d3s.spl.data.readers.CachingRevisionReader;
 import cz.cuni.mff.d3s.spl.data.readers.JmhJsonRevisionReader;
+import cz.cuni.mff.d3s.spl.data.readers.RevisionReader;
 import cz.cuni.mff.d3s.spl.data.readers.StructuredDataReader;
 import cz.cuni.mff.d3s.spl.formula.SplFormula;
+import cz.cuni.mff.d3s.spl.interpretation.CachingInterpretation;
 import cz.cuni.mff.d3s.spl.interpretation.WelchTestInterpretation;
+import cz.cuni.mff.d3s.spl.utils.Factory;
 import org.apache.commons.cli.*;
 
 import java.io.*;
@@ -14,6 +19,10 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 
 public class Main {
@@ -32,6 +41,9 @@ public class Main {
 			String dataDir = line.getOptionValue("data-dir");
 			String revisionMapping = line.getOptionValue("revision-mapping");
 			boolean printUnknownOnly = line.hasOption("print-unknown");
+			int threads = getThreadCount(line.getOptionValue("threads"));
+			boolean binaryData = line.hasOption("binary");
+			File cacheDir = getCacheDir(line.getOptionValue("cache-dir"));
 
 			// Formulas are processed in order jar, file and command line.
 			// Latter options have higher priority and will override previous values.
@@ -44,72 +56,198 @@ public class Main {
 			// Get custom mapping of revisions form file.
 			Map<String, String> customRevisionMap = getCustomRevisionMapping(revisionMapping);
 
-			DataReader reader = new StructuredDataReader<>(new JmhJsonRevisionReader.RevisionFactory());
+			Factory<? extends RevisionReader> revisionFactory;
+			if (binaryData) {
+				revisionFactory = new BinaryRevisionReader.RevisionFactory();
+			} else if (cacheDir != null) {
+				// Binary files are read directly, only parsed formats are cached.
+				revisionFactory = new CachingRevisionReader.RevisionFactory(
+						new JmhJsonRevisionReader.RevisionFactory(), cacheDir);
+			} else {
+				revisionFactory = new JmhJsonRevisionReader.RevisionFactory();
+			}
+			// Read only revisions the formulas can refer to, parsing each of them
+			// when its data are first used (uncached ones are parsed up front and
+			// fill the cache). Other revisions are opened only when their benchmarks
+			// are reported (unknown versions or no formulas at all).
+			Set<String> plannedRevisions = planRevisions(formulas, customRevisionMap);
+			StructuredDataReader<?> reader = createDataReader(revisionFactory, threads);
+			reader.setRevisionFilter(plannedRevisions);
+			reader.setListSkippedBenchmarks(printUnknownOnly || plannedRevisions.isEmpty());
+			reader.setLazy(true);
 			Map<String, List<Revision>> data = reader.readData(new String[] {dataDir});
 
-			for (Map.Entry<String, List<Revision>> benchmarkItem : data.entrySet()) {
-				String benchmarkName = benchmarkItem.getKey();
-				String formulaString = null;
-
-				// Wildcard method identifier for all methods
-				if (formulas.containsKey("*")) {
-					formulaString = formulas.get("*");
+			if (threads > 1) {
+				evaluateInParallel(data, formulas, customRevisionMap, printUnknownOnly, threads);
+			} else {
+				for (Map.Entry<String, List<Revision>> benchmarkItem : data.entrySet()) {
+					System.out.print(evaluateBenchmark(benchmarkItem.getKey(), benchmarkItem.getValue(),
+							formulas, customRevisionMap, printUnknownOnly));
 				}
+			}
+		} catch (ParseException e) {
+			// oops, something went wrong
+			System.err.println("Parsing failed. Reason: " + e.getMessage());
+			printHelp(options);
+		} catch (DataReader.ReaderException e) {
+			System.err.println("Cannot read measured data. Reason: " + e.getMessage());
+		} catch (IllegalStateException e) {
+			// lazily loaded data could not be read
+			if (!(e.getCause() instanceof DataReader.ReaderException)) {
+				throw e;
+			}
+			System.err.println("Cannot read measured data. Reason: " + e.getCause().getMessage());
+		}
+	}
 
-				// Method fully qualified name without additional params
-				String benchmarkBasename = benchmarkName.substring(0, benchmarkName.indexOf('@'));
-				if (formulas.containsKey(benchmarkBasename)) {
-					formulaString = formulas.get(benchmarkBasename);
-				}
+	private static int getThreadCount(String threadsOption) throws ParseException {
+		if (threadsOption == null) {
+			return 1;
+		}
+		try {
+			int threads = Integer.parseInt(threadsOption);
+			if (threads < 1) {
+				throw new ParseException("Number of threads must be positive.");
+			}
+			return threads;
+		} catch (NumberFormatException e) {
+			throw new ParseException("Invalid number of threads: " + threadsOption);
+		}
+	}
 
-				// Method fully qualified name including additional info like measurement mode or execution params
-				if (formulas.containsKey(benchmarkName)) {
-					formulaString = formulas.get(benchmarkName);
-				}
+	private static File getCacheDir(String cacheDirOption) throws ParseException {
+		if (cacheDirOption == null) {
+			return null;
+		}
+		File cacheDir = new File(cacheDirOption);
+		cacheDir.mkdirs();
+		if (!cacheDir.isDirectory()) {
+			throw new ParseException("Cannot use cache directory " + cacheDirOption);
+		}
+		return cacheDir;
+	}
+
+	private static <T extends RevisionReader> StructuredDataReader<T> createDataReader(Factory<T> revisionFactory,
+			int threads) {
+		return new StructuredDataReader<>(revisionFactory, threads, StructuredDataReader.DEFAULT_MEMORY_BUDGET);
+	}
 
-				if (formulaString == null) {
-					System.out.println("Skipping benchmark without formula: " + benchmarkItem.getKey());
-					continue;
+	/** Find revisions that can be referenced by the formulas.
+	 *
+	 * @return Names of revisions as used in formulas and their custom mapping.
+	 */
+	private static Set<String> planRevisions(Map<String, String> formulas, Map<String, String> customRevisionMap) {
+		Set<String> revisions = new HashSet<>();
+		for (String formulaString : new HashSet<>(formulas.values())) {
+			for (String variable : SplFormula.create(formulaString).getVariables()) {
+				revisions.add(variable);
+				if (customRevisionMap.containsKey(variable)) {
+					revisions.add(customRevisionMap.get(variable));
 				}
+			}
+		}
+		return revisions;
+	}
 
-				Formula formula = SplFormula.create(formulaString);
-				formula.setInterpretation(new WelchTestInterpretation());
-
-				// get benchmark's revisions in better format for us
-				Map<String, DataSource> revisionMap = getRevisionMap(benchmarkItem.getValue());
-				boolean isUnknown = false;
-				// Bind variables to formula (according to revisions collection)
-				for (String variable : formula.getVariables()) {
-					// try if there is real revision of that name
-					if (revisionMap.containsKey(variable)) {
-						formula.bind(variable, revisionMap.get(variable));
-					}
-					// else try to find another revision is custom mapping
-					else if (customRevisionMap.containsKey(variable)) {
-						formula.bind(variable, revisionMap.get(customRevisionMap.get(variable)));
-					}
-					// else there is no such revision
-					else {
-						System.out.printf("Benchmark: %s, formula: %s, unknown version: %s\n", benchmarkName,
-								formulaString, variable);
-						isUnknown = true;
+	/** Evaluate benchmarks on a work-stealing pool.
+	 *
+	 * Output of each benchmark is collected first and printed in the
+	 * same order as in sequential evaluation.
+	 */
+	private static void evaluateInParallel(Map<String, List<Revision>> data, final Map<String, String> formulas,
+			final Map<String, String> customRevisionMap, final boolean printUnknownOnly, int threads) {
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			List<Future<String>> outputs = new ArrayList<>(data.size());
+			for (final Map.Entry<String, List<Revision>> benchmarkItem : data.entrySet()) {
+				outputs.add(pool.submit(new Callable<String>() {
+					@Override
+					public String call() {
+						return evaluateBenchmark(benchmarkItem.getKey(), benchmarkItem.getValue(),
+								formulas, customRevisionMap, printUnknownOnly);
 					}
-				}
+				}));
+			}
+			for (Future<String> output : outputs) {
+				System.out.print(output.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Evaluation interrupted.", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new RuntimeException(cause);
+		} finally {
+			pool.shutdownNow();
+		}
+	}
 
-				// if we want only get missing versions, skip formula evaluating
-				// (or if there are some missing ones, evaluation make no sense)
-				if (!printUnknownOnly && !isUnknown) {
-					Result result = formula.evaluate(SIGNIFICANCE_LEVEL);
-					System.out.printf("Benchmark: %s, formula: %s, result: %s\n", benchmarkName, formulaString, result);
-				}
+	/** Evaluate formula of a single benchmark.
+	 *
+	 * @return Text to be printed for this benchmark.
+	 */
+	private static String evaluateBenchmark(String benchmarkName, List<Revision> revisions,
+			Map<String, String> formulas, Map<String, String> customRevisionMap, boolean printUnknownOnly) {
+		StringBuilder output = new StringBuilder();
+		String formulaString = null;
+
+		// Wildcard method identifier for all methods
+		if (formulas.containsKey("*")) {
+			formulaString = formulas.get("*");
+		}
+
+		// Method fully qualified name without additional params
+		String benchmarkBasename = benchmarkName.substring(0, benchmarkName.indexOf('@'));
+		if (formulas.containsKey(benchmarkBasename)) {
+			formulaString = formulas.get(benchmarkBasename);
+		}
+
+		// Method fully qualified name including additional info like measurement mode or execution params
+		if (formulas.containsKey(benchmarkName)) {
+			formulaString = formulas.get(benchmarkName);
+		}
+
+		if (formulaString == null) {
+			output.append("Skipping benchmark without formula: ").append(benchmarkName).append('\n');
+			return output.toString();
+		}
+
+		Formula formula = SplFormula.create(formulaString);
+		// Each formula has its own interpretation (formulas may be evaluated concurrently).
+		formula.setInterpretation(new CachingInterpretation(new WelchTestInterpretation()));
+
+		// get benchmark's revisions in better format for us
+		Map<String, DataSource> revisionMap = getRevisionMap(revisions);
+		boolean isUnknown = false;
+		// Bind variables to formula (according to revisions collection)
+		for (String variable : formula.getVariables()) {
+			// try if there is real revision of that name
+			if (revisionMap.containsKey(variable)) {
+				formula.bind(variable, revisionMap.get(variable));
 			}
-		} catch (ParseException e) {
-			// oops, something went wrong
-			System.err.println("Parsing failed. Reason: " + e.getMessage());
-			printHelp(options);
-		} catch (DataReader.ReaderException e) {
-			System.err.println("Cannot read measured data. Reason: " + e.getMessage());
+			// else try to find another revision is custom mapping
+			else if (customRevisionMap.containsKey(variable)) {
+				formula.bind(variable, revisionMap.get(customRevisionMap.get(variable)));
+			}
+			// else there is no such revision
+			else {
+				output.append(String.format("Benchmark: %s, formula: %s, unknown version: %s\n", benchmarkName,
+						formulaString, variable));
+				isUnknown = true;
+			}
+		}
+
+		// if we want only get missing versions, skip formula evaluating
+		// (or if there are some missing ones, evaluation make no sense)
+		if (!printUnknownOnly && !isUnknown) {
+			Result result = formula.evaluate(SIGNIFICANCE_LEVEL);
+			output.append(String.format("Benchmark: %s, formula: %s, result: %s\n", benchmarkName, formulaString, result));
 		}
+
+		return output.toString();
 	}
 
 	private static Map<String, DataSource> getRevisionMap(List<Revision> revisions) {
@@ -248,6 +386,28 @@ public class Main {
 				.build()
 		);
 
+		options.addOption(Option.builder("t")
+				.longOpt("threads")
+				.hasArg()
+				.argName("count")
+				.desc("Read and evaluate benchmarks in parallel using given number of threads.")
+				.build()
+		);
+
+		options.addOption(Option.builder("b")
+				.longOpt("binary")
+				.desc("Data directory contains files in the binary format instead of JMH JSON.")
+				.build()
+		);
+
+		options.addOption(Option.builder()
+				.longOpt("cache-dir")
+				.hasArg()
+				.argName("directory")
+				.desc("Keep parsed revisions in given directory and parse only new or changed files.")
+				.build()
+		);
+
 		return options;
 	}
 }
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2015 Charles University in Prague
+ * Copyright 2015 Vojtech Horky
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.cuni.mff.d3s.spl;
+
+/** Sufficient statistics of a set of samples.
+ * 
+ * <p>
+ * The values are enough to compute mean and variance of the samples and
+ * statistics of several sets can be combined without going through the
+ * individual samples again.
+ */
+public interface SampleStatistics {
+	/** Tell number of samples.
+	 * 
+	 * @return Number of samples.
+	 */
+	long getCount();
+	
+	/** Get sum of the samples.
+	 * 
+	 * @return Sum of all samples.
+	 */
+	double getSum();
+	
+	/** Get sum of squares of the samples.
+	 * 
+	 * @return Sum of squares of all samples.
+	 */
+	double getSumOfSquares();
+	
+	/** Get the smallest sample.
+	 * 
+	 * @return Minimum, NaN when there are no samples or it is not known.
+	 */
+	double getMin();
+	
+	/** Get the largest sample.
+	 * 
+	 * @return Maximum, NaN when there are no samples or it is not known.
+	 */
+	double getMax();
+	
+	/** Get arithmetic mean of the samples.
+	 * 
+	 * @return Arithmetic mean, NaN when there are no samples.
+	 */
+	double getMean();
+	
+	/** Get variance of the samples with bias correction.
+	 * 
+	 * @return Variance, zero for single sample and NaN when there are no samples.
+	 */
+	double getVariance();
+	
+	/** Get variance of the samples without bias correction.
+	 * 
+	 * @return Variance, NaN when there are no samples.
+	 */
+	double getVarianceN();
+}
@@ -16,43 +16,120 @@
  */
 package cz.cuni.mff.d3s.spl.data;
 
-import java.util.LinkedList;
-import java.util.List;
+import java.util.Arrays;
 
 import cz.cuni.mff.d3s.spl.BenchmarkRun;
 
 /** Helper class for creating immutable benchmark run.
+ *
+ * <p>
+ * Samples are stored in a growable primitive array. Created runs share
+ * this array with the builder (the builder only appends behind them),
+ * so creating a run does not copy the samples.
+ *
+ * <p>
+ * Optionally, iterations can be marked with {@link #startIteration()}.
  *
  */
 public class BenchmarkRunBuilder {
-	private final List<Double> samples = new LinkedList<>();
+	private static final int DEFAULT_CAPACITY = 16;
+	
+	private double[] samples;
+	private int size = 0;
+	private int[] iterationStarts = null;
+	private int iterationCount = 0;
 	
 	public BenchmarkRunBuilder() {
+		this(DEFAULT_CAPACITY);
+	}
+	
+	/** Create builder with preallocated storage.
+	 * 
+	 * @param expectedSampleCount How many samples are expected to be added.
+	 */
+	public BenchmarkRunBuilder(int expectedSampleCount) {
+		if (expectedSampleCount < 0) {
+			throw new IllegalArgumentException("Expected sample count cannot be negative");
+		}
+		samples = new double[expectedSampleCount];
 	}
 
 	public BenchmarkRun create() {
 		return create(0);
 	}
 
-	public BenchmarkRun create(int skip) {
-		return new ImmutableBenchmarkRun(samples, skip);
+	public synchronized BenchmarkRun create(int skip) {
+		if (iterationStarts == null) {
+			return ImmutableBenchmarkRun.wrap(samples, skip, size - skip);
+		}
+		int[] iterations = Arrays.copyOf(iterationStarts, iterationCount);
+		return ImmutableBenchmarkRun.wrap(samples, skip, size - skip,
+				BenchmarkRunUtils.skipIterationStarts(iterations, skip, size - skip));
 	}
 
-	public BenchmarkRun create(double skip) {
-		return new ImmutableBenchmarkRun(samples, (int) (samples.size() * skip));
+	public synchronized BenchmarkRun create(double skip) {
+		return create((int) (size * skip));
+	}
+	
+	/** Tells number of samples added so far.
+	 * 
+	 * @return Number of samples in the builder.
+	 */
+	public synchronized int getSampleCount() {
+		return size;
+	}
+	
+	/** Mark that following samples belong to a new iteration.
+	 * 
+	 * @return This builder.
+	 */
+	public synchronized BenchmarkRunBuilder startIteration() {
+		iterationStarts = BenchmarkRunUtils.appendIterationStart(iterationStarts, iterationCount, size);
+		iterationCount++;
+		return this;
 	}
 	
 	public synchronized BenchmarkRunBuilder addSamples(long... values) {
+		ensureCapacity(size + values.length);
 		for (long v : values) {
-			samples.add((double)v);
+			samples[size++] = v;
 		}
 		return this;
 	}
 
 	public synchronized BenchmarkRunBuilder addSamples(double... values) {
-		for (double v : values) {
-			samples.add(v);
-		}
+		return addSamples(values, 0, values.length);
+	}
+	
+	/** Add samples in bulk.
+	 * 
+	 * @param values Array with the samples.
+	 * @param offset Index of the first sample in the array to add.
+	 * @param length Number of samples to add.
+	 * @return This builder.
+	 */
+	public synchronized BenchmarkRunBuilder addSamples(double[] values, int offset, int length) {
+		ensureCapacity(size + length);
+		System.arraycopy(values, offset, samples, size, length);
+		size += length;
 		return this;
 	}
+	
+	private void ensureCapacity(int required) {
+		if (required < 0) {
+			throw new OutOfMemoryError("Too many samples in a single run");
+		}
+		if (required <= samples.length) {
+			return;
+		}
+		int newCapacity = Math.max(samples.length + (samples.length >> 1), DEFAULT_CAPACITY);
+		if ((newCapacity < required) || (newCapacity < 0)) {
+			newCapacity = required;
+		}
+		/*
+		 * Runs created so far keep the old array, which is never
+		 * written to again.
+		 */
+		samples = Arrays.copyOf(samples, newCapacity);
+	}
 }
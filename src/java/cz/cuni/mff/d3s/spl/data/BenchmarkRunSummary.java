@@ -16,42 +16,38 @@
  */
 package cz.cuni.mff.d3s.spl.data;
 
-import org.apache.commons.math3.stat.descriptive.moment.Mean;
-import org.apache.commons.math3.stat.descriptive.moment.Variance;
-
 import cz.cuni.mff.d3s.spl.BenchmarkRun;
+import cz.cuni.mff.d3s.spl.SampleStatistics;
 
 /** Statistical summary of a benchmark run.
  * 
  * <p>
  * This class aggregates the whole benchmark run into few values such as
- * mean, variance or number of data samples.
+ * mean, variance or number of data samples. Quantiles are estimated from
+ * a {@link QuantileSketch}, thus the summary takes only kilobytes even
+ * for runs with millions of samples.
  * 
  * <p>
- * This class is in essence immutable but it uses caching to improve
- * performance (hopefully).
- * Also, it makes copy of the original benchmark run and the changes in
+ * This class is immutable, the values are taken from the statistics
+ * of the run at the time of the construction and the changes in
  * the original run are not taken into account when user retrieves the values.
  */
 public class BenchmarkRunSummary {
-	private final double[] data;
-	private Double cacheMean = null;
-	private Double cacheVariance = null;
+	private final SampleStatistics statistics;
+	private final QuantileSketch sketch;
 	
 	/** Create a new summary from a benchmark run.
 	 * 
 	 * <p>
-	 * The data from the given run are copied and further changes to the
-	 * run are ignored when the statistical values are retrived. 
+	 * The statistics of the given run are retrieved and further changes
+	 * to the run are ignored when the statistical values are retrived. 
 	 * 
 	 * @param run Benchmark run from which to compute the summary.
 	 */
 	public BenchmarkRunSummary(BenchmarkRun run) {
 		synchronized (run) {
-			data = new double[run.getSampleCount()];
-			for (int i = 0; i < data.length; i++) {
-				data[i] = run.getSample(i);
-			}
+			statistics = run.getStatistics();
+			sketch = run.getQuantileSketch();
 		}
 	}
 	
@@ -59,24 +55,16 @@ public class BenchmarkRunSummary {
 	 * 
 	 * @return Arithmetic mean of the data in the original benchmark run.
 	 */
-	public synchronized double getMean() {
-		if (cacheMean == null) {
-			Mean mean = new Mean();
-			cacheMean = mean.evaluate(data);
-		}
-		return cacheMean;
+	public double getMean() {
+		return statistics.getMean();
 	}
 	
 	/** Compute variance of the samples.
 	 * 
 	 * @return Variance of the data in the original benchmark run.
 	 */
-	public synchronized double getVariance() {
-		if (cacheVariance == null) {
-			Variance mean = new Variance();
-			cacheVariance = mean.evaluate(data);
-		}
-		return cacheVariance;
+	public double getVariance() {
+		return statistics.getVariance();
 	}
 	
 	/** Tell number of data samples.
@@ -84,6 +72,27 @@ public class BenchmarkRunSummary {
 	 * @return Number of samples in the original benchmark run.
 	 */
 	public long getSize() {
-		return data.length;
+		return statistics.getCount();
+	}
+	
+	/** Estimate quantile of the samples.
+	 * 
+	 * @param quantile Quantile to estimate (between 0 and 1).
+	 * @return Quantile of the data in the original benchmark run
+	 * (within relative accuracy of the sketch).
+	 */
+	public double getQuantile(double quantile) {
+		return sketch.getQuantile(quantile);
+	}
+	
+	/** Get quantile sketch of the samples.
+	 * 
+	 * <p>
+	 * Sketches of several runs can be merged.
+	 * 
+	 * @return Copy of the sketch of the original benchmark run.
+	 */
+	public QuantileSketch getQuantileSketch() {
+		return new QuantileSketch(sketch);
 	}
 }
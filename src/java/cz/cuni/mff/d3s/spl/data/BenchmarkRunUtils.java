@@ -17,10 +17,11 @@
 package cz.cuni.mff.d3s.spl.data;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 
 import cz.cuni.mff.d3s.spl.BenchmarkRun;
-import cz.cuni.mff.d3s.spl.utils.StatisticsUtils;
 
 /** Helper methods for working with the BenchmarkRun interface.
  */
@@ -45,7 +46,7 @@ public class BenchmarkRunUtils  {
 		/** {@inheritDoc} */
 		@Override
 		public double reduce(BenchmarkRun run) {
-			return StatisticsUtils.mean(toDoubleArray(run));
+			return run.getStatistics().getMean();
 		}		
 	}
 	
@@ -54,7 +55,7 @@ public class BenchmarkRunUtils  {
 		/** {@inheritDoc} */
 		@Override
 		public double reduce(BenchmarkRun run) {
-			return StatisticsUtils.variance(toDoubleArray(run));
+			return run.getStatistics().getVariance();
 		}		
 	}
 	
@@ -63,7 +64,7 @@ public class BenchmarkRunUtils  {
 		/** {@inheritDoc} */
 		@Override
 		public double reduce(BenchmarkRun run) {
-			return StatisticsUtils.varianceN(toDoubleArray(run));
+			return run.getStatistics().getVarianceN();
 		}		
 	}
 	
@@ -73,6 +74,16 @@ public class BenchmarkRunUtils  {
 	 * @return Array of doubles - samples in the run.
 	 */
 	public static double[] toDoubleArray(BenchmarkRun run) {
+		if (run instanceof ImmutableBenchmarkRun) {
+			double[] result = new double[run.getSampleCount()];
+			((ImmutableBenchmarkRun) run).copySamples(result, 0);
+			return result;
+		}
+		if (run instanceof DoubleBufferBenchmarkRun) {
+			double[] result = new double[run.getSampleCount()];
+			((DoubleBufferBenchmarkRun) run).copySamples(result, 0);
+			return result;
+		}
 		synchronized (run) {
 			double[] result = new double[run.getSampleCount()];
 			for (int i = 0; i < result.length; i++) {
@@ -82,6 +93,42 @@ public class BenchmarkRunUtils  {
 		}
 	}
 	
+	/** Skip samples from the beginning of a run (e.g. a warm-up).
+	 * 
+	 * <p>
+	 * Immutable runs are not copied, the result shares their samples.
+	 * Histogram runs stay histograms.
+	 * 
+	 * @param run Benchmark run to trim.
+	 * @param count Number of samples to skip.
+	 * @return Run without the first samples.
+	 */
+	public static BenchmarkRun skip(BenchmarkRun run, int count) {
+		if (run instanceof ImmutableBenchmarkRun) {
+			return ((ImmutableBenchmarkRun) run).skip(count);
+		}
+		if (run instanceof HistogramBenchmarkRun) {
+			return ((HistogramBenchmarkRun) run).skip(count);
+		}
+		if (run instanceof DoubleBufferBenchmarkRun) {
+			return ((DoubleBufferBenchmarkRun) run).skip(count);
+		}
+		if (run instanceof RingSnapshotRun) {
+			return ((RingSnapshotRun) run).skip(count);
+		}
+		return new ImmutableBenchmarkRun(run, count);
+	}
+	
+	/** Skip a fraction of samples from the beginning of a run.
+	 * 
+	 * @param run Benchmark run to trim.
+	 * @param fraction Fraction (between 0 and 1) of samples to skip.
+	 * @return Run without the first samples.
+	 */
+	public static BenchmarkRun skip(BenchmarkRun run, double fraction) {
+		return skip(run, (int) (run.getSampleCount() * fraction));
+	}
+	
 	/** Merge individual benchmark runs into a single one.
 	 * 
 	 * <p>
@@ -92,19 +139,179 @@ public class BenchmarkRunUtils  {
 	 * @return Merged run.
 	 */
 	public static BenchmarkRun merge(Iterable<BenchmarkRun> runs) {
-		BenchmarkRunBuilder builder = new BenchmarkRunBuilder();
-		
+		return ImmutableBenchmarkRun.wrap(toDoubleArray(runs));
+	}
+	
+	/** Concatenate samples of individual runs into a single array.
+	 * 
+	 * <p>
+	 * The sample ordering is the same as in {@link #merge(Iterable)}.
+	 * 
+	 * @param runs Individual runs to concatenate.
+	 * @return Array with samples from all runs.
+	 */
+	public static double[] toDoubleArray(Iterable<BenchmarkRun> runs) {
 		synchronized (runs) {
+			long totalCount = 0;
 			for (BenchmarkRun r : runs) {
-				synchronized (r) {
-					for (double l : r.getSamples()) {
-						builder.addSamples(l);
+				totalCount += r.getSampleCount();
+			}
+			if (totalCount > Integer.MAX_VALUE) {
+				throw new IllegalArgumentException("Too many samples to fit into an array");
+			}
+			
+			double[] result = new double[(int) totalCount];
+			int index = 0;
+			for (BenchmarkRun r : runs) {
+				if (r instanceof ImmutableBenchmarkRun) {
+					((ImmutableBenchmarkRun) r).copySamples(result, index);
+					index += r.getSampleCount();
+				} else if (r instanceof DoubleBufferBenchmarkRun) {
+					((DoubleBufferBenchmarkRun) r).copySamples(result, index);
+					index += r.getSampleCount();
+				} else {
+					synchronized (r) {
+						int count = r.getSampleCount();
+						for (int i = 0; i < count; i++) {
+							result[index++] = r.getSample(i);
+						}
 					}
 				}
 			}
+			
+			return result;
+		}
+	}
+	
+	/** Merge samples of individual runs into a sorted histogram.
+	 * 
+	 * <p>
+	 * Histogram runs are merged bucket by bucket, other runs are sorted
+	 * and equal samples are counted. Order of samples is lost, the result
+	 * has distinct values in increasing order.
+	 * 
+	 * @param runs Individual runs to merge.
+	 * @return Sorted histogram of all samples.
+	 */
+	public static HistogramBenchmarkRun toSortedHistogram(Iterable<BenchmarkRun> runs) {
+		List<BenchmarkRun> plainRuns = new ArrayList<>();
+		HistogramBenchmarkRunBuilder builder = new HistogramBenchmarkRunBuilder();
+		synchronized (runs) {
+			for (BenchmarkRun r : runs) {
+				if (r instanceof HistogramBenchmarkRun) {
+					builder.addRun(r);
+				} else {
+					plainRuns.add(r);
+				}
+			}
 		}
 		
-		return builder.create();
+		double[] samples = toDoubleArray(plainRuns);
+		Arrays.sort(samples);
+		for (double sample : samples) {
+			builder.addSamples(sample, 1);
+		}
+		
+		return builder.create().sorted();
+	}
+	
+	/** Compute statistics of all samples of given runs.
+	 * 
+	 * <p>
+	 * The result is the same as for a merged run (see
+	 * {@link #merge(Iterable)}) but no intermediate run is created.
+	 * Only the (typically cached) statistics of individual runs are
+	 * combined, thus the complexity is linear in the number of runs.
+	 * 
+	 * @param runs Runs to compute the statistics from.
+	 * @return Statistics of all the samples.
+	 */
+	public static StatisticsAccumulator accumulate(Iterable<BenchmarkRun> runs) {
+		return new StatisticsAccumulator().addAll(runs);
+	}
+	
+	/** Merge quantile sketches of all given runs.
+	 * 
+	 * @param runs Benchmark runs to sketch.
+	 * @return Sketch of all samples of all runs.
+	 */
+	public static QuantileSketch sketch(Iterable<BenchmarkRun> runs) {
+		QuantileSketch result = new QuantileSketch();
+		synchronized (runs) {
+			for (BenchmarkRun run : runs) {
+				result.add(run.getQuantileSketch());
+			}
+		}
+		return result;
+	}
+	
+	/** Tell where iterations of a run start.
+	 * 
+	 * @param run Benchmark run.
+	 * @return Indices of the first samples of the iterations,
+	 * null when the run does not know its iterations.
+	 */
+	public static int[] getIterationStarts(BenchmarkRun run) {
+		if (run instanceof ImmutableBenchmarkRun) {
+			return ((ImmutableBenchmarkRun) run).getIterationStarts();
+		}
+		if (run instanceof HistogramBenchmarkRun) {
+			return ((HistogramBenchmarkRun) run).getIterationStarts();
+		}
+		if (run instanceof DoubleBufferBenchmarkRun) {
+			return ((DoubleBufferBenchmarkRun) run).getIterationStarts();
+		}
+		return null;
+	}
+	
+	/** Compute iteration starts after skipping samples from the beginning.
+	 * 
+	 * <p>
+	 * The partially skipped iteration starts at zero in the result.
+	 * 
+	 * @param starts Original iteration starts (might be null).
+	 * @param skip Number of skipped samples.
+	 * @param remaining Number of samples after skipping.
+	 * @return New iteration starts, null when original were null.
+	 */
+	static int[] skipIterationStarts(int[] starts, int skip, int remaining) {
+		if ((starts == null) || (skip == 0)) {
+			return starts;
+		}
+		if (remaining == 0) {
+			return new int[0];
+		}
+		int first = 0;
+		while ((first < starts.length) && (starts[first] <= skip)) {
+			first++;
+		}
+		boolean partial = first > 0;
+		int[] result = new int[starts.length - first + (partial ? 1 : 0)];
+		int index = 0;
+		if (partial) {
+			result[index++] = 0;
+		}
+		for (int i = first; i < starts.length; i++) {
+			result[index++] = starts[i] - skip;
+		}
+		return result;
+	}
+	
+	/** Append iteration start to a growable array.
+	 * 
+	 * @param starts Current array (might be null).
+	 * @param count Number of used items in the array.
+	 * @param start Iteration start to append.
+	 * @return Array with the start appended (might be the same array).
+	 */
+	static int[] appendIterationStart(int[] starts, int count, int start) {
+		if (starts == null) {
+			starts = new int[4];
+		} else if (count == starts.length) {
+			starts = Arrays.copyOf(starts, count + (count >> 1) + 1);
+		}
+		starts[count] = start;
+		return starts;
 	}
 	
 	/** Reducer for mean computation from a benchmark run. */
@@ -137,8 +344,8 @@ public class BenchmarkRunUtils  {
 	
 	public static BenchmarkRun transform(final BenchmarkRun run, Transformer transformer) {
 		BenchmarkRunBuilder builder = new BenchmarkRunBuilder();
-		for (long sample : run.getSamples()) {
-			builder.addSamples(transformer.apply(sample));
+		for (double sample : run.getSamples()) {
+			builder.addSamples(transformer.apply((long) sample));
 		}
 		return builder.create();
 	}
@@ -17,7 +17,6 @@
 package cz.cuni.mff.d3s.spl.data;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
 
 import cz.cuni.mff.d3s.spl.BenchmarkRun;
@@ -28,41 +27,61 @@ import cz.cuni.mff.d3s.spl.DataSnapshot;
  *
  */
 public class DataSnapshotBuilder {
-	private List<BenchmarkRun> runs = new LinkedList<>();
+	private List<BenchmarkRun> runs = new ArrayList<>();
 	private DataSnapshot prevEpoch = null;
+	private DataSnapshot cacheSnapshot = null;
 		
 	public DataSnapshotBuilder() {
 	}
 	
+	/** Create snapshot of all runs.
+	 * 
+	 * <p>
+	 * As long as the builder is not modified, the same snapshot object is
+	 * returned (this allows to cache results computed from the snapshot).
+	 * 
+	 * @return Snapshot with all runs added so far.
+	 */
 	public synchronized DataSnapshot create() {
-		return create(runs, prevEpoch);
+		if (cacheSnapshot == null) {
+			cacheSnapshot = create(runs, prevEpoch);
+		}
+		return cacheSnapshot;
 	}
 
 	public synchronized DataSnapshot create(int skip) {
 		// skip 'skip' elements from the beginning
-		List<BenchmarkRun> skippedRuns = new LinkedList<>();
+		List<BenchmarkRun> skippedRuns = new ArrayList<>(runs.size());
 		for (BenchmarkRun run : runs) {
-			skippedRuns.add(new ImmutableBenchmarkRun(run, skip));
+			skippedRuns.add(BenchmarkRunUtils.skip(run, skip));
 		}
 		return create(skippedRuns, prevEpoch);
 	}
 
 	public synchronized DataSnapshot create(double skip) {
 		// skip 'skip' percent of elements from the beginning
-		List<BenchmarkRun> skippedRuns = new LinkedList<>();
+		List<BenchmarkRun> skippedRuns = new ArrayList<>(runs.size());
 		for (BenchmarkRun run : runs) {
-			skippedRuns.add(new ImmutableBenchmarkRun(run, (int) (run.getSampleCount() * skip)));
+			skippedRuns.add(BenchmarkRunUtils.skip(run, skip));
 		}
 		return create(skippedRuns, prevEpoch);
 	}
 	
 	public synchronized DataSnapshotBuilder setPreviousEpoch(DataSnapshot snapshot) {
 		prevEpoch = snapshot;
+		cacheSnapshot = null;
 		return this;
 	}
 	
 	public synchronized DataSnapshotBuilder addRun(BenchmarkRun run) {
-		runs.add(new ImmutableBenchmarkRun(run));
+		if ((run instanceof ImmutableBenchmarkRun) || (run instanceof HistogramBenchmarkRun)
+				|| (run instanceof DoubleBufferBenchmarkRun) || (run instanceof RingSnapshotRun)) {
+			/* No need to copy data that cannot change. */
+			runs.add(run);
+		} else {
+			runs.add(new ImmutableBenchmarkRun(run));
+		}
+		cacheSnapshot = null;
 		return this;
 	}
 
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2015 Charles University in Prague
+ * Copyright 2015 Vojtech Horky
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.cuni.mff.d3s.spl.data;
+
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import cz.cuni.mff.d3s.spl.BenchmarkRun;
+import cz.cuni.mff.d3s.spl.SampleStatistics;
+
+/** Immutable benchmark run over a buffer of doubles.
+ *
+ * <p>
+ * Intended for samples in a memory-mapped file: the samples are read
+ * directly from the buffer, nothing is copied to the heap. The buffer
+ * content must never change.
+ *
+ * <p>
+ * Optionally, the run knows where individual iterations start, see
+ * {@link #getIterationStarts()}.
+ */
+public class DoubleBufferBenchmarkRun implements BenchmarkRun {
+	private final DoubleBuffer samples;
+	private final int[] iterationStarts;
+	private StatisticsAccumulator cacheStatistics = null;
+	private QuantileSketch cacheSketch = null;
+	
+	/** Create run over remaining content of a buffer.
+	 * 
+	 * @param buffer Buffer with the samples (between position and limit).
+	 */
+	public DoubleBufferBenchmarkRun(DoubleBuffer buffer) {
+		this(buffer, null);
+	}
+	
+	/** Create run over remaining content of a buffer with known iterations.
+	 * 
+	 * @param buffer Buffer with the samples (between position and limit).
+	 * @param iterationStarts Indices of the first samples of the iterations,
+	 * null when not known.
+	 */
+	public DoubleBufferBenchmarkRun(DoubleBuffer buffer, int[] iterationStarts) {
+		samples = buffer.slice().asReadOnlyBuffer();
+		this.iterationStarts = iterationStarts == null ? null : Arrays.copyOf(iterationStarts, iterationStarts.length);
+	}
+	
+	/** Get view of this run without the first samples.
+	 * 
+	 * @param count Number of samples to skip from the beginning.
+	 * @return Run with the remaining samples (sharing the buffer).
+	 * @throws IndexOutOfBoundsException When count is negative or greater
+	 * than sample count.
+	 */
+	public DoubleBufferBenchmarkRun skip(int count) {
+		if ((count < 0) || (count > samples.limit())) {
+			throw new IndexOutOfBoundsException(String.format(
+					"Cannot skip %d of %d samples.", count, samples.limit()));
+		}
+		if (count == 0) {
+			return this;
+		}
+		DoubleBuffer rest = samples.duplicate();
+		rest.position(count);
+		return new DoubleBufferBenchmarkRun(rest,
+				BenchmarkRunUtils.skipIterationStarts(iterationStarts, count, samples.limit() - count));
+	}
+	
+	/** Tell where individual iterations start.
+	 * 
+	 * @return Indices of the first samples of the iterations,
+	 * null when iterations are not known.
+	 */
+	public int[] getIterationStarts() {
+		return iterationStarts == null ? null : Arrays.copyOf(iterationStarts, iterationStarts.length);
+	}
+
+	@Override
+	public Iterable<Double> getSamples() {
+		return new Iterable<Double>() {
+			@Override
+			public Iterator<Double> iterator() {
+				return new Iterator<Double>() {
+					private int index = 0;
+					
+					@Override
+					public boolean hasNext() {
+						return index < samples.limit();
+					}
+
+					@Override
+					public Double next() {
+						if (!hasNext()) {
+							throw new NoSuchElementException();
+						}
+						return samples.get(index++);
+					}
+
+					@Override
+					public void remove() {
+						throw new UnsupportedOperationException("Samples are immutable.");
+					}
+				};
+			}
+		};
+	}
+
+	@Override
+	public int getSampleCount() {
+		return samples.limit();
+	}
+
+	@Override
+	public double getSample(int index) {
+		if ((index < 0) || (index >= samples.limit())) {
+			throw new IndexOutOfBoundsException(String.format(
+					"Index %d outside of %d samples.", index, samples.limit()));
+		}
+		return samples.get(index);
+	}
+	
+	/** {@inheritDoc} */
+	@Override
+	public synchronized SampleStatistics getStatistics() {
+		if (cacheStatistics == null) {
+			StatisticsAccumulator statistics = new StatisticsAccumulator();
+			for (int i = 0; i < samples.limit(); i++) {
+				statistics.add(samples.get(i));
+			}
+			cacheStatistics = statistics;
+		}
+		return cacheStatistics;
+	}
+	
+	/** {@inheritDoc} */
+	@Override
+	public synchronized QuantileSketch getQuantileSketch() {
+		if (cacheSketch == null) {
+			QuantileSketch sketch = new QuantileSketch();
+			for (int i = 0; i < samples.limit(); i++) {
+				sketch.add(samples.get(i));
+			}
+			cacheSketch = sketch;
+		}
+		return cacheSketch;
+	}
+	
+	/** Copy all samples into given array.
+	 * 
+	 * @param dest Destination array.
+	 * @param destIndex Where to start storing the samples.
+	 */
+	public void copySamples(double[] dest, int destIndex) {
+		samples.duplicate().get(dest, destIndex, samples.limit());
+	}
+}
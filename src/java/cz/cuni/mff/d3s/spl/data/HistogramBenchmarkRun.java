@@ -0,0 +1,310 @@
+/*
+ * Copyright 2015 Charles University in Prague
+ * Copyright 2015 Vojtech Horky
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.cuni.mff.d3s.spl.data;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.SplittableRandom;
+
+import cz.cuni.mff.d3s.spl.BenchmarkRun;
+import cz.cuni.mff.d3s.spl.SampleStatistics;
+import cz.cuni.mff.d3s.spl.utils.StatisticsUtils;
+
+/** Immutable benchmark run stored as a histogram.
+ *
+ * <p>
+ * The run consists of buckets, each bucket is a value and a number of
+ * samples with that value (e.g. JMH rawDataHistogram). The samples are
+ * never expanded: individual samples are located by a binary search over
+ * cumulative counts and statistics are computed from the weights.
+ *
+ * <p>
+ * The order of the samples is given by the order of the buckets.
+ * Optionally, the run knows where individual iterations start, see
+ * {@link #getIterationStarts()}.
+ */
+public class HistogramBenchmarkRun implements BenchmarkRun {
+	private final double[] values;
+	private final long[] cumulativeCounts;
+	private final int[] iterationStarts;
+	private StatisticsAccumulator cacheStatistics = null;
+	private QuantileSketch cacheSketch = null;
+
+	/** Create run from buckets.
+	 * 
+	 * @param values Values of the buckets.
+	 * @param counts Number of samples in each bucket.
+	 * @throws IllegalArgumentException When there are fewer counts than values, a count
+	 * is negative or there are too many samples.
+	 */
+	public HistogramBenchmarkRun(double[] values, long[] counts) {
+		this(values, counts, values.length, null);
+	}
+	
+	/** Create run from buckets with known iterations.
+	 * 
+	 * @param values Values of the buckets.
+	 * @param counts Number of samples in each bucket.
+	 * @param iterationStarts Indices of the first samples of the iterations,
+	 * null when not known.
+	 * @throws IllegalArgumentException When there are fewer counts than values, a count
+	 * is negative or there are too many samples.
+	 */
+	public HistogramBenchmarkRun(double[] values, long[] counts, int[] iterationStarts) {
+		this(values, counts, values.length,
+				iterationStarts == null ? null : Arrays.copyOf(iterationStarts, iterationStarts.length));
+	}
+	
+	HistogramBenchmarkRun(double[] values, long[] counts, int bucketCount, int[] iterations) {
+		if ((counts.length < bucketCount) || (values.length < bucketCount)) {
+			throw new IllegalArgumentException("Fewer values or counts than buckets");
+		}
+		this.values = Arrays.copyOf(values, bucketCount);
+		cumulativeCounts = new long[bucketCount];
+		long total = 0;
+		for (int i = 0; i < bucketCount; i++) {
+			if (counts[i] < 0) {
+				throw new IllegalArgumentException("Bucket count cannot be negative");
+			}
+			total += counts[i];
+			cumulativeCounts[i] = total;
+		}
+		if (total > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Too many samples in a single run");
+		}
+		iterationStarts = iterations;
+	}
+	
+	/** Tell number of buckets.
+	 * 
+	 * @return Number of (value, count) pairs.
+	 */
+	public int getBucketCount() {
+		return values.length;
+	}
+	
+	/** Get value of a bucket.
+	 * 
+	 * @param bucket Bucket index.
+	 * @return Value of all samples in the bucket.
+	 */
+	public double getBucketValue(int bucket) {
+		return values[bucket];
+	}
+	
+	/** Get number of samples in a bucket.
+	 * 
+	 * @param bucket Bucket index.
+	 * @return Sample count of the bucket.
+	 */
+	public long getBucketSampleCount(int bucket) {
+		return cumulativeCounts[bucket] - (bucket == 0 ? 0 : cumulativeCounts[bucket - 1]);
+	}
+	
+	/** Get view of this run without the first samples.
+	 * 
+	 * @param count Number of samples to skip from the beginning.
+	 * @return Run with the remaining samples.
+	 * @throws IndexOutOfBoundsException When count is negative or greater
+	 * than sample count.
+	 */
+	public HistogramBenchmarkRun skip(int count) {
+		int sampleCount = getSampleCount();
+		if ((count < 0) || (count > sampleCount)) {
+			throw new IndexOutOfBoundsException(String.format(
+					"Cannot skip %d of %d samples.", count, sampleCount));
+		}
+		if (count == 0) {
+			return this;
+		}
+		int[] iterations = BenchmarkRunUtils.skipIterationStarts(iterationStarts, count, sampleCount - count);
+		if (count == sampleCount) {
+			return new HistogramBenchmarkRun(new double[0], new long[0], 0, iterations);
+		}
+		
+		int first = findBucket(count);
+		int bucketCount = values.length - first;
+		long[] counts = new long[bucketCount];
+		for (int i = 0; i < bucketCount; i++) {
+			counts[i] = getBucketSampleCount(first + i);
+		}
+		counts[0] = cumulativeCounts[first] - count;
+		
+		return new HistogramBenchmarkRun(Arrays.copyOfRange(values, first, values.length), counts,
+				bucketCount, iterations);
+	}
+	
+	/** Tell where individual iterations start.
+	 * 
+	 * @return Indices of the first samples of the iterations,
+	 * null when iterations are not known.
+	 */
+	public int[] getIterationStarts() {
+		return iterationStarts == null ? null : Arrays.copyOf(iterationStarts, iterationStarts.length);
+	}
+	
+	/** Get run with the same samples ordered by value.
+	 * 
+	 * <p>
+	 * Buckets with the same value are merged, thus the result has
+	 * distinct values in increasing order. Iterations are forgotten.
+	 * 
+	 * @return Sorted run (this run when it is already sorted).
+	 */
+	public HistogramBenchmarkRun sorted() {
+		boolean isSorted = true;
+		for (int i = 1; i < values.length; i++) {
+			if (Double.compare(values[i - 1], values[i]) >= 0) {
+				isSorted = false;
+				break;
+			}
+		}
+		if (isSorted) {
+			return this;
+		}
+		
+		Integer[] order = new Integer[values.length];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return Double.compare(values[a], values[b]);
+			}
+		});
+		
+		HistogramBenchmarkRunBuilder builder = new HistogramBenchmarkRunBuilder();
+		for (int i : order) {
+			builder.addSamples(values[i], getBucketSampleCount(i));
+		}
+		return builder.create();
+	}
+	
+	/** Fill array with samples randomly selected (with repetition) from this run.
+	 * 
+	 * <p>
+	 * Each sample has the same probability, i.e. buckets are selected
+	 * with probability proportional to their counts.
+	 * 
+	 * @param dest Array where to store the bootstrapped values.
+	 * @param rnd Random number generator to use.
+	 */
+	public void bootstrap(double[] dest, Random rnd) {
+		StatisticsUtils.bootstrap(values, cumulativeCounts, dest, rnd);
+	}
+	
+	/** Compute mean of a bootstrapped sample of the same size as this run.
+	 * 
+	 * <p>
+	 * The bootstrapped samples are never stored, see
+	 * {@link StatisticsUtils#bootstrapMean(double[], long[], int, SplittableRandom)}.
+	 * 
+	 * @param rnd Random number generator to use.
+	 * @return Mean of the bootstrapped samples.
+	 */
+	public double bootstrapMean(SplittableRandom rnd) {
+		return StatisticsUtils.bootstrapMean(values, cumulativeCounts, getSampleCount(), rnd);
+	}
+	
+	@Override
+	public Iterable<Double> getSamples() {
+		return new Iterable<Double>() {
+			@Override
+			public Iterator<Double> iterator() {
+				return new Iterator<Double>() {
+					private int bucket = 0;
+					private long index = 0;
+					
+					@Override
+					public boolean hasNext() {
+						return index < getSampleCount();
+					}
+
+					@Override
+					public Double next() {
+						if (!hasNext()) {
+							throw new NoSuchElementException();
+						}
+						while (cumulativeCounts[bucket] <= index) {
+							bucket++;
+						}
+						index++;
+						return values[bucket];
+					}
+
+					@Override
+					public void remove() {
+						throw new UnsupportedOperationException("Samples are immutable.");
+					}
+				};
+			}
+		};
+	}
+
+	@Override
+	public int getSampleCount() {
+		return values.length == 0 ? 0 : (int) cumulativeCounts[values.length - 1];
+	}
+
+	@Override
+	public double getSample(int index) {
+		if ((index < 0) || (index >= getSampleCount())) {
+			throw new IndexOutOfBoundsException(String.format(
+					"Index %d outside of %d samples.", index, getSampleCount()));
+		}
+		return values[findBucket(index)];
+	}
+	
+	/** {@inheritDoc} */
+	@Override
+	public synchronized SampleStatistics getStatistics() {
+		if (cacheStatistics == null) {
+			StatisticsAccumulator statistics = new StatisticsAccumulator();
+			for (int i = 0; i < values.length; i++) {
+				statistics.add(values[i], getBucketSampleCount(i));
+			}
+			cacheStatistics = statistics;
+		}
+		return cacheStatistics;
+	}
+	
+	/** {@inheritDoc} */
+	@Override
+	public synchronized QuantileSketch getQuantileSketch() {
+		if (cacheSketch == null) {
+			QuantileSketch sketch = new QuantileSketch();
+			for (int i = 0; i < values.length; i++) {
+				sketch.add(values[i], getBucketSampleCount(i));
+			}
+			cacheSketch = sketch;
+		}
+		return cacheSketch;
+	}
+	
+	/** Find bucket containing given sample.
+	 * 
+	 * @param index Valid sample index.
+	 * @return Index of the bucket.
+	 */
+	private int findBucket(long index) {
+		return StatisticsUtils.findCumulativeIndex(cumulativeCounts, index);
+	}
+}
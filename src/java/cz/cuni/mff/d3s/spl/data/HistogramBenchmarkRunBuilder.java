@@ -0,0 +1,119 @@
+/*
+ * Copyright 2015 Charles University in Prague
+ * Copyright 2015 Vojtech Horky
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.cuni.mff.d3s.spl.data;
+
+import java.util.Arrays;
+
+import cz.cuni.mff.d3s.spl.BenchmarkRun;
+
+/** Helper class for creating histogram benchmark runs.
+ *
+ * <p>
+ * Consecutive samples with the same value are stored in a single bucket.
+ * Optionally, iterations can be marked with {@link #startIteration()}.
+ *
+ */
+public class HistogramBenchmarkRunBuilder {
+	private static final int DEFAULT_CAPACITY = 16;
+	
+	private double[] values = new double[DEFAULT_CAPACITY];
+	private long[] counts = new long[DEFAULT_CAPACITY];
+	private int size = 0;
+	private long sampleCount = 0;
+	private int[] iterationStarts = null;
+	private int iterationCount = 0;
+	
+	public synchronized HistogramBenchmarkRun create() {
+		int[] iterations = null;
+		if (iterationStarts != null) {
+			iterations = Arrays.copyOf(iterationStarts, iterationCount);
+		}
+		return new HistogramBenchmarkRun(values, counts, size, iterations);
+	}
+	
+	/** Tell number of samples added so far.
+	 * 
+	 * @return Number of samples (not buckets) in the builder.
+	 */
+	public synchronized long getSampleCount() {
+		return sampleCount;
+	}
+	
+	/** Mark that following samples belong to a new iteration.
+	 * 
+	 * @return This builder.
+	 */
+	public synchronized HistogramBenchmarkRunBuilder startIteration() {
+		if (sampleCount > Integer.MAX_VALUE) {
+			throw new IllegalStateException("Too many samples in a single run");
+		}
+		iterationStarts = BenchmarkRunUtils.appendIterationStart(iterationStarts, iterationCount, (int) sampleCount);
+		iterationCount++;
+		return this;
+	}
+	
+	/** Add multiple samples with the same value.
+	 * 
+	 * @param value Sample value.
+	 * @param count How many times the value was observed.
+	 * @return This builder.
+	 */
+	public synchronized HistogramBenchmarkRunBuilder addSamples(double value, long count) {
+		if (count < 0) {
+			throw new IllegalArgumentException("Sample count cannot be negative");
+		}
+		if (count == 0) {
+			return this;
+		}
+		sampleCount += count;
+		if ((size > 0) && (Double.compare(values[size - 1], value) == 0)) {
+			counts[size - 1] += count;
+			return this;
+		}
+		if (size == values.length) {
+			int capacity = Math.max(DEFAULT_CAPACITY, values.length + (values.length >> 1));
+			values = Arrays.copyOf(values, capacity);
+			counts = Arrays.copyOf(counts, capacity);
+		}
+		values[size] = value;
+		counts[size] = count;
+		size++;
+		return this;
+	}
+	
+	/** Add all samples of an existing run.
+	 * 
+	 * @param run Run to add.
+	 * @return This builder.
+	 */
+	public synchronized HistogramBenchmarkRunBuilder addRun(BenchmarkRun run) {
+		if (run instanceof HistogramBenchmarkRun) {
+			HistogramBenchmarkRun histogram = (HistogramBenchmarkRun) run;
+			for (int i = 0; i < histogram.getBucketCount(); i++) {
+				addSamples(histogram.getBucketValue(i), histogram.getBucketSampleCount(i));
+			}
+		} else {
+			synchronized (run) {
+				int sampleCount = run.getSampleCount();
+				for (int i = 0; i < sampleCount; i++) {
+					addSamples(run.getSample(i), 1);
+				}
+			}
+		}
+		return this;
+	}
+}
@@ -20,17 +20,43 @@ import java.util.Arrays;
 import java.util.Collection;
 
 import cz.cuni.mff.d3s.spl.BenchmarkRun;
+import cz.cuni.mff.d3s.spl.SampleStatistics;
 import cz.cuni.mff.d3s.spl.utils.PrimitiveIterables;
 
-/** Immutable implementation of BenchmarkRun that makes and returns
- * always copy of the initial data.
+/** Immutable implementation of BenchmarkRun.
+ *
+ * <p>
+ * The samples are kept in a primitive array that might be shared with
+ * a {@link BenchmarkRunBuilder} or with other runs. The builder only ever
+ * appends behind the samples visible to this run and runs never modify
+ * the array, therefore the run stays immutable even when the backing
+ * array is not copied.
+ * Thus skipping samples (see {@link #skip(int)}) is cheap as the result
+ * is merely a view with a different offset.
+ *
+ * <p>
+ * Because the samples never change, the summary statistics are computed
+ * only once, on the first call to {@link #getStatistics()} (unless they
+ * were already known when the run was created).
+ *
+ * <p>
+ * Optionally, the run knows where individual iterations (e.g. of JMH)
+ * start, see {@link #getIterationStarts()}.
  *
  */
 public class ImmutableBenchmarkRun implements BenchmarkRun {
 	private final double[] data;
+	private final int offset;
+	private final int length;
+	private final int[] iterationStarts;
+	private StatisticsAccumulator cacheStatistics = null;
+	private QuantileSketch cacheSketch = null;
 
 	public ImmutableBenchmarkRun(double... samples) {
 		data = Arrays.copyOf(samples, samples.length);
+		offset = 0;
+		length = data.length;
+		iterationStarts = null;
 	}
 
 	public ImmutableBenchmarkRun(Collection<Double> samples) {
@@ -45,9 +71,24 @@ public class ImmutableBenchmarkRun implements BenchmarkRun {
 			if (idx >= 0) data[idx] = val;
 			idx++;
 		}
+		offset = 0;
+		length = size;
+		iterationStarts = null;
 	}
 	
 	public ImmutableBenchmarkRun(BenchmarkRun run, int skip) {
+		if (run instanceof ImmutableBenchmarkRun) {
+			ImmutableBenchmarkRun other = (ImmutableBenchmarkRun) run;
+			if ((skip < 0) || (skip > other.length)) {
+				throw new IndexOutOfBoundsException(String.format(
+						"Cannot skip %d of %d samples.", skip, other.length));
+			}
+			data = other.data;
+			offset = other.offset + skip;
+			length = other.length - skip;
+			iterationStarts = BenchmarkRunUtils.skipIterationStarts(other.iterationStarts, skip, length);
+			return;
+		}
 		synchronized (run) {
 			int itemsCount = run.getSampleCount() - skip;
 			data = new double[itemsCount];
@@ -55,24 +96,165 @@ public class ImmutableBenchmarkRun implements BenchmarkRun {
 				data[i] = run.getSample(i + skip);
 			}
 		}
+		offset = 0;
+		length = data.length;
+		iterationStarts = null;
 	}
 
 	public ImmutableBenchmarkRun(BenchmarkRun run) {
 		this(run, 0);
 	}
+	
+	private ImmutableBenchmarkRun(double[] samples, int start, int count, int[] iterations) {
+		if ((start < 0) || (count < 0) || (start + count > samples.length)) {
+			throw new IndexOutOfBoundsException(String.format(
+					"Range [%d, %d) outside of %d samples.", start, start + count, samples.length));
+		}
+		data = samples;
+		offset = start;
+		length = count;
+		iterationStarts = iterations;
+	}
+	
+	/** Create benchmark run directly on top of an existing array.
+	 * 
+	 * <p>
+	 * The array is not copied, the caller must guarantee that it is never
+	 * modified afterwards.
+	 * 
+	 * @param samples Array with the samples.
+	 * @return Benchmark run backed by the given array.
+	 */
+	static ImmutableBenchmarkRun wrap(double[] samples) {
+		return new ImmutableBenchmarkRun(samples, 0, samples.length, null);
+	}
+	
+	/** Create benchmark run with already known statistics on top of an existing array.
+	 * 
+	 * <p>
+	 * The array is not copied, the caller must guarantee that it is never
+	 * modified afterwards and that the statistics describe the samples.
+	 * 
+	 * @param samples Array with the samples.
+	 * @param statistics Statistics of the samples.
+	 * @return Benchmark run backed by the given array.
+	 */
+	static ImmutableBenchmarkRun wrap(double[] samples, StatisticsAccumulator statistics) {
+		ImmutableBenchmarkRun result = new ImmutableBenchmarkRun(samples, 0, samples.length, null);
+		result.cacheStatistics = statistics;
+		return result;
+	}
+	
+	/** Create benchmark run directly on top of an existing array.
+	 * 
+	 * <p>
+	 * The array is not copied, the caller must guarantee that the given
+	 * range is never modified afterwards.
+	 * 
+	 * @param samples Array with the samples.
+	 * @param start Index of the first sample of the run.
+	 * @param count Number of samples in the run.
+	 * @return Benchmark run backed by the given array.
+	 */
+	static ImmutableBenchmarkRun wrap(double[] samples, int start, int count) {
+		return new ImmutableBenchmarkRun(samples, start, count, null);
+	}
+	
+	/** Create benchmark run with known iterations on top of an existing array.
+	 * 
+	 * @param samples Array with the samples.
+	 * @param start Index of the first sample of the run.
+	 * @param count Number of samples in the run.
+	 * @param iterationStarts Indices (relative to start) of the first
+	 * samples of the iterations, not copied.
+	 * @return Benchmark run backed by the given array.
+	 */
+	static ImmutableBenchmarkRun wrap(double[] samples, int start, int count, int[] iterationStarts) {
+		return new ImmutableBenchmarkRun(samples, start, count, iterationStarts);
+	}
+
+	/** Get view of this run without the first samples.
+	 * 
+	 * <p>
+	 * The view shares the samples with this run, no data are copied.
+	 * 
+	 * @param count Number of samples to skip from the beginning.
+	 * @return Run with the remaining samples.
+	 * @throws IndexOutOfBoundsException When count is negative or greater
+	 * than sample count.
+	 */
+	public ImmutableBenchmarkRun skip(int count) {
+		if ((count < 0) || (count > length)) {
+			throw new IndexOutOfBoundsException(String.format(
+					"Cannot skip %d of %d samples.", count, length));
+		}
+		if (count == 0) {
+			return this;
+		}
+		return new ImmutableBenchmarkRun(data, offset + count, length - count,
+				BenchmarkRunUtils.skipIterationStarts(iterationStarts, count, length - count));
+	}
+	
+	/** Tell where individual iterations start.
+	 * 
+	 * @return Indices of the first samples of the iterations,
+	 * null when iterations are not known.
+	 */
+	public int[] getIterationStarts() {
+		return iterationStarts == null ? null : Arrays.copyOf(iterationStarts, iterationStarts.length);
+	}
 
 	@Override
 	public Iterable<Double> getSamples() {
-		return PrimitiveIterables.makeIterable(data);
+		return PrimitiveIterables.makeIterable(data, offset, length);
 	}
 
 	@Override
 	public int getSampleCount() {
-		return data.length;
+		return length;
 	}
 
 	@Override
 	public double getSample(int index) {
-		return data[index];
+		if ((index < 0) || (index >= length)) {
+			throw new IndexOutOfBoundsException(String.format(
+					"Index %d outside of %d samples.", index, length));
+		}
+		return data[offset + index];
+	}
+	
+	/** {@inheritDoc} */
+	@Override
+	public synchronized SampleStatistics getStatistics() {
+		if (cacheStatistics == null) {
+			StatisticsAccumulator statistics = new StatisticsAccumulator();
+			for (int i = offset; i < offset + length; i++) {
+				statistics.add(data[i]);
+			}
+			cacheStatistics = statistics;
+		}
+		return cacheStatistics;
+	}
+	
+	/** {@inheritDoc} */
+	@Override
+	public synchronized QuantileSketch getQuantileSketch() {
+		if (cacheSketch == null) {
+			QuantileSketch sketch = new QuantileSketch();
+			for (int i = offset; i < offset + length; i++) {
+				sketch.add(data[i]);
+			}
+			cacheSketch = sketch;
+		}
+		return cacheSketch;
+	}
+	
+	/** Copy all samples into given array.
+	 * 
+	 * @param dest Destination array.
+	 * @param destIndex Where to start storing the samples.
+	 */
+	public void copySamples(double[] dest, int destIndex) {
+		System.arraycopy(data, offset, dest, destIndex, length);
 	}
 }
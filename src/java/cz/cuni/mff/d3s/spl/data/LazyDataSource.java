@@ -0,0 +1,91 @@
+/*
+ * Copyright 2015 Charles University in Prague
+ * Copyright 2015 Vojtech Horky
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.cuni.mff.d3s.spl.data;
+
+import cz.cuni.mff.d3s.spl.DataReader.ReaderException;
+import cz.cuni.mff.d3s.spl.DataSnapshot;
+import cz.cuni.mff.d3s.spl.DataSource;
+
+/** Data source that loads its data on first use.
+ *
+ * <p>
+ * The loader is called (at most once when it succeeds) when the first
+ * snapshot is requested, all snapshots are then taken from the loaded
+ * source.
+ */
+public class LazyDataSource implements DataSource {
+	/** Provider of the actual data. */
+	public interface Loader {
+		/** Load the data.
+		 *
+		 * @return Data source with the data.
+		 * @throws ReaderException When data cannot be read.
+		 */
+		DataSource load() throws ReaderException;
+	}
+	
+	private Loader loader;
+	private DataSource data = null;
+	
+	/** Create data source loading its data with given loader.
+	 *
+	 * @param loader Loader of the data.
+	 */
+	public LazyDataSource(Loader loader) {
+		this.loader = loader;
+	}
+	
+	/** Tell whether the data were already loaded.
+	 *
+	 * @return Whether the loader was called successfully.
+	 */
+	public synchronized boolean isLoaded() {
+		return data != null;
+	}
+	
+	/** Get the loaded data, loading them first if needed.
+	 *
+	 * @throws IllegalStateException When the data cannot be loaded.
+	 */
+	private synchronized DataSource getData() {
+		if (data == null) {
+			try {
+				data = loader.load();
+			} catch (ReaderException e) {
+				throw new IllegalStateException("Cannot load data: " + e.getMessage(), e);
+			}
+			/* Let the loader (and whatever it holds) be collected. */
+			loader = null;
+		}
+		return data;
+	}
+
+	@Override
+	public DataSnapshot makeSnapshot() {
+		return getData().makeSnapshot();
+	}
+
+	@Override
+	public DataSnapshot makeSnapshot(int skip) {
+		return getData().makeSnapshot(skip);
+	}
+
+	@Override
+	public DataSnapshot makeSnapshot(double skip) {
+		return getData().makeSnapshot(skip);
+	}
+}
@@ -0,0 +1,362 @@
+/*
+ * Copyright 2015 Charles University in Prague
+ * Copyright 2015 Vojtech Horky
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.cuni.mff.d3s.spl.data;
+
+import cz.cuni.mff.d3s.spl.BenchmarkRun;
+
+/** Mergeable sketch for approximate quantiles of samples.
+ *
+ * <p>
+ * The sketch follows DDSketch: samples are counted in buckets whose
+ * boundaries grow geometrically, thus every quantile is returned with
+ * bounded relative error regardless of the sample distribution. Memory
+ * depends only on the range of the values (e.g. about 800 buckets cover
+ * values from 100 ns to 1 s with 1% accuracy), never on sample count,
+ * and two sketches are merged by adding bucket counts, so the result is
+ * exactly the same as if all samples were added to a single sketch.
+ *
+ * <p>
+ * When the values span more than the maximum number of buckets, the
+ * buckets with the smallest magnitudes are collapsed, hence only
+ * quantiles close to zero lose accuracy.
+ *
+ * <p>
+ * This class is not thread-safe.
+ */
+public class QuantileSketch {
+	/** Relative accuracy used by default. */
+	public static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+	
+	/** Maximum number of buckets used by default (per sign). */
+	public static final int DEFAULT_MAX_BUCKETS = 2048;
+	
+	private static final int INITIAL_BUCKETS = 64;
+	
+	private final double relativeAccuracy;
+	private final int maxBuckets;
+	private final double gamma;
+	private final double logGamma;
+	/* Smaller magnitudes are counted as zero. */
+	private final double minIndexable;
+	
+	private final Buckets positive = new Buckets();
+	private final Buckets negative = new Buckets();
+	private long zeroCount = 0;
+	private long count = 0;
+	private double min = Double.NaN;
+	private double max = Double.NaN;
+	
+	/** Counts of samples in consecutive buckets. */
+	private final class Buckets {
+		private long[] counts = null;
+		/* Bucket key of counts[0]. */
+		private int offset = 0;
+		private int minKey = 0;
+		private int maxKey = -1;
+		
+		boolean isEmpty() {
+			return maxKey < minKey;
+		}
+		
+		void add(int key, long weight) {
+			int newMin = isEmpty() ? key : Math.min(minKey, key);
+			int newMax = isEmpty() ? key : Math.max(maxKey, key);
+			long carry = 0;
+			if ((long) newMax - newMin + 1 > maxBuckets) {
+				int lowest = newMax - maxBuckets + 1;
+				for (int k = minKey; (k <= maxKey) && (k < lowest); k++) {
+					carry += counts[k - offset];
+					counts[k - offset] = 0;
+				}
+				newMin = lowest;
+				key = Math.max(key, lowest);
+			}
+			ensureRange(newMin, newMax);
+			counts[key - offset] += weight;
+			counts[newMin - offset] += carry;
+		}
+		
+		/** Make counts cover given keys, keys outside of them are dropped. */
+		private void ensureRange(int newMin, int newMax) {
+			if ((counts == null) || (newMin < offset) || (newMax >= offset + counts.length)) {
+				int needed = newMax - newMin + 1;
+				int length = Math.min(maxBuckets, Math.max(needed,
+						counts == null ? INITIAL_BUCKETS : 2 * counts.length));
+				int newOffset = newMin - (length - needed) / 2;
+				long[] newCounts = new long[length];
+				if (!isEmpty()) {
+					int from = Math.max(minKey, newMin);
+					int to = Math.min(maxKey, newMax);
+					if (from <= to) {
+						System.arraycopy(counts, from - offset, newCounts, from - newOffset, to - from + 1);
+					}
+				}
+				counts = newCounts;
+				offset = newOffset;
+			} else if (!isEmpty()) {
+				/* Drop keys left outside of the new range. */
+				for (int k = minKey; k < newMin; k++) {
+					counts[k - offset] = 0;
+				}
+			}
+			minKey = newMin;
+			maxKey = newMax;
+		}
+		
+		long get(int key) {
+			return counts[key - offset];
+		}
+	}
+	
+	/** Create sketch with default accuracy. */
+	public QuantileSketch() {
+		this(DEFAULT_RELATIVE_ACCURACY, DEFAULT_MAX_BUCKETS);
+	}
+	
+	/** Create sketch with given accuracy.
+	 *
+	 * @param relativeAccuracy Maximum relative error of the quantiles (between 0 and 1).
+	 * @param maxBuckets Maximum number of buckets for each sign.
+	 */
+	public QuantileSketch(double relativeAccuracy, int maxBuckets) {
+		if (!(relativeAccuracy > 0.0) || !(relativeAccuracy < 1.0)) {
+			throw new IllegalArgumentException("Relative accuracy must be between 0 and 1");
+		}
+		if (maxBuckets <= 0) {
+			throw new IllegalArgumentException("There must be at least one bucket");
+		}
+		this.relativeAccuracy = relativeAccuracy;
+		this.maxBuckets = maxBuckets;
+		gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+		logGamma = Math.log(gamma);
+		minIndexable = Math.max(Double.MIN_NORMAL * gamma, Math.exp((Integer.MIN_VALUE + 1) * logGamma));
+	}
+	
+	/** Create sketch with the same parameters and samples as another one.
+	 *
+	 * @param other Sketch to copy.
+	 */
+	public QuantileSketch(QuantileSketch other) {
+		this(other.relativeAccuracy, other.maxBuckets);
+		add(other);
+	}
+	
+	/** Add a single sample.
+	 *
+	 * @param value Sample value.
+	 * @return This sketch.
+	 * @throws IllegalArgumentException When the value is NaN or infinite.
+	 */
+	public QuantileSketch add(double value) {
+		return add(value, 1);
+	}
+	
+	/** Add the same sample several times.
+	 *
+	 * @param value Sample value.
+	 * @param weight How many times to add the value.
+	 * @return This sketch.
+	 * @throws IllegalArgumentException When the value is NaN or infinite.
+	 */
+	public QuantileSketch add(double value, long weight) {
+		if (Double.isNaN(value) || Double.isInfinite(value)) {
+			throw new IllegalArgumentException("Cannot sketch " + value);
+		}
+		if (weight < 0) {
+			throw new IllegalArgumentException("Weight cannot be negative");
+		}
+		if (weight == 0) {
+			return this;
+		}
+		
+		if (value > minIndexable) {
+			positive.add(getKey(value), weight);
+		} else if (value < -minIndexable) {
+			negative.add(getKey(-value), weight);
+		} else {
+			zeroCount += weight;
+		}
+		
+		if (count == 0) {
+			min = value;
+			max = value;
+		} else {
+			min = Math.min(min, value);
+			max = Math.max(max, value);
+		}
+		count += weight;
+		return this;
+	}
+	
+	/** Add multiple samples.
+	 *
+	 * @param values Sample values.
+	 * @return This sketch.
+	 */
+	public QuantileSketch add(double... values) {
+		for (double v : values) {
+			add(v);
+		}
+		return this;
+	}
+	
+	/** Add all samples of a benchmark run one by one.
+	 *
+	 * @param run Benchmark run to add.
+	 * @return This sketch.
+	 */
+	public QuantileSketch addSamples(BenchmarkRun run) {
+		synchronized (run) {
+			int sampleCount = run.getSampleCount();
+			for (int i = 0; i < sampleCount; i++) {
+				add(run.getSample(i));
+			}
+		}
+		return this;
+	}
+	
+	/** Add all samples seen by another sketch.
+	 *
+	 * @param other Sketch with the same relative accuracy.
+	 * @return This sketch.
+	 * @throws IllegalArgumentException When the accuracies differ.
+	 */
+	public QuantileSketch add(QuantileSketch other) {
+		if (other.relativeAccuracy != relativeAccuracy) {
+			throw new IllegalArgumentException("Cannot merge sketches with different accuracy");
+		}
+		if (other.count == 0) {
+			return this;
+		}
+		addBuckets(positive, other.positive);
+		addBuckets(negative, other.negative);
+		zeroCount += other.zeroCount;
+		if (count == 0) {
+			min = other.min;
+			max = other.max;
+		} else {
+			min = Math.min(min, other.min);
+			max = Math.max(max, other.max);
+		}
+		count += other.count;
+		return this;
+	}
+	
+	private static void addBuckets(Buckets dest, Buckets source) {
+		if (source.isEmpty()) {
+			return;
+		}
+		/* Newest keys first, then the collapsing (if any) happens only once. */
+		for (int k = source.maxKey; k >= source.minKey; k--) {
+			long weight = source.get(k);
+			if (weight > 0) {
+				dest.add(k, weight);
+			}
+		}
+	}
+	
+	/** Tell number of samples.
+	 *
+	 * @return Number of samples added so far.
+	 */
+	public long getCount() {
+		return count;
+	}
+	
+	/** Get the smallest sample.
+	 *
+	 * @return Minimum (exact), NaN when there are no samples.
+	 */
+	public double getMin() {
+		return min;
+	}
+	
+	/** Get the largest sample.
+	 *
+	 * @return Maximum (exact), NaN when there are no samples.
+	 */
+	public double getMax() {
+		return max;
+	}
+	
+	/** Tell maximum relative error of the quantiles.
+	 *
+	 * @return Relative accuracy of the sketch.
+	 */
+	public double getRelativeAccuracy() {
+		return relativeAccuracy;
+	}
+	
+	/** Estimate quantile of the samples.
+	 *
+	 * <p>
+	 * The result is within relative accuracy from the sample at rank
+	 * quantile * (count - 1) of the sorted samples.
+	 *
+	 * @param quantile Quantile to estimate (between 0 and 1).
+	 * @return Estimated quantile, NaN when there are no samples.
+	 * @throws IllegalArgumentException When quantile is outside range 0 and 1.
+	 */
+	public double getQuantile(double quantile) {
+		if (!(quantile >= 0.0) || !(quantile <= 1.0)) {
+			throw new IllegalArgumentException("Quantile must be between 0 and 1");
+		}
+		if (count == 0) {
+			return Double.NaN;
+		}
+		
+		double rank = quantile * (count - 1);
+		double result;
+		long seen = 0;
+		found: {
+			if (!negative.isEmpty()) {
+				for (int k = negative.maxKey; k >= negative.minKey; k--) {
+					seen += negative.get(k);
+					if (seen > rank) {
+						result = -getValue(k);
+						break found;
+					}
+				}
+			}
+			seen += zeroCount;
+			if (seen > rank) {
+				result = 0.0;
+				break found;
+			}
+			int k = positive.minKey;
+			while (k < positive.maxKey) {
+				seen += positive.get(k);
+				if (seen > rank) {
+					break;
+				}
+				k++;
+			}
+			result = getValue(k);
+		}
+		
+		/* The extremes are known exactly. */
+		return Math.max(min, Math.min(max, result));
+	}
+	
+	private int getKey(double magnitude) {
+		return (int) Math.ceil(Math.log(magnitude) / logGamma);
+	}
+	
+	private double getValue(int key) {
+		return 2 * Math.pow(gamma, key) / (gamma + 1);
+	}
+}
@@ -16,41 +16,152 @@
  */
 package cz.cuni.mff.d3s.spl.data;
 
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import cz.cuni.mff.d3s.spl.BenchmarkRun;
 import cz.cuni.mff.d3s.spl.DataSnapshot;
 import cz.cuni.mff.d3s.spl.DataSource;
 import cz.cuni.mff.d3s.spl.utils.RingBuffer;
+import cz.cuni.mff.d3s.spl.utils.SampleRing;
 
 /** Ring-buffer based data source.
  *
+ * <p>
+ * By default, samples must be added by a single thread at a time: adding
+ * is not synchronized and concurrent writers corrupt the open run (with
+ * assertions enabled, they fail with {@link AssertionError}). Sources
+ * fed by multiple threads must be created by
+ * {@link #createStriped(int, int, int, boolean)}, where every thread
+ * records into its own buffer and the buffers are merged when a run is
+ * finished or a snapshot is made. The buffer of a thread is kept while
+ * the thread is alive and runs are delimited by positions in it, thus
+ * no sample is lost when a run is finished while other threads keep
+ * recording.
+ *
+ * <p>
+ * The buffers maintain running statistics of their samples, thus making
+ * a snapshot of the open run of a non-striped source without a limit on
+ * the number of samples (see {@link #createUnlimited()} and
+ * {@link #createWithLimitedNumberOfRuns(int)}) does not copy the
+ * samples: the run in the snapshot comes with precomputed statistics
+ * (without minimum and maximum) and the samples are copied only when an
+ * interpretation actually reads them. Interpretations working with the
+ * statistics only (e.g.
+ * {@link cz.cuni.mff.d3s.spl.interpretation.WelchTestInterpretation})
+ * thus cost the same regardless of the number of samples. Bounded
+ * buffers are overwritten by new samples, thus their snapshots copy the
+ * samples right away to keep them consistent with the statistics. Striped
+ * buffers also hold samples of previous runs (their statistics cover
+ * more than the open run after the first run is finished), thus their
+ * snapshots always copy the samples.
  */
 public class RingDataSource implements DataSource {
+	/** Create data source for a single writer thread.
+	 * 
+	 * <p>
+	 * Samples must be added by one thread at a time, use
+	 * {@link #createStriped(int, int, int, boolean)} for multiple writers.
+	 * 
+	 * @param maximumEpochs Number of previous epochs kept.
+	 * @param maximumRuns Number of runs kept in each epoch.
+	 * @param maximumSamples Number of samples kept in each run.
+	 * @return New data source.
+	 */
 	public static RingDataSource create(int maximumEpochs, int maximumRuns, int maximumSamples) {
 		return new RingDataSource(maximumEpochs, maximumRuns, maximumSamples);
 	}
 	
+	/** Create data source for a single writer thread with limited number of runs.
+	 * 
+	 * <p>
+	 * Samples must be added by one thread at a time, use
+	 * {@link #createStriped(int, int, int, boolean)} for multiple writers.
+	 * 
+	 * @param maximumRuns Number of runs kept in each epoch.
+	 * @return New data source.
+	 */
 	public static RingDataSource createWithLimitedNumberOfRuns(int maximumRuns) {
 		return new RingDataSource(Integer.MAX_VALUE, maximumRuns, Integer.MAX_VALUE);
 	}
 	
+	/** Create data source for a single writer thread with limited run size.
+	 * 
+	 * <p>
+	 * Samples must be added by one thread at a time, use
+	 * {@link #createStriped(int, int, int, boolean)} for multiple writers.
+	 * 
+	 * @param maxSamples Number of samples kept in each run.
+	 * @return New data source.
+	 */
 	public static RingDataSource createWithLimitedNumberOfSamples(int maxSamples) {
 		return new RingDataSource(Integer.MAX_VALUE, Integer.MAX_VALUE, maxSamples);
 	}
 	
+	/** Create unbounded data source for a single writer thread.
+	 * 
+	 * <p>
+	 * Samples must be added by one thread at a time, use
+	 * {@link #createStriped(int, int, int, boolean)} for multiple writers.
+	 * 
+	 * @return New data source.
+	 */
 	public static RingDataSource createUnlimited() {
 		return new RingDataSource(Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
 	}
 	
+	/** Create data source where samples can be added by multiple threads.
+	 * 
+	 * <p>
+	 * Each thread records into its own buffer (of maximumSamples size) without
+	 * any locking. When the run is finished, the buffers are either merged
+	 * into one run (keeping the last maximumSamples samples, threads in the
+	 * order of their first sample) or each becomes a separate run.
+	 * A thread keeps its buffer while it is alive, buffers of terminated
+	 * threads are dropped when the run with their last samples is finished.
+	 * 
+	 * <p>
+	 * Runs are delimited by positions in the buffers, thus only the first
+	 * run starts at the beginning of a buffer and snapshots of the open run
+	 * always copy its samples (unlike the non-striped sources).
+	 * 
+	 * @param maximumEpochs Number of previous epochs kept.
+	 * @param maximumRuns Number of runs kept in each epoch.
+	 * @param maximumSamples Number of samples kept in each run (and thread buffer).
+	 * @param runPerStripe Whether each thread forms a separate run.
+	 * @return New data source.
+	 */
+	public static RingDataSource createStriped(int maximumEpochs, int maximumRuns, int maximumSamples,
+			boolean runPerStripe) {
+		return new RingDataSource(maximumEpochs, maximumRuns, maximumSamples, true, runPerStripe);
+	}
+	
 	private RingBuffer<BenchmarkRun> runs;
-	private RingBuffer<Double> lastRun;
+	/* Read by the producers without locking, see addSamples. */
+	private volatile OpenRun lastRun;
 	private int maxSamples;
-	private RingBuffer<DataSnapshotBuilder> epochs;
+	private final boolean striped;
+	private final boolean runPerStripe;
+	/* Closed epochs (oldest first), frozen without links to each other. */
+	private RingBuffer<DataSnapshot> epochs;
+	/* Linked snapshot of closed epochs for the last used skip. */
+	private DataSnapshot cacheHistory = null;
+	private int cacheHistorySkipCount = 0;
+	private double cacheHistorySkipFraction = 0.0;
 	
 	private RingDataSource(int maxEpochs, int maxRuns, int maxSamples) {
+		this(maxEpochs, maxRuns, maxSamples, false, false);
+	}
+	
+	private RingDataSource(int maxEpochs, int maxRuns, int maxSamples, boolean striped, boolean runPerStripe) {
 		this.runs = new RingBuffer<>(maxRuns);
 		this.maxSamples = maxSamples;
+		this.striped = striped;
+		this.runPerStripe = runPerStripe;
 		this.lastRun = null;
 		
 		if (maxEpochs == 0) {
@@ -64,21 +175,85 @@ public class RingDataSource implements DataSource {
 	 * 
 	 * <p>
 	 * Effectively it empties current runs and samples to an old epoch, starting
-	 * with empty data source.
+	 * with empty data source. The epoch is frozen, its runs are reused by
+	 * all later snapshots.
 	 */
 	public synchronized void startEpoch() {
-		epochs.add(buildSnapshot());
+		finishRun();
+		DataSnapshotBuilder builder = new DataSnapshotBuilder();
+		for (BenchmarkRun run : runs.get()) {
+			builder.addRun(run);
+		}
+		epochs.add(builder.create());
+		cacheHistory = null;
 		runs = new RingBuffer<>(runs.getRingSize());
-		lastRun = new RingBuffer<>(maxSamples);
 	}
 	
 	/** Start a new run.
+	 * 
+	 * <p>
+	 * In the striped mode, samples added concurrently with this call
+	 * end in either of the runs.
 	 */
 	public synchronized void startRun() {
-		if (lastRun != null) {
-			runs.add(new ImmutableBenchmarkRun(lastRun.get()));
+		finishRun();
+	}
+	
+	/** Move samples of the open run to finished runs and open a new one. */
+	private void finishRun() {
+		if (lastRun == null) {
+			lastRun = createOpenRun();
+			return;
+		}
+		for (BenchmarkRun run : lastRun.finish()) {
+			runs.add(run);
+		}
+		if (!striped) {
+			lastRun = createOpenRun();
 		}
-		lastRun = new RingBuffer<>(maxSamples);
+	}
+	
+	private OpenRun createOpenRun() {
+		if (striped) {
+			return new StripedRun(maxSamples, runPerStripe);
+		} else {
+			return new SingleRun(maxSamples);
+		}
+	}
+	
+	/** Get number of per-thread buffers kept in the striped mode, for tests. */
+	synchronized int getStripeCount() {
+		if (lastRun instanceof StripedRun) {
+			return ((StripedRun) lastRun).getStripeCount();
+		}
+		return 0;
+	}
+	
+	/** Get ring of the current run (and thread), starting the first run if needed. */
+	private SampleRing getLastRun() {
+		OpenRun run = lastRun;
+		if (run == null) {
+			synchronized (this) {
+				if (lastRun == null) {
+					lastRun = createOpenRun();
+				}
+				run = lastRun;
+			}
+		}
+		return run.getRing();
+	}
+	
+	/** Add a sample to the current run.
+	 * 
+	 * <p>
+	 * This method automatically starts a new run if no run was started yet.
+	 * It neither locks nor allocates (once the run is full), see
+	 * {@link #addSamples(double...)} for threading rules.
+	 * 
+	 * @param value Sample value to add.
+	 */
+	public void addSample(double value) {
+		getLastRun().add(value);
 	}
 	
 	/** Add samples to the current run.
@@ -88,12 +263,10 @@ public class RingDataSource implements DataSource {
 	 * 
 	 * @param values Samples values to add.
 	 */
-	public synchronized void addSamples(long... values) {
-		if (lastRun == null) {
-			lastRun = new RingBuffer<>(maxSamples);
-		}
+	public void addSamples(long... values) {
+		SampleRing run = getLastRun();
 		for (long v : values) {
-			lastRun.add((double)v);
+			run.add((double)v);
 		}
 	}
 
@@ -101,41 +274,88 @@ public class RingDataSource implements DataSource {
 	 *
 	 * <p>
 	 * This method automatically starts a new run if no run was started yet.
+	 * 
+	 * <p>
+	 * Adding samples is lock-free and never blocks on concurrent
+	 * {@link #makeSnapshot()}. Samples (and new runs and epochs) must be
+	 * added by a single thread at a time unless the source was created by
+	 * {@link #createStriped(int, int, int, boolean)}.
 	 *
 	 * @param values Samples values to add.
 	 */
-	public synchronized void addSamples(double... values) {
-		if (lastRun == null) {
-			lastRun = new RingBuffer<>(maxSamples);
-		}
+	public void addSamples(double... values) {
+		SampleRing run = getLastRun();
 		for (double v : values) {
-			lastRun.add(v);
+			run.add(v);
 		}
 	}
 
 	@Override
 	public synchronized DataSnapshot makeSnapshot() {
-		DataSnapshotBuilder[] epochBuilders = epochs.get().toArray(new DataSnapshotBuilder[0]);
-		
-		DataSnapshot lastSnapshot = null;
-		for (int i = epochBuilders.length - 1; i >= 0; i--) {
-			epochBuilders[i].setPreviousEpoch(lastSnapshot);
-			lastSnapshot = epochBuilders[i].create();
-		}
-		
-		return buildSnapshot().setPreviousEpoch(lastSnapshot).create();
+		return makeSnapshot(0, 0.0);
 	}
 
+	/** {@inheritDoc}
+	 *
+	 * <p>
+	 * The samples are skipped in runs of previous epochs too.
+	 */
 	@Override
-	public DataSnapshot makeSnapshot(int skip) {
-		// TODO:
-		return null;
+	public synchronized DataSnapshot makeSnapshot(int skip) {
+		return makeSnapshot(skip, 0.0);
 	}
 
+	/** {@inheritDoc}
+	 *
+	 * <p>
+	 * The samples are skipped in runs of previous epochs too.
+	 */
 	@Override
-	public DataSnapshot makeSnapshot(double skip) {
-		// TODO:
-		return null;
+	public synchronized DataSnapshot makeSnapshot(double skip) {
+		return makeSnapshot(0, skip);
+	}
+	
+	/** Make snapshot of the current epoch linked to the closed ones.
+	 * 
+	 * <p>
+	 * Finished runs are immutable and closed epochs are linked only when
+	 * an epoch is closed or the skip changes, thus only the samples of
+	 * the open run are copied.
+	 */
+	private DataSnapshot makeSnapshot(int skipCount, double skipFraction) {
+		DataSnapshot history = getHistory(skipCount, skipFraction);
+		return create(buildSnapshot().setPreviousEpoch(history), skipCount, skipFraction);
+	}
+	
+	/** Get snapshot of the newest closed epoch (linked to the older ones). */
+	private DataSnapshot getHistory(int skipCount, double skipFraction) {
+		if ((cacheHistory != null) && (cacheHistorySkipCount == skipCount)
+				&& (cacheHistorySkipFraction == skipFraction)) {
+			return cacheHistory;
+		}
+		
+		DataSnapshot lastSnapshot = null;
+		for (DataSnapshot epoch : epochs.get()) {
+			DataSnapshotBuilder builder = new DataSnapshotBuilder();
+			for (BenchmarkRun run : epoch.getRuns()) {
+				builder.addRun(run);
+			}
+			builder.setPreviousEpoch(lastSnapshot);
+			lastSnapshot = create(builder, skipCount, skipFraction);
+		}
+		
+		cacheHistory = lastSnapshot;
+		cacheHistorySkipCount = skipCount;
+		cacheHistorySkipFraction = skipFraction;
+		return lastSnapshot;
+	}
+	
+	private static DataSnapshot create(DataSnapshotBuilder builder, int skipCount, double skipFraction) {
+		if (skipFraction > 0.0) {
+			return builder.create(skipFraction);
+		} else {
+			return builder.create(skipCount);
+		}
 	}
 
 	private DataSnapshotBuilder buildSnapshot() {
@@ -143,11 +363,16 @@ public class RingDataSource implements DataSource {
 		
 		Collection<BenchmarkRun> currentRuns = runs.get();
 		
-		int start = 0;
-		if ((lastRun != null) && (currentRuns.size() == runs.getRingSize())) {
-			start = 1;
+		OpenRun currentRun = lastRun;
+		List<BenchmarkRun> openRuns = currentRun == null
+				? Collections.<BenchmarkRun>emptyList() : currentRun.getRuns();
+		if (openRuns.size() > runs.getRingSize()) {
+			openRuns = openRuns.subList(openRuns.size() - runs.getRingSize(), openRuns.size());
 		}
 		
+		/* Drop the oldest runs as if the open ones were already finished. */
+		long start = Math.max(0L, (long) currentRuns.size() + openRuns.size() - runs.getRingSize());
+		
 		int index = 0;
 		for (BenchmarkRun run : currentRuns) {
 			if (index >= start) {
@@ -156,11 +381,197 @@ public class RingDataSource implements DataSource {
 			index++;
 		}
 		
-		if (lastRun != null) {
-			builder.addRun(new ImmutableBenchmarkRun(lastRun.get()));
+		for (BenchmarkRun run : openRuns) {
+			builder.addRun(run);
 		}
 		
 		return builder;
 	}
+	
+	/** Run that is being recorded. */
+	private abstract static class OpenRun {
+		/** Get ring for samples of the calling thread. */
+		abstract SampleRing getRing();
+		
+		/** Get copy of the samples recorded so far as finished runs. */
+		abstract List<BenchmarkRun> getRuns();
+		
+		/** Get the samples as finished runs, samples added later belong to the next run. */
+		abstract List<BenchmarkRun> finish();
+	}
+	
+	/** Run recorded by a single thread. */
+	private static class SingleRun extends OpenRun {
+		private final int maxSamples;
+		private final SampleRing ring;
+		
+		SingleRun(int maxSamples) {
+			this.maxSamples = maxSamples;
+			ring = new SampleRing(maxSamples);
+		}
+		
+		@Override
+		SampleRing getRing() {
+			return ring;
+		}
+		
+		@Override
+		List<BenchmarkRun> getRuns() {
+			return Collections.singletonList(toSnapshotRun(Collections.singletonList(ring.getWindow()), maxSamples));
+		}
+		
+		@Override
+		List<BenchmarkRun> finish() {
+			return Collections.<BenchmarkRun>singletonList(
+					ImmutableBenchmarkRun.wrap(RingSnapshotRun.concatenate(Collections.singletonList(ring.getWindow()), maxSamples)));
+		}
+	}
+	
+	/** Run recorded by multiple threads, each into its own ring.
+	 * 
+	 * <p>
+	 * The same instance records all runs, the rings of live threads are
+	 * never replaced (so a writer that is just adding a sample cannot write
+	 * into an abandoned ring), only the position where the current run
+	 * starts is moved when the run is finished. Rings of terminated threads
+	 * are dropped once their samples were finished.
+	 */
+	private static class StripedRun extends OpenRun {
+		private final int maxSamples;
+		private final boolean runPerStripe;
+		private final List<Stripe> stripes = new CopyOnWriteArrayList<>();
+		private final ThreadLocal<Stripe> localStripe = new ThreadLocal<Stripe>() {
+			@Override
+			protected Stripe initialValue() {
+				Stripe stripe = new Stripe(Thread.currentThread(), maxSamples);
+				stripes.add(stripe);
+				return stripe;
+			}
+		};
+		
+		/** Ring of a single thread. */
+		private static class Stripe {
+			/* Weak, the data source must not keep terminated threads alive. */
+			private final WeakReference<Thread> owner;
+			private final SampleRing ring;
+			/* Sequence number of the first sample of the current run, guarded by the data source. */
+			private long runStart = 0;
+			
+			Stripe(Thread owner, int maxSamples) {
+				this.owner = new WeakReference<>(owner);
+				ring = new SampleRing(maxSamples);
+			}
+			
+			/** Tell whether no more samples can be added to the ring. */
+			boolean isAbandoned() {
+				Thread thread = owner.get();
+				return (thread == null) || !thread.isAlive();
+			}
+		}
+		
+		StripedRun(int maxSamples, boolean runPerStripe) {
+			this.maxSamples = maxSamples;
+			this.runPerStripe = runPerStripe;
+		}
+		
+		@Override
+		SampleRing getRing() {
+			return localStripe.get().ring;
+		}
+		
+		@Override
+		List<BenchmarkRun> getRuns() {
+			List<SampleRing.Window> windows = getWindows();
+			if (!runPerStripe) {
+				return Collections.singletonList(toSnapshotRun(windows, maxSamples));
+			}
+			List<BenchmarkRun> result = new ArrayList<>(windows.size());
+			for (SampleRing.Window window : windows) {
+				if (window.getCount() > 0) {
+					result.add(toSnapshotRun(Collections.singletonList(window), maxSamples));
+				}
+			}
+			return result;
+		}
+		
+		/** {@inheritDoc}
+		 * 
+		 * <p>
+		 * The rings keep being written, thus the samples are copied now.
+		 */
+		@Override
+		List<BenchmarkRun> finish() {
+			List<Stripe> current = new ArrayList<>(stripes);
+			/* Checked before taking the windows, all samples of these are finished now. */
+			List<Stripe> abandoned = new ArrayList<>();
+			for (Stripe stripe : current) {
+				if (stripe.isAbandoned()) {
+					abandoned.add(stripe);
+				}
+			}
+			List<SampleRing.Window> windows = getWindows(current);
+			for (int i = 0; i < windows.size(); i++) {
+				current.get(i).runStart = windows.get(i).getEnd();
+			}
+			stripes.removeAll(abandoned);
+			if (!runPerStripe) {
+				return Collections.<BenchmarkRun>singletonList(ImmutableBenchmarkRun.wrap(RingSnapshotRun.concatenate(windows, maxSamples)));
+			}
+			List<BenchmarkRun> result = new ArrayList<>(windows.size());
+			for (SampleRing.Window window : windows) {
+				double[] samples = window.copyRemainingSamples();
+				if (samples.length > 0) {
+					result.add(ImmutableBenchmarkRun.wrap(samples));
+				}
+			}
+			return result;
+		}
+		
+		/** Get number of rings kept, for tests. */
+		int getStripeCount() {
+			return stripes.size();
+		}
+		
+		/** Get samples of the current run from all stripes (registered so far). */
+		private List<SampleRing.Window> getWindows() {
+			return getWindows(stripes);
+		}
+		
+		private static List<SampleRing.Window> getWindows(List<Stripe> stripes) {
+			List<SampleRing.Window> windows = new ArrayList<>(stripes.size());
+			for (Stripe stripe : stripes) {
+				windows.add(stripe.ring.getWindow(stripe.runStart));
+			}
+			return windows;
+		}
+	}
+	
+	/** Create snapshot run from ring windows, postponing the copy when their statistics are known.
+	 * 
+	 * <p>
+	 * Bounded rings are copied right away, the writer could overwrite
+	 * the samples before they are read.
+	 */
+	private static BenchmarkRun toSnapshotRun(List<SampleRing.Window> windows, int maxSamples) {
+		if (maxSamples != Integer.MAX_VALUE) {
+			return ImmutableBenchmarkRun.wrap(RingSnapshotRun.concatenate(windows, maxSamples));
+		}
+		long total = 0;
+		StatisticsAccumulator statistics = new StatisticsAccumulator();
+		for (SampleRing.Window window : windows) {
+			if (!window.hasStatistics()) {
+				statistics = null;
+				break;
+			}
+			total += window.getCount();
+			statistics.add(StatisticsAccumulator.fromMoments(window.getCount(),
+					window.getMean(), window.getM2(), Double.NaN, Double.NaN));
+		}
+		/* Statistics can be merged only when no sample is dropped. */
+		if ((statistics == null) || (total > maxSamples)) {
+			return ImmutableBenchmarkRun.wrap(RingSnapshotRun.concatenate(windows, maxSamples));
+		}
+		return new RingSnapshotRun(windows, statistics);
+	}
+	
 }
-
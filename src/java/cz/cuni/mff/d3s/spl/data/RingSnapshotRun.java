@@ -0,0 +1,132 @@
+/*
+ * Copyright 2015 Charles University in Prague
+ * Copyright 2015 Vojtech Horky
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.cuni.mff.d3s.spl.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import cz.cuni.mff.d3s.spl.BenchmarkRun;
+import cz.cuni.mff.d3s.spl.SampleStatistics;
+import cz.cuni.mff.d3s.spl.utils.SampleRing;
+
+/** Run of an open ring whose samples are copied only when needed.
+ * 
+ * <p>
+ * The statistics come from the rings, thus evaluating e.g.
+ * {@link cz.cuni.mff.d3s.spl.interpretation.WelchTestInterpretation}
+ * does not depend on the number of samples. The minimum and maximum
+ * are not maintained by the rings and are unknown (NaN).
+ * 
+ * <p>
+ * The samples must still be in the rings when they are copied, thus
+ * this run is used only for rings that are never overwritten (copying
+ * overwritten samples fails with {@link IllegalStateException} rather
+ * than returning samples that do not match the statistics).
+ */
+class RingSnapshotRun implements BenchmarkRun {
+	private final List<SampleRing.Window> windows;
+	private final StatisticsAccumulator statistics;
+	private ImmutableBenchmarkRun samples = null;
+	
+	RingSnapshotRun(List<SampleRing.Window> windows, StatisticsAccumulator statistics) {
+		this.windows = windows;
+		this.statistics = statistics;
+	}
+	
+	private synchronized ImmutableBenchmarkRun getSamplesRun() {
+		if (samples == null) {
+			List<double[]> parts = new ArrayList<>(windows.size());
+			for (SampleRing.Window window : windows) {
+				parts.add(window.copySamples());
+			}
+			samples = ImmutableBenchmarkRun.wrap(join(parts, Integer.MAX_VALUE));
+		}
+		return samples;
+	}
+	
+	@Override
+	public Iterable<Double> getSamples() {
+		return getSamplesRun().getSamples();
+	}
+	
+	@Override
+	public int getSampleCount() {
+		return getSamplesRun().getSampleCount();
+	}
+	
+	@Override
+	public double getSample(int index) {
+		return getSamplesRun().getSample(index);
+	}
+	
+	@Override
+	public SampleStatistics getStatistics() {
+		return statistics;
+	}
+	
+	@Override
+	public QuantileSketch getQuantileSketch() {
+		return getSamplesRun().getQuantileSketch();
+	}
+	
+	/** Skip samples from the beginning.
+	 * 
+	 * @param count Number of samples to skip.
+	 * @return This run when nothing is skipped, copy of the remaining samples otherwise.
+	 */
+	BenchmarkRun skip(int count) {
+		if (count == 0) {
+			return this;
+		}
+		return getSamplesRun().skip(count);
+	}
+	
+	/** Copy samples of the windows one after another, keeping the last maxSamples.
+	 * 
+	 * <p>
+	 * Samples overwritten in the meantime are missing.
+	 */
+	static double[] concatenate(List<SampleRing.Window> windows, int maxSamples) {
+		List<double[]> parts = new ArrayList<>(windows.size());
+		for (SampleRing.Window window : windows) {
+			parts.add(window.copyRemainingSamples());
+		}
+		return join(parts, maxSamples);
+	}
+	
+	/** Join the parts one after another, keeping the last maxSamples. */
+	private static double[] join(List<double[]> parts, int maxSamples) {
+		long total = 0;
+		for (double[] part : parts) {
+			total += part.length;
+		}
+		if ((parts.size() == 1) && (total <= maxSamples)) {
+			return parts.get(0);
+		}
+		
+		int skip = (int) Math.max(0L, total - maxSamples);
+		double[] result = new double[(int) (total - skip)];
+		int position = 0;
+		for (double[] part : parts) {
+			int from = Math.min(skip, part.length);
+			skip -= from;
+			System.arraycopy(part, from, result, position, part.length - from);
+			position += part.length - from;
+		}
+		return result;
+	}
+}
@@ -0,0 +1,369 @@
+/*
+ * Copyright 2015 Charles University in Prague
+ * Copyright 2015 Vojtech Horky
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.cuni.mff.d3s.spl.data;
+
+import cz.cuni.mff.d3s.spl.BenchmarkRun;
+import cz.cuni.mff.d3s.spl.SampleStatistics;
+
+/** Streaming computation of basic statistics of samples.
+ *
+ * <p>
+ * The accumulator sees every sample exactly once and keeps only the
+ * sample count, mean and sums of powers of differences from the mean
+ * (M2, M3 and M4), thus it does not need to store the samples at all.
+ * The updates use the numerically stable formulas of Welford and
+ * Terriberry, two accumulators can be combined with formulas by Chan
+ * and Pebay.
+ *
+ * <p>
+ * This class is not thread-safe.
+ */
+public class StatisticsAccumulator implements SampleStatistics {
+	private long count = 0;
+	private double mean = 0.0;
+	private double m2 = 0.0;
+	private double m3 = 0.0;
+	private double m4 = 0.0;
+	private double min = Double.NaN;
+	private double max = Double.NaN;
+
+	/** Create an empty accumulator. */
+	public StatisticsAccumulator() {
+	}
+
+	/** Create accumulator from already known mean and M2.
+	 *
+	 * <p>
+	 * Skewness and kurtosis are unknown (NaN).
+	 *
+	 * @param count Number of samples.
+	 * @param mean Arithmetic mean of the samples.
+	 * @param m2 Sum of squared differences from the mean.
+	 * @param min Smallest sample (NaN when not known).
+	 * @param max Largest sample (NaN when not known).
+	 * @return New accumulator.
+	 */
+	static StatisticsAccumulator fromMoments(long count, double mean, double m2, double min, double max) {
+		StatisticsAccumulator result = new StatisticsAccumulator();
+		if (count > 0) {
+			result.count = count;
+			result.mean = mean;
+			result.m2 = m2;
+			result.m3 = Double.NaN;
+			result.m4 = Double.NaN;
+			result.min = min;
+			result.max = max;
+		}
+		return result;
+	}
+
+	/** Add a single sample.
+	 *
+	 * @param value Sample value.
+	 * @return This accumulator.
+	 */
+	public StatisticsAccumulator add(double value) {
+		long n1 = count;
+		count++;
+		double n = count;
+		double delta = value - mean;
+		double deltaN = delta / n;
+		double deltaN2 = deltaN * deltaN;
+		double term1 = delta * deltaN * n1;
+
+		mean += deltaN;
+		m4 += term1 * deltaN2 * (n * n - 3 * n + 3) + 6 * deltaN2 * m2 - 4 * deltaN * m3;
+		m3 += term1 * deltaN * (n - 2) - 3 * deltaN * m2;
+		m2 += term1;
+
+		if (n1 == 0) {
+			min = value;
+			max = value;
+		} else if (value < min) {
+			min = value;
+		} else if (value > max) {
+			max = value;
+		}
+
+		return this;
+	}
+
+	/** Add the same sample several times.
+	 *
+	 * <p>
+	 * The complexity does not depend on the weight.
+	 *
+	 * @param value Sample value.
+	 * @param weight How many times to add the value.
+	 * @return This accumulator.
+	 */
+	public StatisticsAccumulator add(double value, long weight) {
+		if (weight < 0) {
+			throw new IllegalArgumentException("Weight cannot be negative");
+		}
+		if (weight == 0) {
+			return this;
+		}
+		StatisticsAccumulator bucket = new StatisticsAccumulator();
+		bucket.count = weight;
+		bucket.mean = value;
+		bucket.min = value;
+		bucket.max = value;
+		return add(bucket);
+	}
+
+	/** Add multiple samples.
+	 *
+	 * @param values Sample values.
+	 * @return This accumulator.
+	 */
+	public StatisticsAccumulator add(double... values) {
+		for (double v : values) {
+			add(v);
+		}
+		return this;
+	}
+
+	/** Add all samples of a benchmark run.
+	 *
+	 * <p>
+	 * The run is not iterated, its precomputed statistics are used instead.
+	 *
+	 * @param run Benchmark run to add.
+	 * @return This accumulator.
+	 */
+	public StatisticsAccumulator add(BenchmarkRun run) {
+		return add(run.getStatistics());
+	}
+
+	/** Add all samples of a benchmark run one by one.
+	 *
+	 * <p>
+	 * Useful for implementations of {@link BenchmarkRun#getStatistics()}.
+	 *
+	 * @param run Benchmark run to add.
+	 * @return This accumulator.
+	 */
+	public StatisticsAccumulator addSamples(BenchmarkRun run) {
+		synchronized (run) {
+			int sampleCount = run.getSampleCount();
+			for (int i = 0; i < sampleCount; i++) {
+				add(run.getSample(i));
+			}
+		}
+		return this;
+	}
+
+	/** Add all samples of all given runs.
+	 *
+	 * @param runs Benchmark runs to add.
+	 * @return This accumulator.
+	 */
+	public StatisticsAccumulator addAll(Iterable<BenchmarkRun> runs) {
+		synchronized (runs) {
+			for (BenchmarkRun run : runs) {
+				add(run);
+			}
+		}
+		return this;
+	}
+
+	/** Add all samples described by given statistics.
+	 *
+	 * <p>
+	 * Skewness and kurtosis become unknown (NaN) unless the statistics
+	 * come from another accumulator.
+	 *
+	 * @param other Statistics to merge into this accumulator.
+	 * @return This accumulator.
+	 */
+	public StatisticsAccumulator add(SampleStatistics other) {
+		if (other instanceof StatisticsAccumulator) {
+			return add((StatisticsAccumulator) other);
+		}
+		StatisticsAccumulator converted = new StatisticsAccumulator();
+		converted.count = other.getCount();
+		if (converted.count > 0) {
+			converted.mean = other.getMean();
+			converted.m2 = other.getVarianceN() * converted.count;
+			/* Higher moments are not known. */
+			converted.m3 = Double.NaN;
+			converted.m4 = Double.NaN;
+			converted.min = other.getMin();
+			converted.max = other.getMax();
+		}
+		return add(converted);
+	}
+
+	/** Add all samples seen by another accumulator.
+	 *
+	 * <p>
+	 * The result is the same (up to rounding errors) as if the samples
+	 * were added to this accumulator one by one.
+	 *
+	 * @param other Accumulator to merge into this one.
+	 * @return This accumulator.
+	 */
+	public StatisticsAccumulator add(StatisticsAccumulator other) {
+		if (other.count == 0) {
+			return this;
+		}
+		if (count == 0) {
+			count = other.count;
+			mean = other.mean;
+			m2 = other.m2;
+			m3 = other.m3;
+			m4 = other.m4;
+			min = other.min;
+			max = other.max;
+			return this;
+		}
+
+		double na = count;
+		double nb = other.count;
+		double n = na + nb;
+		double delta = other.mean - mean;
+		double delta2 = delta * delta;
+		double delta3 = delta2 * delta;
+		double delta4 = delta2 * delta2;
+
+		double newMean = mean + delta * nb / n;
+		double newM2 = m2 + other.m2 + delta2 * na * nb / n;
+		double newM3 = m3 + other.m3
+				+ delta3 * na * nb * (na - nb) / (n * n)
+				+ 3 * delta * (na * other.m2 - nb * m2) / n;
+		double newM4 = m4 + other.m4
+				+ delta4 * na * nb * (na * na - na * nb + nb * nb) / (n * n * n)
+				+ 6 * delta2 * (na * na * other.m2 + nb * nb * m2) / (n * n)
+				+ 4 * delta * (na * other.m3 - nb * m3) / n;
+
+		count += other.count;
+		mean = newMean;
+		m2 = newM2;
+		m3 = newM3;
+		m4 = newM4;
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+
+		return this;
+	}
+
+	/** Tell number of samples.
+	 *
+	 * @return Number of samples added so far.
+	 */
+	@Override
+	public long getCount() {
+		return count;
+	}
+
+	/** Compute sum of the samples.
+	 *
+	 * @return Sum of all samples.
+	 */
+	@Override
+	public double getSum() {
+		return mean * count;
+	}
+
+	/** Compute sum of squares of the samples.
+	 *
+	 * @return Sum of squares of all samples.
+	 */
+	@Override
+	public double getSumOfSquares() {
+		return m2 + mean * mean * count;
+	}
+
+	/** Compute arithmetic mean of the samples.
+	 *
+	 * @return Arithmetic mean, NaN when there are no samples.
+	 */
+	@Override
+	public double getMean() {
+		if (count == 0) {
+			return Double.NaN;
+		}
+		return mean;
+	}
+
+	/** Compute variance of the samples with bias correction.
+	 *
+	 * @return Variance, zero for single sample and NaN when there are no samples.
+	 */
+	@Override
+	public double getVariance() {
+		if (count == 0) {
+			return Double.NaN;
+		} else if (count == 1) {
+			return 0.0;
+		}
+		return m2 / (count - 1);
+	}
+
+	/** Compute variance of the samples without bias correction.
+	 *
+	 * @return Variance, NaN when there are no samples.
+	 */
+	@Override
+	public double getVarianceN() {
+		if (count == 0) {
+			return Double.NaN;
+		}
+		return m2 / count;
+	}
+
+	/** Compute (population) skewness of the samples.
+	 *
+	 * @return Skewness, NaN when there are no samples or all are the same.
+	 */
+	public double getSkewness() {
+		if ((count == 0) || (m2 == 0.0)) {
+			return Double.NaN;
+		}
+		return Math.sqrt((double) count) * m3 / Math.pow(m2, 1.5);
+	}
+
+	/** Compute (population) excess kurtosis of the samples.
+	 *
+	 * @return Excess kurtosis, NaN when there are no samples or all are the same.
+	 */
+	public double getKurtosis() {
+		if ((count == 0) || (m2 == 0.0)) {
+			return Double.NaN;
+		}
+		return count * m4 / (m2 * m2) - 3.0;
+	}
+
+	/** Tell the smallest sample.
+	 *
+	 * @return Minimum, NaN when there are no samples or it is not known.
+	 */
+	@Override
+	public double getMin() {
+		return min;
+	}
+
+	/** Tell the largest sample.
+	 *
+	 * @return Maximum, NaN when there are no samples or it is not known.
+	 */
+	@Override
+	public double getMax() {
+		return max;
+	}
+}
@@ -0,0 +1,102 @@
+package cz.cuni.mff.d3s.spl.data.readers;
+
+import cz.cuni.mff.d3s.spl.DataReader.ReaderException;
+import cz.cuni.mff.d3s.spl.DataSource;
+import org.apache.commons.cli.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Command-line tool converting revision data into the binary format.
+ *
+ * All input files are read as one revision by the reader for the given
+ * format and written into a single output file that can be read by
+ * {@link BinaryRevisionReader}. Revision name stored in the file defaults
+ * to the name of the output file.
+ */
+public class BinaryFormatConverter {
+	public static void main(String[] args) {
+		CommandLineParser parser = new DefaultParser();
+		Options options = createOptions();
+
+		try {
+			CommandLine line = parser.parse(options, args);
+
+			String format = line.getOptionValue("format", "jmh");
+			File output = new File(line.getOptionValue("output"));
+			String revision = line.getOptionValue("revision", output.getName());
+			String[] inputNames = line.getArgs();
+			if (inputNames.length == 0) {
+				throw new ParseException("No input files given.");
+			}
+
+			File[] inputs = new File[inputNames.length];
+			for (int i = 0; i < inputNames.length; i++) {
+				inputs[i] = new File(inputNames[i]);
+			}
+
+			Map<String, DataSource> data = getReader(format).readRevision(inputs);
+			BinaryRevisionWriter.write(output, revision, data);
+		} catch (ParseException e) {
+			System.err.println("Parsing failed. Reason: " + e.getMessage());
+			printHelp(options);
+		} catch (ReaderException e) {
+			System.err.println("Cannot read measured data. Reason: " + e.getMessage());
+		} catch (IOException e) {
+			System.err.println("Cannot write output file. Reason: " + e.getMessage());
+		}
+	}
+
+	private static RevisionReader getReader(String format) throws ParseException {
+		switch (format) {
+			case "jmh":
+				return new JmhJsonRevisionReader();
+			case "lines":
+				return new LineOrientedRevisionReader();
+			case "numbers":
+				return new NumbersOnlyRevisionReader();
+			default:
+				throw new ParseException("Unknown input format: " + format);
+		}
+	}
+
+	private static void printHelp(Options options) {
+		String header = "Convert measured data into the binary format.";
+		String footer = "";
+		HelpFormatter helpFormatter = new HelpFormatter();
+		helpFormatter.printHelp("spl-convert [options] input...", header, options, footer, false);
+	}
+
+	private static Options createOptions() {
+		Options options = new Options();
+
+		options.addOption(Option.builder("f")
+				.longOpt("format")
+				.hasArg()
+				.argName("jmh|lines|numbers")
+				.desc("Format of input files (default jmh).")
+				.build()
+		);
+
+		options.addOption(Option.builder("o")
+				.longOpt("output")
+				.hasArg()
+				.argName("file")
+				.required()
+				.desc("Output file in the binary format.")
+				.build()
+		);
+
+		options.addOption(Option.builder("r")
+				.longOpt("revision")
+				.hasArg()
+				.argName("name")
+				.desc("Revision name stored in the output (default is output file name).")
+				.build()
+		);
+
+		return options;
+	}
+}
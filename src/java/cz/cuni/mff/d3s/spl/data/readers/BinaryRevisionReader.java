@@ -0,0 +1,296 @@
+package cz.cuni.mff.d3s.spl.data.readers;
+
+import cz.cuni.mff.d3s.spl.DataReader.ReaderException;
+import cz.cuni.mff.d3s.spl.DataSource;
+import cz.cuni.mff.d3s.spl.data.BuilderDataSource;
+import cz.cuni.mff.d3s.spl.data.DataSnapshotBuilder;
+import cz.cuni.mff.d3s.spl.data.DoubleBufferBenchmarkRun;
+import cz.cuni.mff.d3s.spl.data.HistogramBenchmarkRun;
+import cz.cuni.mff.d3s.spl.utils.Factory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reader for the compact binary format of revision data.
+ *
+ * The files are memory-mapped and the runs read the samples directly
+ * from the mapping, thus opening a revision is cheap and the data are
+ * shared (through page cache) by all processes reading the same file.
+ * Files can be created by {@link BinaryRevisionWriter} or the
+ * {@link BinaryFormatConverter} tool.
+ *
+ * All numbers are little-endian, the layout is the following:
+ * <pre>
+ * magic "SPLB", version (int32)
+ * revision name (string)
+ * benchmark count (int32)
+ * for each benchmark:
+ *     key (string), run count (int32)
+ *     for each run: kind (int32), count (int32), data offset (int64),
+ *                   iteration count (int32, -1 when unknown), iterations offset (int64)
+ * padding to 8 bytes
+ * data: for sample runs count doubles,
+ *       for histogram runs count values (doubles) and count counts (int64),
+ *       iteration starts (int32) padded to 8 bytes
+ * </pre>
+ * Strings are stored as length (int32) followed by UTF-8 bytes.
+ * Files of version 1 have no iteration fields in the run descriptions.
+ *
+ * Files up to 2 GB are mapped at once, data of larger files are mapped
+ * per run.
+ *
+ * When multiple files are given, runs of the same benchmark are merged.
+ */
+public class BinaryRevisionReader implements IndexedRevisionReader {
+	/**
+	 * Size of run description in the header of version 1 files (kind, count and offset).
+	 */
+	private static final int RUN_HEADER_SIZE_V1 = 4 + 4 + 8;
+
+	/**
+	 * Memory-mapped file, whole or only its beginning with the header.
+	 */
+	private static class MappedFile implements AutoCloseable {
+		private final File file;
+		private final FileChannel channel;
+		private final long size;
+		/* Mapping from the beginning of the file (at most 2 GB). */
+		private final ByteBuffer data;
+
+		MappedFile(File file) throws IOException {
+			this.file = file;
+			channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+			try {
+				size = channel.size();
+				data = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, Integer.MAX_VALUE))
+						.order(ByteOrder.LITTLE_ENDIAN);
+			} catch (IOException e) {
+				channel.close();
+				throw e;
+			}
+		}
+
+		/**
+		 * Get part of the file as a separate (little-endian) buffer.
+		 */
+		ByteBuffer slice(long offset, long length) throws IOException {
+			if ((offset < 0) || (length < 0) || (offset + length > size)) {
+				throw new IndexOutOfBoundsException("Data outside of the file");
+			}
+			if (offset + length <= data.limit()) {
+				ByteBuffer result = data.duplicate();
+				result.position((int) offset);
+				result.limit((int) (offset + length));
+				return result.slice().order(ByteOrder.LITTLE_ENDIAN);
+			}
+			if (length > Integer.MAX_VALUE) {
+				throw new IOException("Run too large to be mapped in " + file.getName());
+			}
+			return channel.map(FileChannel.MapMode.READ_ONLY, offset, length).order(ByteOrder.LITTLE_ENDIAN);
+		}
+
+		/**
+		 * Check the magic and read the version.
+		 */
+		int readVersion() throws ReaderException {
+			int version = (data.getInt() == BinaryRevisionWriter.MAGIC) ? data.getInt() : 0;
+			if ((version < 1) || (version > BinaryRevisionWriter.VERSION)) {
+				throw new ReaderException("Not a binary revision file: " + file.getName());
+			}
+			return version;
+		}
+
+		@Override
+		public void close() throws IOException {
+			/* Mappings stay valid after the channel is closed. */
+			channel.close();
+		}
+	}
+
+	/**
+	 * Read one revision from given files.
+	 *
+	 * @param files Input files in the binary format
+	 * @return Data with benchmark keys
+	 * @throws ReaderException On reading or format error
+	 */
+	@Override
+	public Map<String, DataSource> readRevision(File... files) throws ReaderException {
+		Map<String, DataSnapshotBuilder> builders = new LinkedHashMap<>();
+
+		for (File file : files) {
+			try {
+				readFile(file, builders);
+			} catch (NoSuchFileException e) {
+				throw new ReaderException("File not found: " + e.getMessage());
+			} catch (IOException e) {
+				throw new ReaderException("IO error: " + e.getMessage());
+			} catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+				throw new ReaderException("Corrupted file: " + file.getName());
+			}
+		}
+
+		Map<String, DataSource> result = new HashMap<>();
+		for (Map.Entry<String, DataSnapshotBuilder> benchmark : builders.entrySet()) {
+			result.put(benchmark.getKey(), new BuilderDataSource(benchmark.getValue()));
+		}
+		return result;
+	}
+
+	/**
+	 * Read benchmark keys from headers of given files.
+	 *
+	 * @param files Input files in the binary format
+	 * @return Benchmark keys
+	 * @throws ReaderException On reading or format error
+	 */
+	@Override
+	public Set<String> readBenchmarkKeys(File... files) throws ReaderException {
+		Set<String> result = new LinkedHashSet<>();
+
+		for (File file : files) {
+			try (MappedFile mapped = new MappedFile(file)) {
+				ByteBuffer data = mapped.data;
+				int runHeaderSize = getRunHeaderSize(mapped.readVersion());
+				getString(data);
+				int benchmarkCount = data.getInt();
+				for (int b = 0; b < benchmarkCount; b++) {
+					result.add(getString(data));
+					int runCount = data.getInt();
+					long runsEnd = data.position() + (long) runCount * runHeaderSize;
+					if ((runCount < 0) || (runsEnd > data.limit())) {
+						throw new ReaderException("Corrupted file: " + file.getName());
+					}
+					data.position((int) runsEnd);
+				}
+			} catch (NoSuchFileException e) {
+				throw new ReaderException("File not found: " + e.getMessage());
+			} catch (IOException e) {
+				throw new ReaderException("IO error: " + e.getMessage());
+			} catch (BufferUnderflowException | IllegalArgumentException e) {
+				throw new ReaderException("Corrupted file: " + file.getName());
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Keys are stored in the file headers.
+	 *
+	 * @param files Input files in the binary format
+	 * @return Always true
+	 */
+	@Override
+	public boolean isIndexed(File... files) {
+		return true;
+	}
+
+	/**
+	 * Read revision name stored in a file.
+	 *
+	 * @param file File in the binary format.
+	 * @return Revision name from the header.
+	 * @throws ReaderException On reading or format error
+	 */
+	public static String readRevisionName(File file) throws ReaderException {
+		try (MappedFile mapped = new MappedFile(file)) {
+			mapped.readVersion();
+			return getString(mapped.data);
+		} catch (IOException e) {
+			throw new ReaderException("IO error: " + e.getMessage());
+		} catch (BufferUnderflowException | IllegalArgumentException e) {
+			throw new ReaderException("Corrupted file: " + file.getName());
+		}
+	}
+
+	public static class RevisionFactory implements Factory<BinaryRevisionReader> {
+		@Override
+		public BinaryRevisionReader getInstance() {
+			return new BinaryRevisionReader();
+		}
+	}
+
+	private static void readFile(File file, Map<String, DataSnapshotBuilder> builders)
+			throws IOException, ReaderException {
+		try (MappedFile mapped = new MappedFile(file)) {
+			ByteBuffer data = mapped.data;
+			int version = mapped.readVersion();
+			getString(data);
+
+			int benchmarkCount = data.getInt();
+			for (int b = 0; b < benchmarkCount; b++) {
+				String key = getString(data);
+				DataSnapshotBuilder builder = builders.get(key);
+				if (builder == null) {
+					builder = new DataSnapshotBuilder();
+					builders.put(key, builder);
+				}
+
+				int runCount = data.getInt();
+				for (int r = 0; r < runCount; r++) {
+					int kind = data.getInt();
+					int count = data.getInt();
+					long offset = data.getLong();
+					int iterationCount = BinaryRevisionWriter.NO_ITERATIONS;
+					long iterationsOffset = 0;
+					if (version >= BinaryRevisionWriter.VERSION_ITERATIONS) {
+						iterationCount = data.getInt();
+						iterationsOffset = data.getLong();
+					}
+					if ((count < 0) || (offset < 0) || ((offset & 7) != 0)
+							|| (iterationCount < BinaryRevisionWriter.NO_ITERATIONS)) {
+						throw new ReaderException("Corrupted run header in " + file.getName());
+					}
+
+					int[] iterations = null;
+					if (iterationCount != BinaryRevisionWriter.NO_ITERATIONS) {
+						iterations = new int[iterationCount];
+						mapped.slice(iterationsOffset, iterationCount * 4L).asIntBuffer().get(iterations);
+					}
+
+					if (kind == BinaryRevisionWriter.KIND_SAMPLES) {
+						builder.addRun(new DoubleBufferBenchmarkRun(
+								mapped.slice(offset, count * 8L).asDoubleBuffer(), iterations));
+					} else if (kind == BinaryRevisionWriter.KIND_HISTOGRAM) {
+						double[] values = new double[count];
+						long[] counts = new long[count];
+						mapped.slice(offset, count * 8L).asDoubleBuffer().get(values);
+						mapped.slice(offset + count * 8L, count * 8L).asLongBuffer().get(counts);
+						builder.addRun(new HistogramBenchmarkRun(values, counts, iterations));
+					} else {
+						throw new ReaderException("Unknown run kind " + kind + " in " + file.getName());
+					}
+				}
+			}
+		}
+	}
+
+	private static int getRunHeaderSize(int version) {
+		return version >= BinaryRevisionWriter.VERSION_ITERATIONS
+				? BinaryRevisionWriter.RUN_HEADER_SIZE : RUN_HEADER_SIZE_V1;
+	}
+
+	private static String getString(ByteBuffer data) {
+		int length = data.getInt();
+		if (length < 0) {
+			throw new IllegalArgumentException("Negative string length");
+		}
+		byte[] bytes = new byte[length];
+		data.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,193 @@
+package cz.cuni.mff.d3s.spl.data.readers;
+
+import cz.cuni.mff.d3s.spl.BenchmarkRun;
+import cz.cuni.mff.d3s.spl.DataSnapshot;
+import cz.cuni.mff.d3s.spl.DataSource;
+import cz.cuni.mff.d3s.spl.data.BenchmarkRunUtils;
+import cz.cuni.mff.d3s.spl.data.HistogramBenchmarkRun;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Writer of the binary revision format read by {@link BinaryRevisionReader}.
+ *
+ * Benchmarks are written in the order of their keys. Histogram runs
+ * are stored as histograms, all other runs as plain samples. Iteration
+ * starts are stored when the run knows them.
+ */
+public class BinaryRevisionWriter {
+	/** File magic ("SPLB"). */
+	static final int MAGIC = 0x424C5053;
+
+	/** Format version. */
+	static final int VERSION = 2;
+
+	/** First version with iteration starts, older files are still readable. */
+	static final int VERSION_ITERATIONS = 2;
+
+	/** Iteration count of runs whose iterations are not known. */
+	static final int NO_ITERATIONS = -1;
+
+	/** Size of run description in the header (kind, count, offset, iteration count and offset). */
+	static final int RUN_HEADER_SIZE = 4 + 4 + 8 + 4 + 8;
+
+	/** Run stored as plain samples. */
+	static final int KIND_SAMPLES = 0;
+
+	/** Run stored as a histogram (values followed by counts). */
+	static final int KIND_HISTOGRAM = 1;
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Write one revision into a file.
+	 *
+	 * @param file Output file (overwritten).
+	 * @param revision Revision name stored in the header.
+	 * @param data Benchmark data of the revision.
+	 * @throws IOException On writing error.
+	 */
+	public static void write(File file, String revision, Map<String, DataSource> data) throws IOException {
+		Map<String, List<BenchmarkRun>> benchmarks = new TreeMap<>();
+		for (Map.Entry<String, DataSource> benchmark : data.entrySet()) {
+			DataSnapshot snapshot = benchmark.getValue().makeSnapshot();
+			List<BenchmarkRun> runs = new ArrayList<>(snapshot.getRunCount());
+			for (BenchmarkRun run : snapshot.getRuns()) {
+				runs.add(run);
+			}
+			benchmarks.put(benchmark.getKey(), runs);
+		}
+
+		byte[] revisionBytes = revision.getBytes(StandardCharsets.UTF_8);
+		long headerSize = 4 + 4 + 4 + revisionBytes.length + 4;
+		for (Map.Entry<String, List<BenchmarkRun>> benchmark : benchmarks.entrySet()) {
+			headerSize += 4 + benchmark.getKey().getBytes(StandardCharsets.UTF_8).length + 4;
+			headerSize += benchmark.getValue().size() * (long) RUN_HEADER_SIZE;
+		}
+		headerSize = align(headerSize);
+		if (headerSize > Integer.MAX_VALUE) {
+			throw new IOException("Header too large");
+		}
+
+		ByteBuffer header = ByteBuffer.allocate((int) headerSize).order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(MAGIC);
+		header.putInt(VERSION);
+		putString(header, revisionBytes);
+		header.putInt(benchmarks.size());
+
+		long offset = headerSize;
+		for (Map.Entry<String, List<BenchmarkRun>> benchmark : benchmarks.entrySet()) {
+			putString(header, benchmark.getKey().getBytes(StandardCharsets.UTF_8));
+			header.putInt(benchmark.getValue().size());
+			for (BenchmarkRun run : benchmark.getValue()) {
+				int count;
+				if (run instanceof HistogramBenchmarkRun) {
+					count = ((HistogramBenchmarkRun) run).getBucketCount();
+					header.putInt(KIND_HISTOGRAM);
+				} else {
+					count = run.getSampleCount();
+					header.putInt(KIND_SAMPLES);
+				}
+				/* Each array must fit into a single buffer when read. */
+				if (count * 8L > Integer.MAX_VALUE) {
+					throw new IOException("Run of " + benchmark.getKey() + " too large for the binary format");
+				}
+				header.putInt(count);
+				header.putLong(offset);
+				offset += (run instanceof HistogramBenchmarkRun ? 16L : 8L) * count;
+
+				int[] iterations = BenchmarkRunUtils.getIterationStarts(run);
+				header.putInt(iterations == null ? NO_ITERATIONS : iterations.length);
+				header.putLong(offset);
+				if (iterations != null) {
+					offset += align(iterations.length * 4L);
+				}
+			}
+		}
+		/* Write the whole buffer including the padding. */
+		header.rewind();
+
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE,
+				StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			writeFully(channel, header);
+
+			ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			for (List<BenchmarkRun> runs : benchmarks.values()) {
+				for (BenchmarkRun run : runs) {
+					if (run instanceof HistogramBenchmarkRun) {
+						HistogramBenchmarkRun histogram = (HistogramBenchmarkRun) run;
+						for (int i = 0; i < histogram.getBucketCount(); i++) {
+							buffer = putDouble(channel, buffer, histogram.getBucketValue(i));
+						}
+						for (int i = 0; i < histogram.getBucketCount(); i++) {
+							buffer = putLong(channel, buffer, histogram.getBucketSampleCount(i));
+						}
+					} else {
+						synchronized (run) {
+							int count = run.getSampleCount();
+							for (int i = 0; i < count; i++) {
+								buffer = putDouble(channel, buffer, run.getSample(i));
+							}
+						}
+					}
+					int[] iterations = BenchmarkRunUtils.getIterationStarts(run);
+					if (iterations != null) {
+						for (int i = 0; i < iterations.length; i += 2) {
+							long low = iterations[i] & 0xFFFFFFFFL;
+							long high = i + 1 < iterations.length ? iterations[i + 1] : 0;
+							buffer = putLong(channel, buffer, low | (high << 32));
+						}
+					}
+				}
+			}
+			buffer.flip();
+			writeFully(channel, buffer);
+		}
+	}
+
+	/**
+	 * Round up to a multiple of 8 (size of a double).
+	 */
+	static long align(long position) {
+		return (position + 7) & ~7L;
+	}
+
+	private static void putString(ByteBuffer buffer, byte[] bytes) {
+		buffer.putInt(bytes.length);
+		buffer.put(bytes);
+	}
+
+	private static ByteBuffer putDouble(FileChannel channel, ByteBuffer buffer, double value) throws IOException {
+		if (buffer.remaining() < 8) {
+			buffer.flip();
+			writeFully(channel, buffer);
+			buffer.clear();
+		}
+		return buffer.putDouble(value);
+	}
+
+	private static ByteBuffer putLong(FileChannel channel, ByteBuffer buffer, long value) throws IOException {
+		if (buffer.remaining() < 8) {
+			buffer.flip();
+			writeFully(channel, buffer);
+			buffer.clear();
+		}
+		return buffer.putLong(value);
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+}
@@ -0,0 +1,297 @@
+package cz.cuni.mff.d3s.spl.data.readers;
+
+import cz.cuni.mff.d3s.spl.DataReader.ReaderException;
+import cz.cuni.mff.d3s.spl.DataSource;
+import cz.cuni.mff.d3s.spl.utils.Factory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Revision reader that keeps parsed revisions in a cache directory.
+ *
+ * Parsed data are stored in the binary format of {@link BinaryRevisionReader}
+ * under a name derived from hash of the input files content (and the type
+ * of the parsing reader). Finding the entry would require reading all the
+ * input files, thus a small index entry keyed by path, size and modification
+ * time of the files points to the data entry. When any of the files
+ * changes, the index entry is not found, the content is hashed again and
+ * the data are parsed only when the content is really different (e.g. a
+ * fresh checkout of unchanged files only updates the index).
+ *
+ * Entries are written to temporary files and atomically renamed, thus
+ * the cache can be shared by concurrent readers. Damaged entries are
+ * ignored and replaced. Stale entries are never removed, the directory
+ * can be safely deleted at any time.
+ *
+ * Benchmark keys are taken from the cached entry (the files are parsed
+ * and stored when not cached yet), reading them is cheap as the data
+ * are only mapped into memory. Files are reported as indexed only when
+ * they are already cached.
+ */
+public class CachingRevisionReader implements IndexedRevisionReader {
+	/**
+	 * Version of cache layout, part of all keys.
+	 */
+	private static final String CACHE_VERSION = "2";
+
+	private static final String DATA_SUFFIX = ".bin";
+
+	private static final String INDEX_SUFFIX = ".key";
+
+	private static final int HASH_BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Reader used to parse files missing in the cache.
+	 */
+	private final RevisionReader parser;
+
+	/**
+	 * Directory with cache entries.
+	 */
+	private final File cacheDir;
+
+	/**
+	 * Reader of the cached entries.
+	 */
+	private final BinaryRevisionReader cacheReader = new BinaryRevisionReader();
+
+	/**
+	 * Create caching wrapper of given reader.
+	 *
+	 * @param parser Reader for files not found in the cache.
+	 * @param cacheDir Existing directory where to store parsed data.
+	 */
+	public CachingRevisionReader(RevisionReader parser, File cacheDir) {
+		this.parser = parser;
+		this.cacheDir = cacheDir;
+	}
+
+	/**
+	 * Read one revision from cache, parse the files when they are not cached.
+	 *
+	 * @param files Input files with raw data
+	 * @return Data as returned by the wrapped reader
+	 * @throws ReaderException On reading or parsing error
+	 */
+	@Override
+	public Map<String, DataSource> readRevision(File... files) throws ReaderException {
+		String fingerprintKey;
+		try {
+			fingerprintKey = getFingerprintKey(files);
+		} catch (NoSuchFileException e) {
+			throw new ReaderException("File not found: " + e.getMessage());
+		} catch (IOException e) {
+			throw new ReaderException("IO error: " + e.getMessage());
+		}
+
+		File index = new File(cacheDir, fingerprintKey + INDEX_SUFFIX);
+		String contentKey = readIndex(index);
+		if (contentKey != null) {
+			Map<String, DataSource> cached = readCached(contentKey);
+			if (cached != null) {
+				return cached;
+			}
+		}
+
+		try {
+			contentKey = getContentKey(files);
+		} catch (IOException e) {
+			throw new ReaderException("IO error: " + e.getMessage());
+		}
+
+		Map<String, DataSource> cached = readCached(contentKey);
+		if (cached == null) {
+			Map<String, DataSource> result = parser.readRevision(files);
+			try {
+				File data = new File(cacheDir, contentKey + DATA_SUFFIX);
+				File temp = File.createTempFile("revision", ".tmp", cacheDir);
+				try {
+					BinaryRevisionWriter.write(temp, files.length == 1 ? files[0].getName() : "", result);
+					moveAtomically(temp, data);
+				} finally {
+					temp.delete();
+				}
+				writeIndex(index, contentKey);
+			} catch (IOException e) {
+				System.err.printf("Cannot store revision in cache. Reason: %s%n", e.getMessage());
+			}
+			return result;
+		}
+
+		try {
+			writeIndex(index, contentKey);
+		} catch (IOException e) {
+			System.err.printf("Cannot update cache index. Reason: %s%n", e.getMessage());
+		}
+		return cached;
+	}
+
+	/**
+	 * Read benchmark keys of one revision, the files are parsed (and
+	 * stored in the cache) only when not cached yet.
+	 *
+	 * @param files Input files with raw data
+	 * @return Benchmark keys as returned by readRevision
+	 * @throws ReaderException On reading or parsing error
+	 */
+	@Override
+	public Set<String> readBenchmarkKeys(File... files) throws ReaderException {
+		return new LinkedHashSet<>(readRevision(files).keySet());
+	}
+
+	/**
+	 * Tell whether the files are already cached (under their current
+	 * path, size and modification time), the content is not hashed.
+	 *
+	 * @param files Input files with raw data
+	 * @return Whether the keys are read from the cache
+	 */
+	@Override
+	public boolean isIndexed(File... files) {
+		String contentKey;
+		try {
+			contentKey = readIndex(new File(cacheDir, getFingerprintKey(files) + INDEX_SUFFIX));
+		} catch (IOException e) {
+			return false;
+		}
+		return (contentKey != null) && new File(cacheDir, contentKey + DATA_SUFFIX).isFile();
+	}
+
+	public static class RevisionFactory implements Factory<CachingRevisionReader> {
+		private final Factory<? extends RevisionReader> parserFactory;
+		private final File cacheDir;
+
+		/**
+		 * @param parserFactory Factory of readers parsing uncached files.
+		 * @param cacheDir Existing directory where to store parsed data.
+		 */
+		public RevisionFactory(Factory<? extends RevisionReader> parserFactory, File cacheDir) {
+			this.parserFactory = parserFactory;
+			this.cacheDir = cacheDir;
+		}
+
+		@Override
+		public CachingRevisionReader getInstance() {
+			return new CachingRevisionReader(parserFactory.getInstance(), cacheDir);
+		}
+	}
+
+	/**
+	 * Read cached data.
+	 *
+	 * @return Cached data or null when the entry is missing or damaged.
+	 */
+	private Map<String, DataSource> readCached(String contentKey) {
+		File data = new File(cacheDir, contentKey + DATA_SUFFIX);
+		if (!data.isFile()) {
+			return null;
+		}
+		try {
+			return cacheReader.readRevision(data);
+		} catch (ReaderException e) {
+			System.err.printf("Ignoring unreadable cache entry %s. Reason: %s%n", data.getName(), e.getMessage());
+			return null;
+		}
+	}
+
+	private static String readIndex(File index) {
+		try {
+			String key = new String(Files.readAllBytes(index.toPath()), StandardCharsets.US_ASCII).trim();
+			return key.isEmpty() ? null : key;
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	private void writeIndex(File index, String contentKey) throws IOException {
+		File temp = File.createTempFile("index", ".tmp", cacheDir);
+		try {
+			Files.write(temp.toPath(), contentKey.getBytes(StandardCharsets.US_ASCII));
+			moveAtomically(temp, index);
+		} finally {
+			temp.delete();
+		}
+	}
+
+	private static void moveAtomically(File source, File target) throws IOException {
+		try {
+			Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Compute key from paths, sizes and modification times of the files.
+	 */
+	private String getFingerprintKey(File... files) throws IOException {
+		MessageDigest digest = createDigest();
+		update(digest, parser.getClass().getName());
+		for (File file : files) {
+			if (!file.isFile()) {
+				throw new NoSuchFileException(file.getPath());
+			}
+			update(digest, file.getAbsolutePath());
+			update(digest, Long.toString(file.length()));
+			update(digest, Long.toString(file.lastModified()));
+		}
+		return toHex(digest.digest());
+	}
+
+	/**
+	 * Compute key from content of the files.
+	 */
+	private String getContentKey(File... files) throws IOException {
+		MessageDigest digest = createDigest();
+		update(digest, parser.getClass().getName());
+		ByteBuffer buffer = ByteBuffer.allocate(HASH_BUFFER_SIZE);
+		for (File file : files) {
+			update(digest, Long.toString(file.length()));
+			try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+				while (channel.read(buffer) != -1) {
+					buffer.flip();
+					digest.update(buffer);
+					buffer.clear();
+				}
+			}
+		}
+		return toHex(digest.digest());
+	}
+
+	private static MessageDigest createDigest() {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			update(digest, CACHE_VERSION);
+			return digest;
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is always available", e);
+		}
+	}
+
+	private static void update(MessageDigest digest, String value) {
+		digest.update(value.getBytes(StandardCharsets.UTF_8));
+		digest.update((byte) 0);
+	}
+
+	private static String toHex(byte[] bytes) {
+		StringBuilder result = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			result.append(String.format("%02x", b & 0xFF));
+		}
+		return result.toString();
+	}
+}
@@ -0,0 +1,33 @@
+package cz.cuni.mff.d3s.spl.data.readers;
+
+import cz.cuni.mff.d3s.spl.DataReader;
+
+import java.io.File;
+import java.util.Set;
+
+/**
+ * Revision reader that can tell which benchmarks are in the files
+ * without reading their data.
+ *
+ * Used for lazy loading of revisions, the keys must be the same as
+ * the keys returned by {@link #readRevision(File...)}.
+ */
+public interface IndexedRevisionReader extends RevisionReader {
+
+	/**
+	 * Read keys of benchmarks stored in given files.
+	 *
+	 * @param files Input files with raw data
+	 * @return Benchmark keys as would be returned by readRevision
+	 */
+	Set<String> readBenchmarkKeys(File... files) throws DataReader.ReaderException;
+
+	/**
+	 * Tell whether keys of given files can be read without parsing their data
+	 * (the data may still be scanned over).
+	 *
+	 * @param files Input files with raw data
+	 * @return Whether {@link #readBenchmarkKeys(File...)} is cheap for the files
+	 */
+	boolean isIndexed(File... files);
+}
@@ -5,17 +5,26 @@ import cz.cuni.mff.d3s.spl.DataSource;
 import cz.cuni.mff.d3s.spl.data.BenchmarkRunBuilder;
 import cz.cuni.mff.d3s.spl.data.BuilderDataSource;
 import cz.cuni.mff.d3s.spl.data.DataSnapshotBuilder;
+import cz.cuni.mff.d3s.spl.data.HistogramBenchmarkRunBuilder;
 import cz.cuni.mff.d3s.spl.utils.Factory;
 import cz.cuni.mff.d3s.spl.DataReader.ReaderException;
 
-import javax.json.*;
+import javax.json.Json;
+import javax.json.JsonException;
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParser.Event;
 import javax.json.stream.JsonParsingException;
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.util.AbstractMap;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Reader for new JSON format of JMH generated data.
@@ -26,8 +35,15 @@ import java.util.Map;
  * this file format each benchmark has a name in source file, so it's
  * the key in the results. Note, that benchmark name must be unique
  * across all provided files!
+ *
+ * The files are read with a streaming parser and the samples are stored
+ * directly into primitive buffers, the whole document is never built in
+ * memory. Everything except benchmark name, mode, params and raw data
+ * of the primary metric is skipped. Each fork is stored as a separate
+ * benchmark run. When only benchmark keys are requested, the primary
+ * metric is skipped as well.
  */
-public class JmhJsonRevisionReader implements RevisionReader {
+public class JmhJsonRevisionReader implements IndexedRevisionReader {
 
 	/**
 	 * Read one revision from given files. There are multiple benchmark
@@ -41,38 +57,76 @@ public class JmhJsonRevisionReader implements RevisionReader {
 	@Override
 	public Map<String, DataSource> readRevision(File... files) throws ReaderException {
 		Map<String, DataSource> result = new HashMap<>();
+		for (File file : files) {
+			readFile(file, result, false);
+		}
+		return result;
+	}
 
+	/**
+	 * Read keys of benchmarks in given files, data of the benchmarks
+	 * are skipped without being parsed.
+	 *
+	 * @param files Input files with raw data
+	 * @return Benchmark keys as returned by readRevision
+	 * @throws ReaderException On reading or parsing error
+	 */
+	@Override
+	public Set<String> readBenchmarkKeys(File... files) throws ReaderException {
+		Map<String, DataSource> result = new HashMap<>();
 		for (File file : files) {
-			try {
-				JsonReader jsonReader = Json.createReader(new FileInputStream(file));
-				JsonArray benchmarks = jsonReader.readArray();
-
-				for (JsonValue benchmark : benchmarks) {
-					Map.Entry<String, DataSource> benchmarkData = getBenchmarkData((JsonObject) benchmark);
-					if (result.containsKey(benchmarkData.getKey())) {
-						//throw new ReaderException("Duplicate benchmark key: " + benchmarkData.getKey());
-						DataSource mergedData = mergeBenchmarkData(benchmarkData.getValue(),
-								result.get(benchmarkData.getKey()));
-						result.put(benchmarkData.getKey(), mergedData);
-					}
-					result.put(benchmarkData.getKey(), benchmarkData.getValue());
-				}
+			readFile(file, result, true);
+		}
+		return new LinkedHashSet<>(result.keySet());
+	}
+
+	/**
+	 * Keys are found by a streaming scan that skips the measured data.
+	 *
+	 * @param files Input files with raw data
+	 * @return Always true
+	 */
+	@Override
+	public boolean isIndexed(File... files) {
+		return true;
+	}
 
-			} catch (FileNotFoundException e) {
-				throw new ReaderException("File not found: " + e.getMessage());
-			} catch (JsonParsingException e) {
-				throw new ReaderException("Error parsing file: " + file.getName() +
-						" at location: " + e.getLocation().toString());
-			} catch (JsonException e) {
-				throw new ReaderException("Json error: " + e.getMessage());
-			} catch (ReaderException e) {
-				throw e;
-			} catch (Throwable e) {
-				throw new ReaderException(e.getMessage());
+	/**
+	 * Read benchmarks from one file.
+	 *
+	 * @param file Input file
+	 * @param result Where to add the benchmarks
+	 * @param keysOnly Whether to skip the data (values in result are null)
+	 */
+	private void readFile(File file, Map<String, DataSource> result, boolean keysOnly) throws ReaderException {
+		try (JsonParser parser = Json.createParser(new BufferedInputStream(new FileInputStream(file)))) {
+			expect(parser, parser.next(), Event.START_ARRAY);
+
+			Event event;
+			while ((event = parser.next()) != Event.END_ARRAY) {
+				expect(parser, event, Event.START_OBJECT);
+				Map.Entry<String, DataSource> benchmarkData = getBenchmarkData(parser, keysOnly);
+				if (!keysOnly && result.containsKey(benchmarkData.getKey())) {
+					//throw new ReaderException("Duplicate benchmark key: " + benchmarkData.getKey());
+					DataSource mergedData = mergeBenchmarkData(benchmarkData.getValue(),
+							result.get(benchmarkData.getKey()));
+					result.put(benchmarkData.getKey(), mergedData);
+				}
+				result.put(benchmarkData.getKey(), benchmarkData.getValue());
 			}
-		}
 
-		return result;
+		} catch (FileNotFoundException e) {
+			throw new ReaderException("File not found: " + e.getMessage());
+		} catch (JsonParsingException e) {
+			throw new ReaderException("Error parsing file: " + file.getName() +
+					" at location: " + e.getLocation().toString());
+		} catch (JsonException e) {
+			throw new ReaderException("Json error: " + e.getMessage());
+		} catch (ReaderException e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new ReaderException(e.getMessage());
+		}
 	}
 
 	private DataSource mergeBenchmarkData(DataSource oldValue, DataSource newValue) {
@@ -98,40 +152,79 @@ public class JmhJsonRevisionReader implements RevisionReader {
 	/**
 	 * Parse data for one benchmark.
 	 *
-	 * @param benchmark Json object (dictionary) with one benchmark data
-	 * @return Parsed data
+	 * @param parser Parser positioned just after start of the benchmark object
+	 * @param keysOnly Whether to skip the primary metric
+	 * @return Parsed data (null data when only key was requested)
 	 */
-	private static Map.Entry<String, DataSource> getBenchmarkData(JsonObject benchmark) throws ReaderException {
-		String benchmarkName = benchmark.getString("benchmark");
-		String benchmarkMode = benchmark.getString("mode");
+	private static Map.Entry<String, DataSource> getBenchmarkData(JsonParser parser, boolean keysOnly)
+			throws ReaderException {
+		String benchmarkName = null;
+		String benchmarkMode = null;
 		String benchmarkParams = "";
-		if (benchmark.containsKey("params")) {
-			benchmarkParams = getBenchmarkParams(benchmark.getJsonObject("params"));
+		List<BenchmarkRun> runs = null;
+
+		Event event;
+		while ((event = parser.next()) != Event.END_OBJECT) {
+			String key = parser.getString();
+			event = parser.next();
+			switch (key) {
+			case "benchmark":
+				benchmarkName = getString(parser, event);
+				break;
+			case "mode":
+				benchmarkMode = getString(parser, event);
+				break;
+			case "params":
+				expect(parser, event, Event.START_OBJECT);
+				benchmarkParams = getBenchmarkParams(parser);
+				break;
+			case "primaryMetric":
+				expect(parser, event, Event.START_OBJECT);
+				if (keysOnly) {
+					skipValue(parser, event);
+				} else {
+					runs = parsePrimaryMetric(parser);
+				}
+				break;
+			default:
+				skipValue(parser, event);
+			}
 		}
+
+		if ((benchmarkName == null) || (benchmarkMode == null)) {
+			throw new ReaderException("Benchmark without \"benchmark\" or \"mode\" key");
+		}
+
 		String benchmarkEntryKey = String.format("%s@%s%s", benchmarkName, benchmarkMode, benchmarkParams);
+		if (keysOnly) {
+			return new AbstractMap.SimpleEntry<>(benchmarkEntryKey, null);
+		}
+
+		if (runs == null) {
+			// corrupted invariant
+			throw new ReaderException("One of \"rawData\" and \"rawDataHistogram\" must be empty, but not both");
+		}
 
-		JsonObject primaryMetric = benchmark.getJsonObject("primaryMetric");
-		JsonArray rawData = null;
-		JsonArray rawDataHistogram = null;
-		if (primaryMetric.containsKey("rawData")) {
-			rawData = primaryMetric.getJsonArray("rawData");
-		} else if (primaryMetric.containsKey("rawDataHistogram")) {
-			rawDataHistogram = primaryMetric.getJsonArray("rawDataHistogram");
+		DataSnapshotBuilder builder = new DataSnapshotBuilder();
+		for (BenchmarkRun run : runs) {
+			builder.addRun(run);
 		}
-		DataSource data = parseRawData(rawData, rawDataHistogram);
-		return new AbstractMap.SimpleEntry<>(benchmarkEntryKey, data);
+
+		return new AbstractMap.SimpleEntry<>(benchmarkEntryKey, new BuilderDataSource(builder));
 	}
 
 	/**
 	 * Get params with which the benchmark was run.
 	 *
-	 * @param params Json object containing all params (the "params" key from JMH json)
+	 * @param parser Parser positioned just after start of the "params" object
 	 * @return Params with format "@par1=val1@par2=val2"
 	 */
-	private static String getBenchmarkParams(JsonObject params) {
+	private static String getBenchmarkParams(JsonParser parser) throws ReaderException {
 		StringBuilder result = new StringBuilder();
-		for (String item : params.keySet()) {
-			String value = params.getString(item);
+		Event event;
+		while ((event = parser.next()) != Event.END_OBJECT) {
+			String item = parser.getString();
+			String value = getString(parser, parser.next());
 			result.append("@");
 			result.append(item);
 			result.append("=");
@@ -141,55 +234,149 @@ public class JmhJsonRevisionReader implements RevisionReader {
 	}
 
 	/**
-	 * Parse array of raw data. Actual data are only in one of the arguments
-	 * array, second array is null value.
+	 * Parse raw data of the primary metric. Actual data are only in one
+	 * of "rawData" and "rawDataHistogram" arrays, if both are present,
+	 * "rawData" is used. Each fork becomes a separate run.
 	 *
-	 * @param rawData Json array with raw data representation, just numbers.
-	 * @param rawDataHistogram Json array with raw data histogram representation,
-	 *                         each item is list of two values: actual number and
-	 *                         number of observations of this number.
-	 * @return Parsed data
+	 * @param parser Parser positioned just after start of the "primaryMetric" object
+	 * @return Parsed data (one run per fork), null when there are no raw data
 	 */
-	private static DataSource parseRawData(JsonArray rawData, JsonArray rawDataHistogram) throws ReaderException {
-		BenchmarkRunBuilder run = new BenchmarkRunBuilder();
+	private static List<BenchmarkRun> parsePrimaryMetric(JsonParser parser) throws ReaderException {
+		List<BenchmarkRun> rawData = null;
+		List<BenchmarkRun> rawDataHistogram = null;
+
+		Event event;
+		while ((event = parser.next()) != Event.END_OBJECT) {
+			String key = parser.getString();
+			event = parser.next();
+			if (key.equals("rawData")) {
+				expect(parser, event, Event.START_ARRAY);
+				rawData = parseRawData(parser);
+			} else if (key.equals("rawDataHistogram")) {
+				expect(parser, event, Event.START_ARRAY);
+				rawDataHistogram = parseRawDataHistogram(parser);
+			} else {
+				skipValue(parser, event);
+			}
+		}
 
 		if (rawData != null) {
-			// process rawData
+			return rawData;
+		} else {
+			return rawDataHistogram;
+		}
+	}
 
-			// for each fork
-			for (JsonValue fork : rawData) {
-				// for each iteration value
-				for (JsonValue value : (JsonArray)fork) {
-					run.addSamples(((JsonNumber)value).doubleValue());
-				}
+	/**
+	 * Parse array of raw data, just numbers for each fork. Each number
+	 * is a result of one iteration, thus iterations are not marked
+	 * explicitly.
+	 *
+	 * @param parser Parser positioned just after start of the array
+	 * @return Parsed data, one run per fork
+	 */
+	private static List<BenchmarkRun> parseRawData(JsonParser parser) throws ReaderException {
+		List<BenchmarkRun> runs = new ArrayList<>();
+
+		// for each fork
+		Event event;
+		while ((event = parser.next()) != Event.END_ARRAY) {
+			expect(parser, event, Event.START_ARRAY);
+			BenchmarkRunBuilder run = new BenchmarkRunBuilder();
+			// for each iteration value
+			while ((event = parser.next()) != Event.END_ARRAY) {
+				run.addSamples(getDouble(parser, event));
 			}
-		} else if (rawDataHistogram != null) {
-			// process rawDataHistogram
-
-			// for each fork
-			for (JsonValue fork : rawDataHistogram) {
-				// for each iteration
-				for (JsonValue iteration : (JsonArray)fork) {
-					// for each sample
-					for (JsonValue sample : (JsonArray)iteration) {
-						JsonArray sampleValue = (JsonArray)sample;
-
-						int valueCount = sampleValue.getInt(1);
-						for (int i = 0; i < valueCount; i++) {
-							run.addSamples(sampleValue.getJsonNumber(0).doubleValue());
-						}
-					}
+			runs.add(run.create());
+		}
+
+		return runs;
+	}
+
+	/**
+	 * Parse array of raw data histogram. Each item is list of two values:
+	 * actual number and number of observations of this number. The
+	 * samples are kept as (value, count) pairs, not expanded.
+	 *
+	 * @param parser Parser positioned just after start of the array
+	 * @return Parsed data, one run per fork with marked iterations
+	 */
+	private static List<BenchmarkRun> parseRawDataHistogram(JsonParser parser) throws ReaderException {
+		List<BenchmarkRun> runs = new ArrayList<>();
+
+		// for each fork
+		Event event;
+		while ((event = parser.next()) != Event.END_ARRAY) {
+			expect(parser, event, Event.START_ARRAY);
+			HistogramBenchmarkRunBuilder run = new HistogramBenchmarkRunBuilder();
+			// for each iteration
+			while ((event = parser.next()) != Event.END_ARRAY) {
+				expect(parser, event, Event.START_ARRAY);
+				run.startIteration();
+				// for each sample
+				while ((event = parser.next()) != Event.END_ARRAY) {
+					expect(parser, event, Event.START_ARRAY);
+					double value = getDouble(parser, parser.next());
+					expect(parser, parser.next(), Event.VALUE_NUMBER);
+					long valueCount = parser.getLong();
+					expect(parser, parser.next(), Event.END_ARRAY);
+
+					run.addSamples(value, valueCount);
 				}
 			}
-		} else {
-			// corrupted invariant
-			throw new ReaderException("One of \"rawData\" and \"rawDataHistogram\" must be empty, but not both");
+			runs.add(run.create());
 		}
 
-		DataSnapshotBuilder builder = new DataSnapshotBuilder();
-		BenchmarkRun benchmarkRun = run.create();
-		builder.addRun(benchmarkRun);
+		return runs;
+	}
 
-		return new BuilderDataSource(builder);
+	/**
+	 * Skip (possibly nested) value the parser is positioned at.
+	 *
+	 * @param parser Parser positioned at the first event of the value
+	 * @param event The first event of the value
+	 */
+	private static void skipValue(JsonParser parser, Event event) {
+		if ((event != Event.START_ARRAY) && (event != Event.START_OBJECT)) {
+			return;
+		}
+		int depth = 1;
+		while (depth > 0) {
+			switch (parser.next()) {
+			case START_ARRAY:
+			case START_OBJECT:
+				depth++;
+				break;
+			case END_ARRAY:
+			case END_OBJECT:
+				depth--;
+				break;
+			default:
+				break;
+			}
+		}
+	}
+
+	private static String getString(JsonParser parser, Event event) throws ReaderException {
+		if ((event != Event.VALUE_STRING) && (event != Event.VALUE_NUMBER)) {
+			throw unexpected(parser, event, Event.VALUE_STRING);
+		}
+		return parser.getString();
+	}
+
+	private static double getDouble(JsonParser parser, Event event) throws ReaderException {
+		expect(parser, event, Event.VALUE_NUMBER);
+		return Double.parseDouble(parser.getString());
+	}
+
+	private static void expect(JsonParser parser, Event actual, Event expected) throws ReaderException {
+		if (actual != expected) {
+			throw unexpected(parser, actual, expected);
+		}
+	}
+
+	private static ReaderException unexpected(JsonParser parser, Event actual, Event expected) {
+		return new ReaderException("Unexpected " + actual + " (expected " + expected + ") at location: "
+				+ parser.getLocation().toString());
 	}
 }
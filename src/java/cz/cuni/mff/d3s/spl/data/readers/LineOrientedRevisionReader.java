@@ -8,7 +8,9 @@ import cz.cuni.mff.d3s.spl.data.DataSnapshotBuilder;
 import cz.cuni.mff.d3s.spl.utils.Factory;
 import cz.cuni.mff.d3s.spl.DataReader.ReaderException;
 
-import java.io.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -16,7 +18,7 @@ import java.util.Map;
  * Reader for text files with one integer number per line.
  *
  * This reader expects multiple files (each is separate benchmark run)
- * with one integer (long type) number per line. There're no data about
+ * with one number per line, lines starting with '#' are ignored. There're no data about
  * naming, so it's expected that all data are from the same benchmark
  * and results are returned with the key "default".
  */
@@ -33,12 +35,8 @@ public class LineOrientedRevisionReader implements RevisionReader {
 	public Map<String, DataSource> readRevision(File... files) throws ReaderException {
 		DataSnapshotBuilder snapshotBuilder = new DataSnapshotBuilder();
 		for (File file : files) {
-	    	try {
-	    		BenchmarkRun run = readLineOrientedData(new FileInputStream(file)).create();
-	    		snapshotBuilder.addRun(run);
-	    	} catch (FileNotFoundException e) {
-			    throw new ReaderException("File not found: " + e.getMessage());
-	    	}
+			BenchmarkRun run = readLineOrientedData(file).create();
+			snapshotBuilder.addRun(run);
 		}
 
 		HashMap<String, DataSource> result = new HashMap<>();
@@ -53,28 +51,22 @@ public class LineOrientedRevisionReader implements RevisionReader {
 		}
 	}
 
-	/** Reads samples from a data stream.
+	/** Reads samples from a file.
 	 *
-	 * Expects each sample is on a separate line, silently ignores
-	 * lines containing something else than positive integer.
+	 * Expects each sample is on a separate line, skips empty lines and
+	 * lines starting with '#' (metadata headers).
 	 *
-	 * @param is Input stream with data.
+	 * @param file File with data.
 	 * @return Benchmark run with the samples.
 	 * @throws ReaderException on reading failure.
 	 */
-	private BenchmarkRunBuilder readLineOrientedData(InputStream is) throws ReaderException {
-		BufferedReader reader = new BufferedReader(new InputStreamReader(is));
+	private BenchmarkRunBuilder readLineOrientedData(File file) throws ReaderException {
 		BenchmarkRunBuilder run = new BenchmarkRunBuilder();
-		String line;
 
-		try {
-			while ((line = reader.readLine()) != null) {
-				// skip empty lines
-				if (!line.equals("")) {
-					long value = Long.parseLong(line);
-					run.addSamples(value);
-				}
-			}
+		try (NumberScanner scanner = NumberScanner.open(file)) {
+			scanner.readAll(run, false);
+		} catch (NoSuchFileException e) {
+			throw new ReaderException("File not found: " + e.getMessage());
 		} catch (NumberFormatException e) {
 			throw new ReaderException("Wrong number format: " + e.getMessage());
 		} catch (IOException e) {
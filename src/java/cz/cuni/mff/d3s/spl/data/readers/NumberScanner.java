@@ -0,0 +1,322 @@
+package cz.cuni.mff.d3s.spl.data.readers;
+
+import cz.cuni.mff.d3s.spl.data.BenchmarkRunBuilder;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Scanner of numbers in text data.
+ *
+ * Numbers are separated by whitespace, lines starting with '#' are
+ * metadata (comments) and are skipped. The scanner works directly on
+ * bytes read from a channel, typical integers and decimal numbers are
+ * converted without creating any String. Unusual numbers (too many
+ * digits, large exponents, NaN, ...) are passed to Double.parseDouble.
+ *
+ * This class is not thread-safe.
+ */
+public class NumberScanner implements Closeable {
+	private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+	/** Number of samples added to a builder at once. */
+	private static final int CHUNK_SIZE = 1024;
+
+	/** Largest mantissa (in digits) that is represented exactly by a double. */
+	private static final int MAX_EXACT_DIGITS = 15;
+
+	/** Largest number of digits that always fits into a long. */
+	private static final int MAX_LONG_DIGITS = 18;
+
+	/** Powers of ten that are exactly representable by a double. */
+	private static final double[] EXACT_POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+		1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20,
+		1e21, 1e22
+	};
+
+	private final ReadableByteChannel channel;
+	private final ByteBuffer buffer;
+	private final byte[] bytes;
+	private int position = 0;
+	private int limit = 0;
+	private boolean endOfInput = false;
+
+	private byte[] token = new byte[32];
+	private int tokenLength = 0;
+
+	/**
+	 * Create scanner reading from given channel.
+	 *
+	 * @param channel Channel with the text data.
+	 */
+	public NumberScanner(ReadableByteChannel channel) {
+		this(channel, DEFAULT_BUFFER_SIZE);
+	}
+
+	NumberScanner(ReadableByteChannel channel, int bufferSize) {
+		this.channel = channel;
+		bytes = new byte[bufferSize];
+		buffer = ByteBuffer.wrap(bytes);
+	}
+
+	/**
+	 * Create scanner reading given file.
+	 *
+	 * @param file File to read.
+	 * @return New scanner, must be closed by the caller.
+	 * @throws IOException When the file cannot be opened.
+	 */
+	public static NumberScanner open(File file) throws IOException {
+		return new NumberScanner(FileChannel.open(file.toPath(), StandardOpenOption.READ));
+	}
+
+	/**
+	 * Tell whether there is another number (token) in the input.
+	 *
+	 * @return Whether a call to {@link #nextDouble()} will read a token.
+	 * @throws IOException On reading error.
+	 */
+	public boolean hasNext() throws IOException {
+		while (true) {
+			int c = peek();
+			if (c < 0) {
+				return false;
+			} else if (c == '#') {
+				skipLine();
+			} else if (isWhitespace(c)) {
+				position++;
+			} else {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Read next number.
+	 *
+	 * @return Value of the number.
+	 * @throws IOException On reading error.
+	 * @throws NumberFormatException When the next token is not a number.
+	 * @throws NoSuchElementException When there are no more numbers.
+	 */
+	public double nextDouble() throws IOException {
+		if (!hasNext()) {
+			throw new NoSuchElementException("No more numbers in the input");
+		}
+		readToken();
+		return parseToken();
+	}
+
+	/**
+	 * Read all numbers into a benchmark run builder.
+	 *
+	 * @param run Builder where to add the numbers.
+	 * @param stopAtInvalid Whether to stop at first invalid token (otherwise
+	 *                      NumberFormatException is thrown).
+	 * @return Number of added samples.
+	 * @throws IOException On reading error.
+	 */
+	public int readAll(BenchmarkRunBuilder run, boolean stopAtInvalid) throws IOException {
+		double[] chunk = new double[CHUNK_SIZE];
+		int chunkSize = 0;
+		int total = 0;
+
+		try {
+			while (hasNext()) {
+				readToken();
+				double value = parseToken();
+				chunk[chunkSize++] = value;
+				if (chunkSize == chunk.length) {
+					run.addSamples(chunk, 0, chunkSize);
+					total += chunkSize;
+					chunkSize = 0;
+				}
+			}
+		} catch (NumberFormatException e) {
+			if (!stopAtInvalid) {
+				throw e;
+			}
+		}
+
+		run.addSamples(chunk, 0, chunkSize);
+		return total + chunkSize;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	private int peek() throws IOException {
+		if ((position == limit) && !fill()) {
+			return -1;
+		}
+		return bytes[position];
+	}
+
+	private boolean fill() throws IOException {
+		if (endOfInput) {
+			return false;
+		}
+		buffer.clear();
+		int count;
+		do {
+			count = channel.read(buffer);
+		} while (count == 0);
+		if (count < 0) {
+			endOfInput = true;
+			return false;
+		}
+		position = 0;
+		limit = count;
+		return true;
+	}
+
+	private void skipLine() throws IOException {
+		while (true) {
+			if ((position == limit) && !fill()) {
+				return;
+			}
+			if (bytes[position++] == '\n') {
+				return;
+			}
+		}
+	}
+
+	private void readToken() throws IOException {
+		tokenLength = 0;
+		while (true) {
+			if ((position == limit) && !fill()) {
+				return;
+			}
+			byte c = bytes[position];
+			if (isWhitespace(c)) {
+				return;
+			}
+			if (tokenLength == token.length) {
+				token = Arrays.copyOf(token, token.length * 2);
+			}
+			token[tokenLength++] = c;
+			position++;
+		}
+	}
+
+	/**
+	 * Convert current token to a double.
+	 *
+	 * The fast path handles integers with at most 18 digits and decimal
+	 * numbers with at most 15 significant digits and small exponents,
+	 * where a single multiplication or division by an exact power of ten
+	 * gives correctly rounded result.
+	 */
+	private double parseToken() {
+		int index = 0;
+		boolean negative = false;
+		if ((index < tokenLength) && ((token[index] == '-') || (token[index] == '+'))) {
+			negative = token[index] == '-';
+			index++;
+		}
+
+		long mantissa = 0;
+		int digits = 0;
+		int exponent = 0;
+		boolean anyDigit = false;
+
+		while ((index < tokenLength) && isDigit(token[index])) {
+			anyDigit = true;
+			if ((mantissa != 0) || (token[index] != '0')) {
+				if (digits == MAX_LONG_DIGITS) {
+					return parseTokenSlowly();
+				}
+				mantissa = mantissa * 10 + (token[index] - '0');
+				digits++;
+			}
+			index++;
+		}
+		if ((index < tokenLength) && (token[index] == '.')) {
+			index++;
+			while ((index < tokenLength) && isDigit(token[index])) {
+				anyDigit = true;
+				if ((mantissa != 0) || (token[index] != '0')) {
+					if (digits == MAX_EXACT_DIGITS) {
+						return parseTokenSlowly();
+					}
+					mantissa = mantissa * 10 + (token[index] - '0');
+					digits++;
+				}
+				exponent--;
+				index++;
+			}
+		}
+		if (!anyDigit) {
+			return parseTokenSlowly();
+		}
+		if ((index < tokenLength) && ((token[index] == 'e') || (token[index] == 'E'))) {
+			index++;
+			boolean negativeExponent = false;
+			if ((index < tokenLength) && ((token[index] == '-') || (token[index] == '+'))) {
+				negativeExponent = token[index] == '-';
+				index++;
+			}
+			int explicitExponent = 0;
+			int exponentStart = index;
+			while ((index < tokenLength) && isDigit(token[index])) {
+				if (explicitExponent > 1000) {
+					return parseTokenSlowly();
+				}
+				explicitExponent = explicitExponent * 10 + (token[index] - '0');
+				index++;
+			}
+			if (index == exponentStart) {
+				return parseTokenSlowly();
+			}
+			exponent += negativeExponent ? -explicitExponent : explicitExponent;
+		}
+		if (index != tokenLength) {
+			return parseTokenSlowly();
+		}
+
+		if ((digits > MAX_EXACT_DIGITS) && (exponent != 0)) {
+			return parseTokenSlowly();
+		}
+
+		// conversion of a long is correctly rounded
+		double value = mantissa;
+		if (mantissa == 0) {
+			// exponent does not matter
+		} else if (exponent < 0) {
+			if (exponent < -(EXACT_POWERS_OF_TEN.length - 1)) {
+				return parseTokenSlowly();
+			}
+			value = value / EXACT_POWERS_OF_TEN[-exponent];
+		} else if (exponent > 0) {
+			if (exponent > EXACT_POWERS_OF_TEN.length - 1) {
+				return parseTokenSlowly();
+			}
+			value = value * EXACT_POWERS_OF_TEN[exponent];
+		}
+
+		return negative ? -value : value;
+	}
+
+	private double parseTokenSlowly() {
+		return Double.parseDouble(new String(token, 0, tokenLength, StandardCharsets.US_ASCII));
+	}
+
+	private static boolean isDigit(byte c) {
+		return (c >= '0') && (c <= '9');
+	}
+
+	private static boolean isWhitespace(int c) {
+		return (c == ' ') || (c == '\n') || (c == '\r') || (c == '\t') || (c == '\f');
+	}
+}
@@ -8,10 +8,11 @@ import cz.cuni.mff.d3s.spl.data.BuilderDataSource;
 import cz.cuni.mff.d3s.spl.data.DataSnapshotBuilder;
 import cz.cuni.mff.d3s.spl.utils.Factory;
 
-import java.io.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Scanner;
 
 /**
  * Reader for text files with one integer number per line.
@@ -34,12 +35,8 @@ public class NumbersOnlyRevisionReader implements RevisionReader {
 	public Map<String, DataSource> readRevision(File... files) throws ReaderException {
 		DataSnapshotBuilder snapshotBuilder = new DataSnapshotBuilder();
 		for (File file : files) {
-			try {
-				BenchmarkRun run = readNumbersOnlyData(new FileInputStream(file)).create();
-				snapshotBuilder.addRun(run);
-			} catch (FileNotFoundException e) {
-				throw new ReaderException("File not found: " + e.getMessage());
-			}
+			BenchmarkRun run = readNumbersOnlyData(file).create();
+			snapshotBuilder.addRun(run);
 		}
 
 		HashMap<String, DataSource> result = new HashMap<>();
@@ -54,23 +51,26 @@ public class NumbersOnlyRevisionReader implements RevisionReader {
 		}
 	}
 
-	/** Reads samples from a data stream.
+	/** Reads samples from a file.
 	 *
-	 * Expects samples as numbers of long type in input stream. Reading ends when
-	 * there's no next number in the stream.
+	 * Expects samples as whitespace separated numbers. Reading ends when
+	 * there's no next number in the file, lines starting with '#' are
+	 * skipped.
 	 *
-	 * @param is Input stream with data.
+	 * @param file File with data.
 	 * @return Benchmark run with the samples.
 	 * @throws ReaderException on reading failure.
 	 */
-	private BenchmarkRunBuilder readNumbersOnlyData(InputStream is) throws ReaderException {
+	private BenchmarkRunBuilder readNumbersOnlyData(File file) throws ReaderException {
 		BenchmarkRunBuilder run = new BenchmarkRunBuilder();
 
-		Scanner sc = new Scanner(is);
-		while (sc.hasNextLong()) {
-			run.addSamples(sc.nextLong());
+		try (NumberScanner scanner = NumberScanner.open(file)) {
+			scanner.readAll(run, true);
+		} catch (NoSuchFileException e) {
+			throw new ReaderException("File not found: " + e.getMessage());
+		} catch (IOException e) {
+			throw new ReaderException("IO error: " + e.getMessage());
 		}
-		sc.close();
 
 		return run;
 	}
@@ -1,22 +1,69 @@
 package cz.cuni.mff.d3s.spl.data.readers;
 
 import cz.cuni.mff.d3s.spl.*;
+import cz.cuni.mff.d3s.spl.data.LazyDataSource;
 import cz.cuni.mff.d3s.spl.data.Revision;
 import cz.cuni.mff.d3s.spl.utils.Factory;
 
 import java.io.File;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 
 /**
  * Data reader from formats like JMH JSON. Generic type provides
  * revision reader from specific format variant.
  */
 public class StructuredDataReader<T extends RevisionReader> implements DataReader {
+	/**
+	 * Default limit of total size of files being parsed at the same time.
+	 */
+	public static final long DEFAULT_MEMORY_BUDGET = 512L * 1024 * 1024;
+
+	/**
+	 * Granularity of the memory budget (one semaphore permit).
+	 */
+	private static final int BUDGET_UNIT = 1024;
+
 	/**
 	 * Revision reader instance.
 	 */
 	private T reader;
 
+	/**
+	 * Factory for revision readers used by parallel loading.
+	 */
+	private final Factory<T> readerFactory;
+
+	/**
+	 * Number of files parsed concurrently.
+	 */
+	private final int threads;
+
+	/**
+	 * Limit of total size (in bytes) of files being parsed concurrently.
+	 */
+	private final long memoryBudget;
+
+	/**
+	 * Names of revisions to read, null to read all.
+	 */
+	private Set<String> revisionFilter = null;
+
+	/**
+	 * Whether to postpone reading of data until they are used.
+	 */
+	private boolean lazy = false;
+
+	/**
+	 * Whether to list benchmarks of revisions outside the filter.
+	 */
+	private boolean listSkipped = false;
+
 	/**
 	 * Constructor which creates revision reader instance.
 	 *
@@ -25,9 +72,72 @@ public class StructuredDataReader<T extends RevisionReader> implements DataReade
 	 *                      type T.
 	 */
 	public StructuredDataReader(Factory<T> readerFactory) {
+		this(readerFactory, 1, DEFAULT_MEMORY_BUDGET);
+	}
+
+	/**
+	 * Constructor for reader that parses multiple revisions concurrently.
+	 * Each parsing thread uses its own revision reader instance. At most
+	 * memoryBudget bytes of files are parsed at the same time (a larger
+	 * file is parsed alone).
+	 *
+	 * @param readerFactory Factory for creating instances of revision reader.
+	 * @param threads Number of files parsed concurrently.
+	 * @param memoryBudget Limit of total size of files being parsed.
+	 */
+	public StructuredDataReader(Factory<T> readerFactory, int threads, long memoryBudget) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("Number of threads must be positive");
+		}
+		if (memoryBudget < 1) {
+			throw new IllegalArgumentException("Memory budget must be positive");
+		}
+		this.readerFactory = readerFactory;
+		this.threads = threads;
+		this.memoryBudget = memoryBudget;
 		reader = readerFactory.getInstance();
 	}
 
+	/**
+	 * Read only revisions with given names, other files are not opened
+	 * (unless their benchmarks are listed, see {@link #setListSkippedBenchmarks(boolean)}).
+	 *
+	 * @param revisions Names of revisions (files) to read, null to read all.
+	 */
+	public void setRevisionFilter(Collection<String> revisions) {
+		revisionFilter = revisions == null ? null : new HashSet<>(revisions);
+	}
+
+	/**
+	 * List also benchmarks found only in revisions outside the filter,
+	 * such benchmarks have no revisions. Keys of the skipped files are
+	 * read (cheaply when the reader implements {@link IndexedRevisionReader}),
+	 * their data are not.
+	 *
+	 * @param list Whether to read benchmark keys of the skipped files.
+	 */
+	public void setListSkippedBenchmarks(boolean list) {
+		listSkipped = list;
+	}
+
+	/**
+	 * Postpone parsing of revisions until their data are first used.
+	 * Only benchmark keys are read by readData, the data sources
+	 * returned parse the whole file when the first snapshot is made.
+	 * Files whose keys cannot be read cheaply (see
+	 * {@link IndexedRevisionReader#isIndexed(File...)}) are parsed
+	 * by readData as without lazy reading.
+	 * Requires revision reader implementing {@link IndexedRevisionReader}.
+	 *
+	 * @param lazy Whether to read revisions lazily.
+	 */
+	public void setLazy(boolean lazy) {
+		if (lazy && !(reader instanceof IndexedRevisionReader)) {
+			throw new IllegalArgumentException("Lazy reading requires reader with benchmark index");
+		}
+		this.lazy = lazy;
+	}
+
 	/**
 	 * Reads multiple revision data from files. Requires one argument,
 	 * directory where are all revisions, one per file. Revision name
@@ -54,24 +164,205 @@ public class StructuredDataReader<T extends RevisionReader> implements DataReade
 			throw new ReaderException("No files could be fetched from directory " + dir.getName());
 		}
 
-		Arrays.sort(files, new FileComparator());
-
+		List<File> selected = new ArrayList<>();
+		List<File> skipped = new ArrayList<>();
 		for (File file : files) {
-			System.out.printf("Reading data from %s revision...", file.getName());
+			if ((revisionFilter == null) || revisionFilter.contains(file.getName())) {
+				selected.add(file);
+			} else {
+				skipped.add(file);
+			}
+		}
+		Collections.sort(selected, new FileComparator());
+
+		List<File> parsed = new ArrayList<>();
+		List<File> indexed = new ArrayList<>();
+		for (File file : selected) {
+			if (lazy && ((IndexedRevisionReader) reader).isIndexed(file)) {
+				indexed.add(file);
+			} else {
+				parsed.add(file);
+			}
+		}
+		List<Map<String, DataSource>> parsedData = readFiles(parsed, new RevisionTask(),
+				"Reading data from %s revision...");
+		List<Set<String>> indexedKeys = readFiles(indexed, new KeysTask(), null);
 
-			Map<String, DataSource> revisionData = reader.readRevision(file);
+		int nextParsed = 0;
+		int nextIndexed = 0;
+		for (File file : selected) {
+			if ((nextParsed < parsed.size()) && (parsed.get(nextParsed) == file)) {
+				addRevision(data, file, parsedData.get(nextParsed));
+				nextParsed++;
+			} else {
+				addLazyRevision(data, file, indexedKeys.get(nextIndexed));
+				nextIndexed++;
+			}
+		}
 
-			for (Map.Entry<String, DataSource> benchmark : revisionData.entrySet()) {
-				if (!data.containsKey(benchmark.getKey())) {
-					data.put(benchmark.getKey(), new LinkedList<>());
+		if (listSkipped) {
+			for (Set<String> keys : readFiles(skipped, new KeysTask(), null)) {
+				for (String key : keys) {
+					if (!data.containsKey(key)) {
+						data.put(key, new LinkedList<Revision>());
+					}
 				}
-				data.get(benchmark.getKey()).add(new Revision(file.getName(), benchmark.getValue()));
+			}
+		}
+
+		return data;
+	}
+
+	/**
+	 * What to read from a single file.
+	 */
+	private interface FileTask<R> {
+		R read(RevisionReader reader, File file) throws ReaderException;
+	}
+
+	/**
+	 * Read all data of a revision.
+	 */
+	private static class RevisionTask implements FileTask<Map<String, DataSource>> {
+		@Override
+		public Map<String, DataSource> read(RevisionReader reader, File file) throws ReaderException {
+			return reader.readRevision(file);
+		}
+	}
+
+	/**
+	 * Read only benchmark keys of a revision (cheaply when the reader has an index).
+	 */
+	private static class KeysTask implements FileTask<Set<String>> {
+		@Override
+		public Set<String> read(RevisionReader reader, File file) throws ReaderException {
+			if (reader instanceof IndexedRevisionReader) {
+				return ((IndexedRevisionReader) reader).readBenchmarkKeys(file);
+			}
+			return reader.readRevision(file).keySet();
+		}
+	}
+
+	/**
+	 * Read files, concurrently when more threads are available.
+	 *
+	 * @param files Files to read.
+	 * @param task What to read from each file.
+	 * @param progress Format of progress message (with file name), null for none.
+	 * @return Results in the order of the files.
+	 */
+	private <R> List<R> readFiles(List<File> files, FileTask<R> task, String progress) throws ReaderException {
+		List<R> result = new ArrayList<>(files.size());
+		if (threads > 1) {
+			readInParallel(files, task, progress, result);
+		} else {
+			for (File file : files) {
+				printProgress(progress, file);
+				result.add(task.read(reader, file));
+				printProgressDone(progress);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Read files concurrently, results are collected in the order of the files.
+	 *
+	 * @param files Files to read.
+	 * @param task What to read from each file.
+	 * @param progress Format of progress message (with file name), null for none.
+	 * @param result Where to add the results.
+	 */
+	private <R> void readInParallel(List<File> files, final FileTask<R> task, String progress, List<R> result)
+			throws ReaderException {
+		int totalPermits = (int) Math.max(1, Math.min(Integer.MAX_VALUE, memoryBudget / BUDGET_UNIT));
+		final Semaphore budget = new Semaphore(totalPermits);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+		try {
+			List<Future<R>> futures = new ArrayList<>(files.size());
+			for (final File file : files) {
+				final int permits = (int) Math.max(1, Math.min(totalPermits, file.length() / BUDGET_UNIT));
+				budget.acquire(permits);
+				futures.add(executor.submit(new Callable<R>() {
+					@Override
+					public R call() throws ReaderException {
+						try {
+							return task.read(readerFactory.getInstance(), file);
+						} finally {
+							budget.release(permits);
+						}
+					}
+				}));
 			}
 
+			for (int i = 0; i < files.size(); i++) {
+				printProgress(progress, files.get(i));
+				result.add(futures.get(i).get());
+				printProgressDone(progress);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ReaderException("Reading interrupted", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof ReaderException) {
+				throw (ReaderException) e.getCause();
+			}
+			throw new ReaderException(e.getCause().getMessage(), e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static void printProgress(String progress, File file) {
+		if (progress != null) {
+			System.out.printf(progress, file.getName());
+		}
+	}
+
+	private static void printProgressDone(String progress) {
+		if (progress != null) {
 			System.out.println(" ok");
 		}
+	}
 
-		return data;
+	/**
+	 * Add revision with data loaded on first use. The file is parsed
+	 * once for all its benchmarks.
+	 */
+	private void addLazyRevision(Map<String, List<Revision>> data, final File file, Set<String> keys) {
+		final Map<String, DataSource> revisionData = new HashMap<>();
+		for (final String key : keys) {
+			revisionData.put(key, new LazyDataSource(new LazyDataSource.Loader() {
+				@Override
+				public DataSource load() throws ReaderException {
+					synchronized (revisionData) {
+						if (revisionData.get(key) instanceof LazyDataSource) {
+							revisionData.putAll(readerFactory.getInstance().readRevision(file));
+						}
+						DataSource loaded = revisionData.get(key);
+						if (loaded instanceof LazyDataSource) {
+							throw new ReaderException("Benchmark " + key + " disappeared from " + file.getName());
+						}
+						return loaded;
+					}
+				}
+			}));
+		}
+		addRevision(data, file, new HashMap<>(revisionData));
+	}
+
+	/**
+	 * Add data of one revision to the per-benchmark lists.
+	 */
+	private static void addRevision(Map<String, List<Revision>> data, File file,
+			Map<String, DataSource> revisionData) {
+		for (Map.Entry<String, DataSource> benchmark : revisionData.entrySet()) {
+			if (!data.containsKey(benchmark.getKey())) {
+				data.put(benchmark.getKey(), new LinkedList<>());
+			}
+			data.get(benchmark.getKey()).add(new Revision(file.getName(), benchmark.getValue()));
+		}
 	}
 
 	/**
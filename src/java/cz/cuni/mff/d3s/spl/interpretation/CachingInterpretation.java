@@ -0,0 +1,149 @@
+/*
+ * Copyright 2015 Charles University in Prague
+ * Copyright 2015 Vojtech Horky
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.cuni.mff.d3s.spl.interpretation;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import cz.cuni.mff.d3s.spl.ComparisonResult;
+import cz.cuni.mff.d3s.spl.DataSnapshot;
+import cz.cuni.mff.d3s.spl.Interpretation;
+
+/** Interpretation that remembers results of recent comparisons.
+ * 
+ * <p>
+ * The actual comparison is delegated to another interpretation, the
+ * results are stored in a bounded cache (least recently used entries
+ * are evicted first).
+ * 
+ * <p>
+ * Snapshots are compared by identity. Data sources that return the same
+ * snapshot object as long as their data do not change (for example,
+ * {@link cz.cuni.mff.d3s.spl.data.BuilderDataSource}) thus allow to
+ * reuse results when the same pair of operands appears several times in
+ * a formula. A snapshot with new data is a different object and always
+ * leads to a new comparison.
+ * 
+ * <p>
+ * The cache belongs to the wrapped interpretation, use one instance per
+ * interpretation (and its settings).
+ */
+public class CachingInterpretation implements Interpretation {
+	/** Default maximum number of cached results. */
+	public static final int DEFAULT_CAPACITY = 256;
+	
+	private final Interpretation interpretation;
+	private final Map<Key, ComparisonResult> cache;
+	
+	/** Wrap given interpretation with a cache of default capacity.
+	 * 
+	 * @param actual Interpretation that does the actual comparison.
+	 */
+	public CachingInterpretation(Interpretation actual) {
+		this(actual, DEFAULT_CAPACITY);
+	}
+	
+	/** Wrap given interpretation with a cache.
+	 * 
+	 * @param actual Interpretation that does the actual comparison.
+	 * @param capacity Maximum number of remembered results.
+	 */
+	public CachingInterpretation(Interpretation actual, final int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Cache capacity must be positive");
+		}
+		interpretation = actual;
+		cache = new LinkedHashMap<Key, ComparisonResult>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, ComparisonResult> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public ComparisonResult compare(DataSnapshot left, DataSnapshot right) {
+		Key key = new Key(left, right, 0.0);
+		ComparisonResult result = lookup(key);
+		if (result == null) {
+			result = interpretation.compare(left, right);
+			store(key, result);
+		}
+		return result;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public ComparisonResult compare(DataSnapshot data, double value) {
+		Key key = new Key(data, null, value);
+		ComparisonResult result = lookup(key);
+		if (result == null) {
+			result = interpretation.compare(data, value);
+			store(key, result);
+		}
+		return result;
+	}
+	
+	private ComparisonResult lookup(Key key) {
+		synchronized (cache) {
+			return cache.get(key);
+		}
+	}
+	
+	private void store(Key key, ComparisonResult result) {
+		if (result == null) {
+			return;
+		}
+		synchronized (cache) {
+			cache.put(key, result);
+		}
+	}
+	
+	/** Cache key: identities of the snapshots and the constant. */
+	private static class Key {
+		private final DataSnapshot left;
+		private final DataSnapshot right;
+		private final double value;
+		
+		public Key(DataSnapshot left, DataSnapshot right, double value) {
+			this.left = left;
+			this.right = right;
+			this.value = value;
+		}
+
+		@Override
+		public int hashCode() {
+			int result = System.identityHashCode(left);
+			result = 31 * result + System.identityHashCode(right);
+			result = 31 * result + Double.valueOf(value).hashCode();
+			return result;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return (left == other.left) && (right == other.right)
+					&& (Double.compare(value, other.value) == 0);
+		}
+	}
+}
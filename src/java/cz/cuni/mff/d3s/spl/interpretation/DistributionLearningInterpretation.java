@@ -19,7 +19,7 @@ package cz.cuni.mff.d3s.spl.interpretation;
 import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
+import java.util.SplittableRandom;
 
 import org.apache.commons.math3.distribution.RealDistribution;
 
@@ -27,8 +27,8 @@ import cz.cuni.mff.d3s.spl.BenchmarkRun;
 import cz.cuni.mff.d3s.spl.ComparisonResult;
 import cz.cuni.mff.d3s.spl.DataSnapshot;
 import cz.cuni.mff.d3s.spl.Interpretation;
-import cz.cuni.mff.d3s.spl.data.BenchmarkRunSummary;
 import cz.cuni.mff.d3s.spl.data.BenchmarkRunUtils;
+import cz.cuni.mff.d3s.spl.data.HistogramBenchmarkRun;
 import cz.cuni.mff.d3s.spl.utils.DistributionUtils;
 import cz.cuni.mff.d3s.spl.utils.StatisticsUtils;
 
@@ -43,7 +43,8 @@ import cz.cuni.mff.d3s.spl.utils.StatisticsUtils;
  *
  */
 public class DistributionLearningInterpretation implements Interpretation {
-	private Random bootstrapRandom = new Random(0);
+	/* Every comparison starts from the same seed to be reproducible. */
+	private static final long BOOTSTRAP_SEED = 0;
 	
 	private final int bootstrapSizeInnerMeans;
 	private final int bootstrapSizeOuterMeans;
@@ -94,13 +95,15 @@ public class DistributionLearningInterpretation implements Interpretation {
 			debug.printf("means: %15.3f %15.3f\n", leftMean, rightMean);
 		}
 		
-		RealDistribution leftDistr = boostrapEmpirical(left, -leftMean);
+		SplittableRandom random = new SplittableRandom(BOOTSTRAP_SEED);
+		
+		RealDistribution leftDistr = boostrapEmpirical(left, -leftMean, random);
 		if (debug != null) {
 			debug.printf("left boostrapped:");
 			showDistribution(leftDistr);
 		}
 		
-		RealDistribution rightDistr = boostrapEmpirical(right, -rightMean);
+		RealDistribution rightDistr = boostrapEmpirical(right, -rightMean, random);
 		if (debug != null) {
 			debug.printf("right boostrapped:");
 			showDistribution(rightDistr);
@@ -124,7 +127,7 @@ public class DistributionLearningInterpretation implements Interpretation {
 	}
 	
 	
-	private RealDistribution boostrapEmpirical(DataSnapshot data, double shift) {
+	private RealDistribution boostrapEmpirical(DataSnapshot data, double shift, SplittableRandom random) {
 		List<BenchmarkRun> runs = new ArrayList<>(data.getRunCount());
 		for (BenchmarkRun run : data.getRuns()) {
 			runs.add(run);
@@ -135,12 +138,18 @@ public class DistributionLearningInterpretation implements Interpretation {
 		double[] runMeans = new double[runCount * bootstrapSizeInnerMeans];
 		int startIndex = 0;
 		for (int i = 0; i < runCount; i++, startIndex += bootstrapSizeInnerMeans) {
-			double[] samples = BenchmarkRunUtils.toDoubleArray(runs.get(i));
-			bootstrapWithMean(samples, samples.length, bootstrapSizeInnerMeans, runMeans, startIndex);
+			BenchmarkRun run = runs.get(i);
+			if (run instanceof HistogramBenchmarkRun) {
+				/* Weighted bootstrap directly from the buckets. */
+				bootstrapWithMean((HistogramBenchmarkRun) run, bootstrapSizeInnerMeans, runMeans, startIndex, random);
+			} else {
+				double[] samples = BenchmarkRunUtils.toDoubleArray(run);
+				bootstrapWithMean(samples, samples.length, bootstrapSizeInnerMeans, runMeans, startIndex, random);
+			}
 		}
 		
 		double[] finalSamples = new double[bootstrapSizeOuterMeans];
-		bootstrapWithMean(runMeans, runs.size(), bootstrapSizeOuterMeans, finalSamples, 0);
+		bootstrapWithMean(runMeans, runs.size(), bootstrapSizeOuterMeans, finalSamples, 0, random);
 		
 		for (int i = 0; i < finalSamples.length; i++) {
 			finalSamples[i] += shift;
@@ -162,20 +171,20 @@ public class DistributionLearningInterpretation implements Interpretation {
 	
 	
 	private double computeMean(DataSnapshot data) {
-		BenchmarkRun merged = BenchmarkRunUtils.merge(data.getRuns());
-		
-		BenchmarkRunSummary summary = new BenchmarkRunSummary(merged);
-		
-		return summary.getMean();
+		return BenchmarkRunUtils.accumulate(data.getRuns()).getMean();
 	}
 	
 	private void bootstrapWithMean(double[] data, int bootstrapLength, int count,
-	                               double[] result, int resultStartIndex) {
-		double[] tmp = new double[bootstrapLength];
-		
+	                               double[] result, int resultStartIndex, SplittableRandom random) {
+		for (int i = 0; i < count; i++) {
+			result[i + resultStartIndex] = StatisticsUtils.bootstrapMean(data, bootstrapLength, random);
+		}
+	}
+	
+	private void bootstrapWithMean(HistogramBenchmarkRun run, int count, double[] result, int resultStartIndex,
+	                               SplittableRandom random) {
 		for (int i = 0; i < count; i++) {
-			StatisticsUtils.bootstrap(data, tmp, bootstrapRandom);
-			result[i + resultStartIndex] = StatisticsUtils.mean(tmp);
+			result[i + resultStartIndex] = run.bootstrapMean(random);
 		}
 	}
 	
@@ -17,13 +17,17 @@
 package cz.cuni.mff.d3s.spl.interpretation;
 
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Random;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ForkJoinPool;
-import java.util.concurrent.Future;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 import org.apache.commons.math3.distribution.RealDistribution;
 
@@ -31,56 +35,99 @@ import cz.cuni.mff.d3s.spl.BenchmarkRun;
 import cz.cuni.mff.d3s.spl.ComparisonResult;
 import cz.cuni.mff.d3s.spl.DataSnapshot;
 import cz.cuni.mff.d3s.spl.Interpretation;
-import cz.cuni.mff.d3s.spl.data.BenchmarkRunSummary;
 import cz.cuni.mff.d3s.spl.data.BenchmarkRunUtils;
+import cz.cuni.mff.d3s.spl.data.StatisticsAccumulator;
 import cz.cuni.mff.d3s.spl.utils.DistributionUtils;
 import cz.cuni.mff.d3s.spl.utils.StatisticsUtils;
 
 
 /** Parallel implementation of the DistributionLearningInterpretation.
  * 
- * <b>Warning</b>: current implementation requires at least 4 worker threads
- * to be available due to parallelism nesting.
+ * <p>
+ * The computation is a graph of {@link CompletableFuture}s where each
+ * step is started only when its inputs are ready, thus no task ever
+ * blocks waiting for another one and any executor (even a single thread)
+ * can be used. Bootstrap replicates are split into chunks of roughly
+ * the same amount of work, each chunk with its own random stream split
+ * from the stream of the comparison, so the work spreads over all
+ * available threads.
+ * 
+ * <p>
+ * Every comparison starts from a generator seeded with the seed of the
+ * interpretation and the streams are split from it in a fixed order
+ * (chunks depend only on the data, not on the number of threads), hence
+ * the results are bit-identical for the same seed regardless of the
+ * executor and of other comparisons running concurrently.
  * 
  * @see DistributionLearningInterpretation
  */
 public class DistributionLearningInterpretationParallel implements Interpretation {
+	/** Seed used when none is given. */
+	public static final long DEFAULT_SEED = 0;
+	
+	/* Approximate number of samples picked by a single bootstrap task. */
+	private static final int CHUNK_PICKS = 1 << 16;
+	
 	private final int bootstrapSizeInnerMeans;
 	private final int bootstrapSizeOuterMeans;
 	private final int diffDistributionSampleCount;
-	private final ExecutorService executor;
+	private final Executor executor;
+	private final long seed;
 	
 	public DistributionLearningInterpretationParallel(ExecutorService executor) {
-		this(executor, 1000, 10000, 100000);
+		this(executor, DEFAULT_SEED);
+	}
+	
+	/** Create interpretation with given seed of the bootstrap.
+	 * 
+	 * @param executor Executor to compute in.
+	 * @param seed Seed of the random streams.
+	 */
+	public DistributionLearningInterpretationParallel(ExecutorService executor, long seed) {
+		this(executor, 1000, 10000, 100000, seed);
 	}
 	
+	/** Create interpretation computing in the common fork-join pool. */
 	public DistributionLearningInterpretationParallel() {
-		this(new ForkJoinPool(1));
+		this(ForkJoinPool.commonPool());
 	}
 	
 	private DistributionLearningInterpretationParallel(ExecutorService execService, int innerMeansSize,
-	                                                   int outerMeansSize, int diffDistrSize) {
+	                                                   int outerMeansSize, int diffDistrSize, long seed) {
 		bootstrapSizeInnerMeans = innerMeansSize;
 		bootstrapSizeOuterMeans = outerMeansSize;
 		diffDistributionSampleCount = diffDistrSize;
 		executor = execService;
+		this.seed = seed;
 	}
 	
 	public static DistributionLearningInterpretationParallel getFast(ExecutorService executor) {
+		return getFast(executor, DEFAULT_SEED);
+	}
+	
+	public static DistributionLearningInterpretationParallel getFast(ExecutorService executor, long seed) {
 		DistributionLearningInterpretationParallel result =
-				new DistributionLearningInterpretationParallel(executor, 100, 100, 1000);
+				new DistributionLearningInterpretationParallel(executor, 100, 100, 1000, seed);
 		return result;
 	}
 	
 	public static DistributionLearningInterpretationParallel get(ExecutorService executor) {
+		return get(executor, DEFAULT_SEED);
+	}
+	
+	public static DistributionLearningInterpretationParallel get(ExecutorService executor, long seed) {
 		DistributionLearningInterpretationParallel result =
-				new DistributionLearningInterpretationParallel(executor);
+				new DistributionLearningInterpretationParallel(executor, seed);
 		return result;
 	}
 	
 	public static DistributionLearningInterpretationParallel getReasonable(ExecutorService executor) {
+		return getReasonable(executor, DEFAULT_SEED);
+	}
+	
+	public static DistributionLearningInterpretationParallel getReasonable(ExecutorService executor, long seed) {
 		DistributionLearningInterpretationParallel result =
-				new DistributionLearningInterpretationParallel(executor, 1000, 1000, 10000);
+				new DistributionLearningInterpretationParallel(executor, 1000, 1000, 10000, seed);
 		return result;
 	}
 	
@@ -89,18 +136,14 @@ public class DistributionLearningInterpretationParallel implements Interpretatio
 	@Override
 	public ComparisonResult compare(DataSnapshot left, DataSnapshot right) {
 		try {
-			return compareThrowing(left, right);
-		} catch (InterruptedException e) {
-			e.printStackTrace();
-			return null;
-		} catch (ExecutionException e) {
+			return compareAsync(left, right).join();
+		} catch (CompletionException e) {
 			e.printStackTrace();
 			return null;
 		}
 	}
 	
-	private ComparisonResult compareThrowing(DataSnapshot left, DataSnapshot right)
-			throws InterruptedException, ExecutionException {
+	private CompletableFuture<ComparisonResult> compareAsync(DataSnapshot left, DataSnapshot right) {
 		// Pack data into arrays because some parts of the computation can then be easily repeated.
 		DataSnapshot[] dataSnapshots = new DataSnapshot [2];
 		dataSnapshots[0] = left;
@@ -108,51 +151,60 @@ public class DistributionLearningInterpretationParallel implements Interpretatio
 
 		DataSnapshot[] learningSets = getLearningSets(dataSnapshots [0], dataSnapshots [1]);
 		
+		SplittableRandom random = new SplittableRandom(seed);
+		
 		// Now just do some parts of the processing twice.
 
 		@SuppressWarnings("unchecked")
-		Future<Double>[] currentMeans = (Future<Double>[]) new Future<?>[2];
-
-		@SuppressWarnings("unchecked")
-		Future<Double>[] historicalMeans = (Future<Double>[]) new Future<?>[2];
+		CompletableFuture<Double>[] currentMeans = (CompletableFuture<Double>[]) new CompletableFuture<?>[2];
 
 		@SuppressWarnings("unchecked")
-		Future<double[]>[] normalizedMeanSamples = (Future<double[]>[]) new Future<?>[2];
+		CompletableFuture<double[]>[] normalizedMeanSamples = (CompletableFuture<double[]>[]) new CompletableFuture<?>[2];
 
 		for (int i = 0; i < 2; i++) {
 			// Compute the mean of the current runs.
-			currentMeans[i] = executor.submit(new MeanComputation(dataSnapshots[i]));
+			currentMeans[i] = CompletableFuture.supplyAsync(new MeanComputation(dataSnapshots[i]), executor);
 
 			// Compute the mean used to normalize the historical runs.
-			historicalMeans[i] = executor.submit(new MeanComputation(learningSets[i]));
+			CompletableFuture<Double> historicalMean = CompletableFuture.supplyAsync(
+					new MeanComputation(learningSets[i]), executor);
 
 			// Bootstrap means of means of samples of the normalized historical runs.
-			Future<double[][]> allSamplesOriginal = executor.submit(new RunsToDoubleArrays(learningSets[i]));
-			Future<double[][]> allSamplesShifted = executor.submit(
-					new SubtractFrom2DArray(allSamplesOriginal, historicalMeans[i]));
-			Future<double[]> boostrapped = executor.submit(
-				new DoubleBootstrap(
-					allSamplesShifted, 
-					bootstrapSizeInnerMeans, 
-					bootstrapSizeOuterMeans, 
-					dataSnapshots[i].getRunCount (), 
-					executor));
+			CompletableFuture<double[][]> allSamplesShifted = CompletableFuture
+					.supplyAsync(new RunsToDoubleArrays(learningSets[i]), executor)
+					.thenCombineAsync(historicalMean, new SubtractFrom2DArray(), executor);
+			CompletableFuture<double[]> runMeans = allSamplesShifted.thenComposeAsync(
+					new InnerBootstrap(bootstrapSizeInnerMeans, random.split(), executor), executor);
+			CompletableFuture<double[]> bootstrapped = runMeans.thenComposeAsync(
+					new OuterBootstrap(bootstrapSizeOuterMeans, dataSnapshots[i].getRunCount(),
+							random.split(), executor), executor);
 			
 			// Abuse bootstrap to do Monte Carlo of differences of means of means of samples later.
-			normalizedMeanSamples[i] = executor.submit(new Bootstrap(boostrapped, diffDistributionSampleCount));
+			normalizedMeanSamples[i] = bootstrapped.thenApplyAsync(
+					new Bootstrap(diffDistributionSampleCount, random.split()), executor);
 		}
 		
 		// Compute the difference of means of means of samples.
-		Future<double[]> normalizedMeanDifferencesFuture = executor.submit(
-				new ArrayDiff(normalizedMeanSamples[0], normalizedMeanSamples[1]));
+		CompletableFuture<double[]> normalizedMeanDifferences = normalizedMeanSamples[0].thenCombineAsync(
+				normalizedMeanSamples[1], new ArrayDiff(), executor);
 
 		// Use the distribution of the differences in historical means to classify the difference in current means. 
-		double currentMeanDifference = currentMeans[0].get() - currentMeans[1].get();
-		double[] normalizedMeanDifferences = normalizedMeanDifferencesFuture.get();
-		RealDistribution normalizedMeanDifferenceDistribution =
-				DistributionUtils.makeEmpirical(normalizedMeanDifferences);
+		CompletableFuture<Double> currentMeanDifference = currentMeans[0].thenCombine(currentMeans[1],
+				new BiFunction<Double, Double, Double>() {
+					@Override
+					public Double apply(Double leftMean, Double rightMean) {
+						return leftMean - rightMean;
+					}
+				});
 		
-		return new DistributionBasedComparisonResult(currentMeanDifference, normalizedMeanDifferenceDistribution);
+		return normalizedMeanDifferences.thenCombineAsync(currentMeanDifference,
+				new BiFunction<double[], Double, ComparisonResult>() {
+					@Override
+					public ComparisonResult apply(double[] differences, Double statistic) {
+						RealDistribution distribution = DistributionUtils.makeEmpirical(differences);
+						return new DistributionBasedComparisonResult(statistic, distribution);
+					}
+				}, executor);
 	}
 	
 	/** {@inheritDoc} */
@@ -202,27 +254,45 @@ public class DistributionLearningInterpretationParallel implements Interpretatio
 		}
 	}
 	
-	/** Append bootstrap samples of mean into result array.
+	/** Start tasks computing bootstrap samples of mean into result array.
+	 * 
+	 * <p>
+	 * The means are split into chunks, each chunk uses its own stream
+	 * split from the given one.
 	 *  
-	 * @param rnd Random generator to use for bootstrap.
+	 * @param random Random generator to split streams of the chunks from.
 	 * @param data Data to bootstrap from.
 	 * @param bootstrapLength How long sequences to bootstrap.
 	 * @param count How many mean samples to compute.
 	 * @param result Array of results to append to.
 	 * @param resultStartIndex Starting position in results.
+	 * @param executor Executor to run the tasks.
+	 * @param tasks List where to add the started tasks.
 	 */
-	private static void bootstrapMeans(Random rnd, double[] data, int bootstrapLength, int count,
-	                                   double[] result, int resultStartIndex) {
-		double[] tmp = new double[bootstrapLength];
-		
-		for (int i = 0; i < count; i++) {
-			StatisticsUtils.bootstrap(data, tmp, rnd);
-			result[i + resultStartIndex] = StatisticsUtils.mean(tmp);
+	private static void startMeanBootstraps(SplittableRandom random, double[] data, int bootstrapLength, int count,
+	                                        double[] result, int resultStartIndex, Executor executor,
+	                                        List<CompletableFuture<Void>> tasks) {
+		int chunkSize = Math.max(1, CHUNK_PICKS / Math.max(1, bootstrapLength));
+		for (int start = 0; start < count; start += chunkSize) {
+			MeanBootstrap chunk = new MeanBootstrap(random.split(), data, bootstrapLength,
+					Math.min(chunkSize, count - start), result, resultStartIndex + start);
+			tasks.add(CompletableFuture.runAsync(chunk, executor));
 		}
 	}
 	
+	/** Wait (without blocking) for all tasks, then provide the given result. */
+	private static CompletableFuture<double[]> whenAllDone(List<CompletableFuture<Void>> tasks, final double[] result) {
+		return CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[tasks.size()])).thenApply(
+				new Function<Void, double[]>() {
+					@Override
+					public double[] apply(Void ignored) {
+						return result;
+					}
+				});
+	}
+	
 	
-	private static class MeanComputation implements Callable<Double> {
+	private static class MeanComputation implements Supplier<Double> {
 		private final DataSnapshot[] data;
 		
 		/** Compute the mean of all samples given.
@@ -237,20 +307,17 @@ public class DistributionLearningInterpretationParallel implements Interpretatio
 		}
 
 		@Override
-		public Double call() throws Exception {
-			Collection<BenchmarkRun> merged = new ArrayList<>(data.length);
+		public Double get() {
+			StatisticsAccumulator statistics = new StatisticsAccumulator();
 			for (DataSnapshot d : data) {
-				merged.add(BenchmarkRunUtils.merge(d.getRuns()));
+				statistics.addAll(d.getRuns());
 			}
-			BenchmarkRun twiceMerged = BenchmarkRunUtils.merge(merged);
-				
-			BenchmarkRunSummary summary = new BenchmarkRunSummary(twiceMerged);
 			
-			return summary.getMean();
+			return statistics.getMean();
 		}
 	}
 	
-	private static class RunsToDoubleArrays implements Callable<double[][]> {
+	private static class RunsToDoubleArrays implements Supplier<double[][]> {
 		private final DataSnapshot data;
 		
 		/** Convert data snapshot into array of arrays of doubles, one double per sample, one array per run.
@@ -262,7 +329,7 @@ public class DistributionLearningInterpretationParallel implements Interpretatio
 		}
 
 		@Override
-		public double[][] call() throws Exception {
+		public double[][] get() {
 			double[][] result = new double[data.getRunCount()][];
 			
 			int index = 0;
@@ -276,96 +343,112 @@ public class DistributionLearningInterpretationParallel implements Interpretatio
 		
 	}
 	
-	private static class DoubleBootstrap implements Callable<double[]> {
-		private final ExecutorService executor;
-		private final Future<double[][]> dataFuture;
+	private static class InnerBootstrap implements Function<double[][], CompletionStage<double[]>> {
 		private final int bootstrapSizeInnerMeans;
-		private final int bootstrapSizeOuterMeans;
-		private final int grandMeanRunCount;
-		private final Random bootstrapRandom = new Random();
+		private final SplittableRandom random;
+		private final Executor executor;
 		
-		/** Compute bootstrap grand means from data.
+		/** Compute bootstrap means of each run.
 		 * 
-		 * @param dataFuture Data to use for computation.
 		 * @param innerSize How many bootstrap means to compute from each run.
-		 * @param outerSize How many bootstrap grand means to compute from the bootstrap means.
-		 * @param runCount How many runs to use in each grand mean.
-		 * @param exec The executor service to use.
+		 * @param rnd Random generator to split streams of the chunks from.
+		 * @param exec The executor to use.
 		 */
-		public DoubleBootstrap(Future<double[][]> dataFuture, int innerSize, int outerSize,
-		                       int runCount, ExecutorService exec) {
-			this.dataFuture = dataFuture;
+		public InnerBootstrap(int innerSize, SplittableRandom rnd, Executor exec) {
 			bootstrapSizeInnerMeans = innerSize;
-			bootstrapSizeOuterMeans = outerSize;
-			grandMeanRunCount = runCount;
+			random = rnd;
 			executor = exec;
 		}
 		
 		@Override
-		public double[] call() throws Exception {
-			double[][] data = dataFuture.get();
+		public CompletionStage<double[]> apply(double[][] data) {
 			int runCount = data.length;
 			
 			double[] runMeans = new double[runCount * bootstrapSizeInnerMeans];
-			ArrayList<Callable<Void>> tasks = new ArrayList<>(runCount);
-			for (int i = 0; i < runCount; i++) tasks.add(
-					new MeanBootstrap(data[i], runMeans, i * bootstrapSizeInnerMeans, bootstrapSizeInnerMeans));
+			List<CompletableFuture<Void>> tasks = new ArrayList<>();
+			for (int i = 0; i < runCount; i++) {
+				startMeanBootstraps(random, data[i], data[i].length, bootstrapSizeInnerMeans,
+						runMeans, i * bootstrapSizeInnerMeans, executor, tasks);
+			}
 			
-			executor.invokeAll(tasks);
-				
+			return whenAllDone(tasks, runMeans);
+		}
+	}
+	
+	private static class OuterBootstrap implements Function<double[], CompletionStage<double[]>> {
+		private final int bootstrapSizeOuterMeans;
+		private final int grandMeanRunCount;
+		private final SplittableRandom random;
+		private final Executor executor;
+		
+		/** Compute bootstrap grand means from bootstrap means of runs.
+		 * 
+		 * @param outerSize How many bootstrap grand means to compute from the bootstrap means.
+		 * @param runCount How many runs to use in each grand mean.
+		 * @param rnd Random generator to split streams of the chunks from.
+		 * @param exec The executor to use.
+		 */
+		public OuterBootstrap(int outerSize, int runCount, SplittableRandom rnd, Executor exec) {
+			bootstrapSizeOuterMeans = outerSize;
+			grandMeanRunCount = runCount;
+			random = rnd;
+			executor = exec;
+		}
+		
+		@Override
+		public CompletionStage<double[]> apply(double[] runMeans) {
 			double[] finalSamples = new double[bootstrapSizeOuterMeans];
-			bootstrapMeans(bootstrapRandom, runMeans, grandMeanRunCount, bootstrapSizeOuterMeans, finalSamples, 0);
-			
-			return finalSamples;
+			List<CompletableFuture<Void>> tasks = new ArrayList<>();
+			startMeanBootstraps(random, runMeans, grandMeanRunCount, bootstrapSizeOuterMeans,
+					finalSamples, 0, executor, tasks);
+			return whenAllDone(tasks, finalSamples);
 		}
 	}
 	
-	private static class MeanBootstrap implements Callable<Void> {
-		private final double[] fullArray;
-		private final int myStartIndex;
-		private final int myLength;
-		private final double[] myRun;
+	private static class MeanBootstrap implements Runnable {
+		private final SplittableRandom random;
+		private final double[] data;
+		private final int bootstrapLength;
+		private final int count;
+		private final double[] result;
+		private final int resultStartIndex;
 		
-		/** Append bootstrap samples of mean into result array.
+		/** Store bootstrap samples of mean into result array.
 		 * 
-		 * @param run Data to bootstrap from, bootstrap uses same sequence length as data length.
+		 * @param rnd Random generator used only by this task.
+		 * @param data Data to bootstrap from.
+		 * @param length How long sequences to bootstrap.
+		 * @param count How many mean samples to compute.
 		 * @param array Where to store the results.
-		 * @param startIndex How many results to append.
-		 * @param length Where to start appending the results.
+		 * @param startIndex Where to start storing the results.
 		 */
-		public MeanBootstrap(double[] run, double[] array, int startIndex, int length) {
-			myRun = run;
-			fullArray = array;
-			myStartIndex = startIndex;
-			myLength = length;
+		public MeanBootstrap(SplittableRandom rnd, double[] data, int length, int count,
+		                     double[] array, int startIndex) {
+			random = rnd;
+			this.data = data;
+			bootstrapLength = length;
+			this.count = count;
+			result = array;
+			resultStartIndex = startIndex;
 		}
 		
 		@Override
-		public Void call() throws Exception {
-			bootstrapMeans(new Random(0), myRun, myRun.length, myLength, fullArray, myStartIndex);
-			return null;
+		public void run() {
+			for (int i = 0; i < count; i++) {
+				result[i + resultStartIndex] = StatisticsUtils.bootstrapMean(data, bootstrapLength, random);
+			}
 		}
 	}
 	
-	private static class SubtractFrom2DArray implements Callable<double[][]> {
-		private final Future<double[][]> arrayFuture;
-		private final Future<Double> constantFuture;
-		
+	private static class SubtractFrom2DArray implements BiFunction<double[][], Double, double[][]> {
 		/** Subtract a constant from all samples in an array of arrays of doubles.
 		 * 
-		 * @param arr Future array of arrays of doubles to subtract from.
-		 * @param c Future constant to subtract.
+		 * @param arrays Array of arrays of doubles to subtract from (modified).
+		 * @param c Constant to subtract.
+		 * @return The modified arrays.
 		 */
-		public SubtractFrom2DArray(Future<double[][]> arr, Future<Double> c) {
-			arrayFuture = arr;
-			constantFuture = c;
-		}
-
 		@Override
-		public double[][] call() throws Exception {
-			double[][] arrays = arrayFuture.get();
-			double c = constantFuture.get();
-			
+		public double[][] apply(double[][] arrays, Double c) {
 			for (int i = 0; i < arrays.length; i++) {
 				for (int j = 0; j < arrays[i].length; j++) {
 					arrays[i][j] -= c;
@@ -376,45 +459,33 @@ public class DistributionLearningInterpretationParallel implements Interpretatio
 		}
 	}
 	
-	private static class Bootstrap implements Callable<double[]> {
-		private final Future<double[]> samplesFuture;
+	private static class Bootstrap implements Function<double[], double[]> {
 		private final int count;
+		private final SplittableRandom random;
 		
 		/** Computes bootstrap of given sequence length.
 		 * 
-		 * @param samples Data to bootstrap.
 		 * @param samplesCount Sequence length to return.
+		 * @param rnd Random generator to use.
 		 */
-		public Bootstrap(Future<double[]> samples, int samplesCount) {
-			samplesFuture = samples;
+		public Bootstrap(int samplesCount, SplittableRandom rnd) {
 			count = samplesCount;
+			random = rnd;
 		}
 		
 		@Override
-		public double[] call() throws Exception {
+		public double[] apply(double[] samples) {
 			double[] result = new double[count];
-			double[] samples = samplesFuture.get();
-			StatisticsUtils.bootstrap(samples, result, new Random());
+			StatisticsUtils.bootstrap(samples, result, random);
 			return result;
 		}
 	}
 	
-	private static class ArrayDiff implements Callable<double[]> {
-		private final Future<double[]> leftFuture;
-		private final Future<double[]> rightFuture;
-		
+	private static class ArrayDiff implements BiFunction<double[], double[], double[]> {
 		/** Compute item by item difference of two arrays.
 		 */
-		public ArrayDiff(Future<double[]> left, Future<double[]> right) {
-			leftFuture = left;
-			rightFuture = right;
-		}
-		
 		@Override
-		public double[] call() throws Exception {
-			double[] left = leftFuture.get();
-			double[] right = rightFuture.get();
-			
+		public double[] apply(double[] left, double[] right) {
 			if (left.length != right.length) {
 				throw new IllegalArgumentException("Arrays differs in length!");
 			}
@@ -20,6 +20,8 @@ import cz.cuni.mff.d3s.spl.BenchmarkRun;
 import cz.cuni.mff.d3s.spl.ComparisonResult;
 import cz.cuni.mff.d3s.spl.DataSnapshot;
 import cz.cuni.mff.d3s.spl.Interpretation;
+import cz.cuni.mff.d3s.spl.data.BenchmarkRunUtils;
+import cz.cuni.mff.d3s.spl.data.StatisticsAccumulator;
 
 /** Primitive interpretation that merely compares arithmetic means.
  *
@@ -92,18 +94,11 @@ public class KindergartenInterpretation implements Interpretation {
 	}
 	
 	private double getMean(DataSnapshot data) {
-		double sum = 0;
-		long count = 0;
-		for (BenchmarkRun run : data.getRuns()) {
-			for (double sample : run.getSamples()) {
-				sum += sample;
-				count++;
-			}
-		}
-		if (count == 0) {
+		StatisticsAccumulator statistics = BenchmarkRunUtils.accumulate(data.getRuns());
+		if (statistics.getCount() == 0) {
 			return 0.;
 		} else {
-			return sum / count;
+			return statistics.getMean();
 		}
 	}
 	
@@ -17,39 +17,41 @@
 package cz.cuni.mff.d3s.spl.interpretation;
 
 import org.apache.commons.math3.distribution.NormalDistribution;
-import org.apache.commons.math3.stat.inference.MannWhitneyUTest;
 
-import cz.cuni.mff.d3s.spl.BenchmarkRun;
 import cz.cuni.mff.d3s.spl.ComparisonResult;
 import cz.cuni.mff.d3s.spl.DataSnapshot;
 import cz.cuni.mff.d3s.spl.Interpretation;
 import cz.cuni.mff.d3s.spl.data.BenchmarkRunUtils;
+import cz.cuni.mff.d3s.spl.data.HistogramBenchmarkRun;
 
 /** SPL interpretation based on Mann-Whitney test.
  * 
  * This code is greatly inspired by
  * org.apache.commons.math3.stat.inference.MannWhitneyUTest implementation
  * that could not be used directly in the compare() method.
+ * 
+ * The samples are merged into sorted histograms, thus ranks are computed
+ * per distinct value and histogram runs are never expanded.
  *
  */
 public class MannWhitneyInterpretation implements Interpretation {
-	private final MannWhitneyUTest utest = new MannWhitneyUTest();
-	
 	/** {@inheritDoc} */
 	@Override
 	public ComparisonResult compare(DataSnapshot left, DataSnapshot right) {
-		double[] leftSamples = mergeSamples(left);
-		double[] rightSamples = mergeSamples(right);
+		HistogramBenchmarkRun leftSamples = mergeSamples(left);
+		HistogramBenchmarkRun rightSamples = mergeSamples(right);
 		
-		double uStatMax = utest.mannWhitneyU(leftSamples, rightSamples);
+		double uStatMax = mannWhitneyU(leftSamples, rightSamples);
 		
-		long lengthsMultiplied = (long) leftSamples.length * rightSamples.length;
+		long leftCount = leftSamples.getSampleCount();
+		long rightCount = rightSamples.getSampleCount();
+		long lengthsMultiplied = leftCount * rightCount;
 
 		double uStatMin = lengthsMultiplied - uStatMax;
 		
 		/* https://en.wikipedia.org/wiki/Mann%E2%80%93Whitney_U_test#Normal_approximation */
 		double meanU = lengthsMultiplied / 2.0;
-		double varU = lengthsMultiplied * (leftSamples.length + rightSamples.length + 1) / 12.0;
+		double varU = lengthsMultiplied * (leftCount + rightCount + 1) / 12.0;
 		
 		double z = (uStatMin - meanU) / Math.sqrt(varU);
 		
@@ -64,9 +66,59 @@ public class MannWhitneyInterpretation implements Interpretation {
 		throw new UnsupportedOperationException("This is not yet implemented.");
 	}
 
-	private double[] mergeSamples(DataSnapshot data) {
-		BenchmarkRun merged = BenchmarkRunUtils.merge(data.getRuns());
+	private HistogramBenchmarkRun mergeSamples(DataSnapshot data) {
+		return BenchmarkRunUtils.toSortedHistogram(data.getRuns());
+	}
+	
+	/** Compute the larger of the two U statistics.
+	 * 
+	 * Tied values get average of their ranks (as with MannWhitneyUTest).
+	 * 
+	 * @param x First sample as a sorted histogram.
+	 * @param y Second sample as a sorted histogram.
+	 * @return Larger of the U statistics.
+	 */
+	private static double mannWhitneyU(HistogramBenchmarkRun x, HistogramBenchmarkRun y) {
+		int xBuckets = x.getBucketCount();
+		int yBuckets = y.getBucketCount();
+		double rankSumX = 0.0;
+		long position = 0;
+		
+		int i = 0;
+		int j = 0;
+		while ((i < xBuckets) || (j < yBuckets)) {
+			double value;
+			if (i == xBuckets) {
+				value = y.getBucketValue(j);
+			} else if (j == yBuckets) {
+				value = x.getBucketValue(i);
+			} else {
+				/* Same ordering as the sorting (NaNs last). */
+				value = Double.compare(x.getBucketValue(i), y.getBucketValue(j)) <= 0
+						? x.getBucketValue(i) : y.getBucketValue(j);
+			}
+			
+			long xCount = 0;
+			long yCount = 0;
+			if ((i < xBuckets) && (Double.compare(x.getBucketValue(i), value) == 0)) {
+				xCount = x.getBucketSampleCount(i);
+				i++;
+			}
+			if ((j < yBuckets) && (Double.compare(y.getBucketValue(j), value) == 0)) {
+				yCount = y.getBucketSampleCount(j);
+				j++;
+			}
+			
+			double averageRank = position + (xCount + yCount + 1) / 2.0;
+			rankSumX += averageRank * xCount;
+			position += xCount + yCount;
+		}
+		
+		double xCount = x.getSampleCount();
+		double yCount = y.getSampleCount();
+		double u1 = rankSumX - xCount * (xCount + 1) / 2.0;
+		double u2 = xCount * yCount - u1;
 		
-		return BenchmarkRunUtils.toDoubleArray(merged);
+		return Math.max(u1, u2);
 	}
 }
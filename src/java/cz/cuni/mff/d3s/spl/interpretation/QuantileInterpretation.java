@@ -0,0 +1,109 @@
+/*
+ * Copyright 2015 Charles University in Prague
+ * Copyright 2015 Vojtech Horky
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.cuni.mff.d3s.spl.interpretation;
+
+import cz.cuni.mff.d3s.spl.ComparisonResult;
+import cz.cuni.mff.d3s.spl.DataSnapshot;
+import cz.cuni.mff.d3s.spl.Interpretation;
+import cz.cuni.mff.d3s.spl.data.BenchmarkRunUtils;
+import cz.cuni.mff.d3s.spl.data.QuantileSketch;
+
+/** SPL interpretation that compares a quantile (e.g. the 99th percentile).
+ *
+ * <p>
+ * The quantiles are estimated from merged quantile sketches of the runs,
+ * thus tail latencies of huge runs are compared without materializing
+ * the samples. The comparison is not a statistical test: the quantiles
+ * are considered equal when they differ by less than the accuracy of
+ * the sketches, the significance level is ignored.
+ *
+ * <p>
+ * The interpretation keeps no state and can be shared by multiple threads.
+ */
+public class QuantileInterpretation implements Interpretation {
+	private final double quantile;
+	
+	private static class QuantileComparisonResult implements ComparisonResult {
+		private final Relation relation;
+		private final double diff;
+		
+		public QuantileComparisonResult(double left, double right, double accuracy) {
+			diff = left - right;
+			if (Double.isNaN(diff)) {
+				relation = Relation.UNKNOWN;
+			} else if (Math.abs(diff) <= accuracy * (Math.abs(left) + Math.abs(right))) {
+				relation = Relation.EQUAL;
+			} else if (diff < 0.) {
+				relation = Relation.LESS_THAN;
+			} else {
+				relation = Relation.GREATER_THAN;
+			}
+		}
+
+		@Override
+		public Relation get(double significanceLevel) {
+			return relation;
+		}
+
+		/** Get difference of the quantiles.
+		 * 
+		 * @return Left quantile minus the right one.
+		 */
+		@Override
+		public double getStatistic() {
+			return diff;
+		}
+
+		@Override
+		public double getCriticalValue(double significanceLevel) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public double[] getConfidenceInterval(double confidenceLevel) {
+			throw new UnsupportedOperationException();
+		}
+	}
+	
+	/** Create interpretation comparing given quantile.
+	 * 
+	 * @param quantile Quantile to compare (between 0 and 1, e.g. 0.99).
+	 */
+	public QuantileInterpretation(double quantile) {
+		if (!(quantile >= 0.0) || !(quantile <= 1.0)) {
+			throw new IllegalArgumentException("Quantile must be between 0 and 1");
+		}
+		this.quantile = quantile;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public ComparisonResult compare(DataSnapshot left, DataSnapshot right) {
+		QuantileSketch leftSketch = BenchmarkRunUtils.sketch(left.getRuns());
+		QuantileSketch rightSketch = BenchmarkRunUtils.sketch(right.getRuns());
+		return new QuantileComparisonResult(leftSketch.getQuantile(quantile),
+				rightSketch.getQuantile(quantile), leftSketch.getRelativeAccuracy());
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public ComparisonResult compare(DataSnapshot data, double value) {
+		QuantileSketch sketch = BenchmarkRunUtils.sketch(data.getRuns());
+		return new QuantileComparisonResult(sketch.getQuantile(quantile),
+				value, sketch.getRelativeAccuracy());
+	}
+}
@@ -19,30 +19,28 @@ package cz.cuni.mff.d3s.spl.interpretation;
 import org.apache.commons.math3.distribution.RealDistribution;
 import org.apache.commons.math3.distribution.TDistribution;
 
-import cz.cuni.mff.d3s.spl.BenchmarkRun;
 import cz.cuni.mff.d3s.spl.ComparisonResult;
 import cz.cuni.mff.d3s.spl.DataSnapshot;
 import cz.cuni.mff.d3s.spl.Interpretation;
-import cz.cuni.mff.d3s.spl.data.BenchmarkRunSummary;
 import cz.cuni.mff.d3s.spl.data.BenchmarkRunUtils;
+import cz.cuni.mff.d3s.spl.data.StatisticsAccumulator;
 
 /** SPL interpretation based on Welch's t-test.
  *
+ * <p>
+ * The interpretation keeps no state and can be shared by multiple threads.
  */
 public class WelchTestInterpretation implements Interpretation {
-	private double statistic;
-	private RealDistribution distribution = null;
-	
 	/** {@inheritDoc} */
 	@Override
 	public ComparisonResult compare(DataSnapshot left, DataSnapshot right) {
-		BenchmarkRunSummary leftSummary = computeMergedStatistic(left);
-		BenchmarkRunSummary rightSummary = computeMergedStatistic(right);
+		StatisticsAccumulator leftSummary = computeMergedStatistic(left);
+		StatisticsAccumulator rightSummary = computeMergedStatistic(right);
 		
-		statistic = getStatistic(leftSummary, rightSummary);
+		double statistic = getStatistic(leftSummary, rightSummary);
 		
 		double freedomDeg = getDegreesOfFreedom(leftSummary, rightSummary);
-		distribution = new TDistribution(freedomDeg);
+		RealDistribution distribution = new TDistribution(freedomDeg);
 		
 		return new DistributionBasedComparisonResult(statistic, distribution);
 	}
@@ -50,34 +48,32 @@ public class WelchTestInterpretation implements Interpretation {
 	/** {@inheritDoc} */
 	@Override
 	public ComparisonResult compare(DataSnapshot data, double value) {
-		BenchmarkRunSummary snapshotSummary = computeMergedStatistic(data);
+		StatisticsAccumulator snapshotSummary = computeMergedStatistic(data);
 				
-		statistic = getStatistic(snapshotSummary, value);
+		double statistic = getStatistic(snapshotSummary, value);
 		
-		double freedomDeg = snapshotSummary.getSize() - 1;
-		distribution = new TDistribution(freedomDeg);
+		double freedomDeg = snapshotSummary.getCount() - 1;
+		RealDistribution distribution = new TDistribution(freedomDeg);
 		
 		return new DistributionBasedComparisonResult(statistic, distribution);
 	}
 
-	private BenchmarkRunSummary computeMergedStatistic(DataSnapshot data) {
-		BenchmarkRun merged = BenchmarkRunUtils.merge(data.getRuns());
-		
-		return new BenchmarkRunSummary(merged);
+	private StatisticsAccumulator computeMergedStatistic(DataSnapshot data) {
+		return BenchmarkRunUtils.accumulate(data.getRuns());
 	}
 	
-	private double getStatistic(BenchmarkRunSummary x, BenchmarkRunSummary y) {
+	private double getStatistic(StatisticsAccumulator x, StatisticsAccumulator y) {
 		double numer = x.getMean() - y.getMean();
-		double denom2 = x.getVariance() / x.getSize() + y.getVariance() / y.getSize();
+		double denom2 = x.getVariance() / x.getCount() + y.getVariance() / y.getCount();
 		return (numer) / Math.sqrt(denom2);
 	}
 	
-	private double getStatistic(BenchmarkRunSummary x, double mean) {
-		return (x.getMean() - mean) / (Math.sqrt(x.getVariance()) / Math.sqrt(x.getSize()));
+	private double getStatistic(StatisticsAccumulator x, double mean) {
+		return (x.getMean() - mean) / (Math.sqrt(x.getVariance()) / Math.sqrt(x.getCount()));
 	}
 	
-	private double getDegreesOfFreedom(BenchmarkRunSummary x, BenchmarkRunSummary y) {
-		return getDegreesOfFreedom(x.getVariance(), x.getSize(), y.getVariance(), y.getSize());
+	private double getDegreesOfFreedom(StatisticsAccumulator x, StatisticsAccumulator y) {
+		return getDegreesOfFreedom(x.getVariance(), x.getCount(), y.getVariance(), y.getCount());
 	}
 
 	private double getDegreesOfFreedom(double xVar, long xSize, double yVar, long ySize) {
@@ -16,7 +16,6 @@
  */
 package cz.cuni.mff.d3s.spl.utils;
 
-import org.apache.commons.math3.random.EmpiricalDistribution;
 import org.apache.commons.math3.random.JDKRandomGenerator;
 import org.apache.commons.math3.random.RandomGenerator;
 
@@ -25,18 +24,19 @@ import org.apache.commons.math3.random.RandomGenerator;
 public class DistributionUtils  {
 		
 	/** Create empirical distribution from given samples.
+	 * 
+	 * <p>
+	 * The distribution interpolates between sorted samples, see
+	 * {@link SortedEmpiricalDistribution}.
 	 * 
 	 * @param samples Samples (does not need to be distinct) to use.
 	 * @return Empirical distribution built from the samples.
 	 */
-	public static EmpiricalDistribution makeEmpirical(double[] samples) {
+	public static SortedEmpiricalDistribution makeEmpirical(double[] samples) {
 		/* Be deterministic for now. */
 		RandomGenerator gen = new JDKRandomGenerator();
 		gen.setSeed(0);
 		
-		EmpiricalDistribution result = new EmpiricalDistribution(samples.length / 10 + 1, gen);
-		result.load(samples);
-		
-		return result;
+		return new SortedEmpiricalDistribution(samples, gen);
 	}
 }
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2015 Charles University in Prague
+ * Copyright 2015 Vojtech Horky
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.cuni.mff.d3s.spl.utils;
+
+import java.util.Arrays;
+
+/** Ring buffer of primitive doubles.
+ *
+ * <p>
+ * Same as {@link RingBuffer} but without boxing: adding a sample takes
+ * constant time and does not allocate once the buffer is full.
+ * For lock-free recording by a single thread see {@link SampleRing}.
+ */
+public class DoubleRingBuffer {
+	private static final int INITIAL_CAPACITY = 64;
+	
+	private double[] data = new double[0];
+	/* Index of the oldest sample. */
+	private int head = 0;
+	private int size = 0;
+	private final int maxSize;
+	
+	/** Creates ring-buffer with virtually unlimited size. */
+	public DoubleRingBuffer() {
+		this(Integer.MAX_VALUE);
+	}
+	
+	/** Creates ring-buffer of given size.
+	 * 
+	 * @param size Maximum number of samples kept.
+	 */
+	public DoubleRingBuffer(int size) {
+		if (size <= 0) {
+			throw new IllegalArgumentException("Ring buffer size must be positive");
+		}
+		maxSize = size;
+	}
+	
+	/** Add a sample, evicting the oldest one when the buffer is full.
+	 * 
+	 * @param value Sample to add.
+	 */
+	public synchronized void add(double value) {
+		if (size < data.length) {
+			data[RingBufferUtils.index(head, size, data.length)] = value;
+			size++;
+		} else if (size < maxSize) {
+			/* Not full yet, thus head is at the beginning. */
+			data = Arrays.copyOf(data, RingBufferUtils.grownCapacity(data.length, INITIAL_CAPACITY, maxSize));
+			data[size] = value;
+			size++;
+		} else {
+			data[head] = value;
+			head = RingBufferUtils.index(head, 1, data.length);
+		}
+	}
+	
+	/** Add multiple samples.
+	 * 
+	 * @param values Samples to add.
+	 */
+	public synchronized void add(double... values) {
+		for (double v : values) {
+			add(v);
+		}
+	}
+	
+	/** Get copy of the current content.
+	 * 
+	 * @return Samples from the oldest one.
+	 */
+	public synchronized double[] toArray() {
+		double[] result = new double[size];
+		RingBufferUtils.copy(data, data.length, head, size, result);
+		return result;
+	}
+	
+	/** Remove all samples, the allocated array is kept. */
+	public synchronized void clear() {
+		head = 0;
+		size = 0;
+	}
+	
+	/** Tell number of samples in the buffer.
+	 * 
+	 * @return Number of samples.
+	 */
+	public synchronized int size() {
+		return size;
+	}
+	
+	public int getRingSize() {
+		return maxSize;
+	}
+}
@@ -23,26 +23,39 @@ import java.util.Iterator;
 public class PrimitiveIterables {
 	
 	public static Iterable<Double> makeIterable(final double[] array) {
+		return makeIterable(array, 0, array.length);
+	}
+	
+	/** Create iterable over a part of an array.
+	 * 
+	 * @param array Array to iterate over.
+	 * @param offset Index of the first element.
+	 * @param length Number of elements to iterate over.
+	 * @return Iterable over the given range of the array.
+	 */
+	public static Iterable<Double> makeIterable(final double[] array, final int offset, final int length) {
 		return new Iterable<Double>() {
 			@Override
 			public Iterator<Double> iterator() {
-				return new LongIterator(array);
+				return new LongIterator(array, offset, offset + length);
 			}
 		};
 	}
 	
 	private static class LongIterator implements Iterator<Double> {
 		private final double[] array;
+		private final int end;
 		private int index;
 		
-		public LongIterator(final double[] data) {
+		public LongIterator(final double[] data, int start, int stop) {
 			array = data;
-			index = 0;
+			index = start;
+			end = stop;
 		}
 		
 		@Override
 		public boolean hasNext() {
-			return index < array.length;
+			return index < end;
 		}
 
 		@Override
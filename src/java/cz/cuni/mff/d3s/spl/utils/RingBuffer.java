@@ -16,16 +16,27 @@
  */
 package cz.cuni.mff.d3s.spl.utils;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.LinkedList;
-import java.util.List;
 
-/** Simple ring buffer with option of unlimited size.
+/** Ring buffer keeping the last added elements.
+ *
+ * <p>
+ * Elements are stored in a circular array, adding an element (and
+ * evicting the oldest one) takes constant time and does not allocate
+ * once the buffer is full. The array grows up to the ring size, thus
+ * (virtually) unlimited buffers are possible.
+ *
+ * @param <E> Element type.
  */
 public class RingBuffer<E> {
+	private static final int INITIAL_CAPACITY = 16;
 	
-	private List<E> data = new LinkedList<>();
+	private Object[] data = new Object[0];
+	/* Index of the oldest element. */
+	private int head = 0;
+	private int size = 0;
 	private int maxSize = Integer.MAX_VALUE;
 	
 	/** Creates ring-buffer with virtually unlimited size.
@@ -50,14 +61,43 @@ public class RingBuffer<E> {
 	}
 	
 	public synchronized void add(E element) {
-		data.add(element);
-		if (data.size() > maxSize) {
-			data.remove(0);
+		if (maxSize == 0) {
+			return;
+		}
+		if (size < data.length) {
+			data[RingBufferUtils.index(head, size, data.length)] = element;
+			size++;
+		} else if (size < maxSize) {
+			/* Not full yet, thus head is at the beginning. */
+			data = Arrays.copyOf(data, RingBufferUtils.grownCapacity(data.length, INITIAL_CAPACITY, maxSize));
+			data[size] = element;
+			size++;
+		} else {
+			data[head] = element;
+			head = RingBufferUtils.index(head, 1, data.length);
 		}
 	}
 	
+	/** Get copy of the current content.
+	 * 
+	 * <p>
+	 * The result does not change when elements are added later.
+	 * 
+	 * @return Elements from the oldest one.
+	 */
+	@SuppressWarnings("unchecked")
 	public synchronized Collection<E> get() {
-		return Collections.unmodifiableCollection(data);
+		Object[] result = new Object[size];
+		RingBufferUtils.copy(data, data.length, head, size, result);
+		return Collections.unmodifiableList(Arrays.asList((E[]) result));
+	}
+	
+	/** Tell number of elements in the buffer.
+	 * 
+	 * @return Number of elements.
+	 */
+	public synchronized int size() {
+		return size;
 	}
 	
 	public int getRingSize() {
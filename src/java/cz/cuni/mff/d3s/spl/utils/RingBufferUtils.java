@@ -0,0 +1,65 @@
+/*
+ * Copyright 2015 Charles University in Prague
+ * Copyright 2015 Vojtech Horky
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.cuni.mff.d3s.spl.utils;
+
+/** Index arithmetic shared by the array-backed ring buffers.
+ */
+class RingBufferUtils {
+	/* Maximum array size supported by common JVMs. */
+	static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+	
+	/** Compute array index of an element.
+	 * 
+	 * @param head Index of the oldest element.
+	 * @param offset Position of the element from the oldest one (less than capacity).
+	 * @param capacity Array length.
+	 * @return Array index of the element.
+	 */
+	static int index(int head, int offset, int capacity) {
+		if (offset < capacity - head) {
+			return head + offset;
+		} else {
+			return offset - (capacity - head);
+		}
+	}
+	
+	/** Compute capacity of a full array that needs to grow.
+	 * 
+	 * @param capacity Current capacity.
+	 * @param initialCapacity Capacity of the first allocation.
+	 * @param maxSize Ring size.
+	 * @return New capacity.
+	 */
+	static int grownCapacity(int capacity, int initialCapacity, int maxSize) {
+		long wanted = Math.max(initialCapacity, 2L * capacity);
+		return (int) Math.min(wanted, Math.min(maxSize, MAX_CAPACITY));
+	}
+	
+	/** Copy ring content into an array.
+	 * 
+	 * @param data Ring array.
+	 * @param capacity Length of the ring array.
+	 * @param head Index of the oldest element.
+	 * @param size Number of elements.
+	 * @param dest Destination array (of the same type as data).
+	 */
+	static void copy(Object data, int capacity, int head, int size, Object dest) {
+		int firstPart = Math.min(size, capacity - head);
+		System.arraycopy(data, head, dest, 0, firstPart);
+		System.arraycopy(data, 0, dest, firstPart, size - firstPart);
+	}
+}
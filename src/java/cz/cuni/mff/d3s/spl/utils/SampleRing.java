@@ -0,0 +1,448 @@
+/*
+ * Copyright 2015 Charles University in Prague
+ * Copyright 2015 Vojtech Horky
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.cuni.mff.d3s.spl.utils;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/** Lock-free ring of double samples with single writer and multiple readers.
+ * 
+ * <p>
+ * The ring keeps the last maxSize samples in a primitive array. Every
+ * sample has a sequence number (its position in the whole stream), the
+ * writer announces the sequence number before storing the sample and
+ * publishes the number of written samples afterwards. Readers copy a
+ * range of published samples and afterwards check (from the announced
+ * number) which of the copied slots could have been overwritten in the
+ * meantime, those are dropped. Thus readers never
+ * block the writer and always get a contiguous range of samples that
+ * were really written, possibly without the oldest ones.
+ * 
+ * <p>
+ * The array grows (up to maxSize and a small reserve) while the ring
+ * is not full, once full, adding a sample does not allocate anything.
+ * The reserve slots keep the samples that have just left the ring so
+ * that readers are rarely disturbed by the writer.
+ * 
+ * <p>
+ * The writer also maintains sum and sum of squares of the samples in
+ * the ring, shifted by an estimate of their mean to avoid catastrophic
+ * cancellation. They are updated with every sample (the evicted sample
+ * is subtracted, plain sums are much cheaper than Welford's update for
+ * the writer) and recomputed from scratch (with the exact mean as the
+ * new shift) after several laps so that rounding errors cannot
+ * accumulate. Readers get the mean and sum of squared differences from
+ * the mean without touching the samples, see {@link #getWindow()}.
+ * 
+ * <p>
+ * Samples and sums are stored as raw bits of the doubles in atomic longs,
+ * the writer publishes them with ordered (release) stores only.
+ * 
+ * <p>
+ * Method {@link #add(double)} must be called by one thread at a time,
+ * concurrent calls corrupt the ring. With assertions enabled, overlapping
+ * calls are detected and fail with {@link AssertionError}.
+ */
+public class SampleRing {
+	private static final int INITIAL_CAPACITY = 1024;
+	
+	/* Maximum array size supported by common JVMs. */
+	private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+	
+	/* How many times the ring is overwritten before the sums are recomputed. */
+	private static final int RECOMPUTE_LAPS = 16;
+	
+	/* How many times the writer may disturb a reader before it gives up on statistics. */
+	private static final int MAX_ATTEMPTS = 16;
+	
+	private final int maxSize;
+	
+	/** Array size including the reserve. */
+	private final int capacity;
+	
+	/** Current array (of double bits), replaced (by a bigger one) only before the ring is full. */
+	private volatile AtomicLongArray samples;
+	
+	/** Number of samples written so far (sequence number of the next sample). */
+	private final AtomicLong written = new AtomicLong();
+	
+	/** Number of samples whose write has started. */
+	private final AtomicLong claimed = new AtomicLong();
+	
+	/* Sums of (sample - shift) over the ring, as double bits. */
+	private final AtomicLong shift = new AtomicLong(Double.doubleToRawLongBits(0.0));
+	private final AtomicLong sum = new AtomicLong(Double.doubleToRawLongBits(0.0));
+	private final AtomicLong sumOfSquares = new AtomicLong(Double.doubleToRawLongBits(0.0));
+	
+	/** Number of threads inside {@link #add(double)}, maintained only with assertions enabled. */
+	private final AtomicInteger activeWriters = new AtomicInteger();
+	
+	/* Writer-only state. */
+	private AtomicLongArray writerSamples;
+	private int writeIndex = 0;
+	private long writeCount = 0;
+	private double writerShift = 0.0;
+	private double writerSum = 0.0;
+	private double writerSumOfSquares = 0.0;
+	/** Slot of the oldest sample in the ring (valid once the ring is full). */
+	private int evictIndex = 0;
+	private long evictionsSinceRecompute = 0;
+	
+	/** Range of samples in the ring together with their statistics.
+	 * 
+	 * <p>
+	 * The window does not hold the samples, they are copied from the ring
+	 * only when asked for (see {@link #copySamples()}), thus the copy must
+	 * be made before the writer overwrites them.
+	 */
+	public static final class Window {
+		private final SampleRing ring;
+		private final long start;
+		private final long end;
+		private final boolean hasStatistics;
+		private final double mean;
+		private final double m2;
+		
+		private Window(SampleRing ring, long start, long end, boolean hasStatistics, double mean, double m2) {
+			this.ring = ring;
+			this.start = start;
+			this.end = end;
+			this.hasStatistics = hasStatistics;
+			this.mean = mean;
+			this.m2 = m2;
+		}
+		
+		/** Get sequence number of the oldest sample.
+		 * 
+		 * @return Sequence number of the first sample in the window.
+		 */
+		public long getStart() {
+			return start;
+		}
+		
+		/** Get sequence number following the newest sample.
+		 * 
+		 * @return Number of samples written to the ring when the window was taken.
+		 */
+		public long getEnd() {
+			return end;
+		}
+		
+		/** Get number of samples in the window.
+		 * 
+		 * @return Sample count.
+		 */
+		public int getCount() {
+			return (int) (end - start);
+		}
+		
+		/** Copy all samples of the window from the ring.
+		 * 
+		 * @return Samples from the oldest to the newest.
+		 * @throws IllegalStateException When the writer has overwritten some
+		 * of the samples since the window was taken.
+		 */
+		public double[] copySamples() {
+			double[] result = ring.copyRange(start, end);
+			if (result.length < getCount()) {
+				throw new IllegalStateException(String.format(
+						"%d of %d samples of the window were overwritten.",
+						getCount() - result.length, getCount()));
+			}
+			return result;
+		}
+		
+		/** Copy samples of the window that are still in the ring.
+		 * 
+		 * <p>
+		 * When the writer has overwritten some of the samples since the
+		 * window was taken, the oldest ones are missing (and the statistics
+		 * of the window do not describe the result).
+		 * 
+		 * @return Samples from the oldest to the newest.
+		 */
+		public double[] copyRemainingSamples() {
+			return ring.copyRange(start, end);
+		}
+		
+		/** Tell whether the statistics below describe the samples.
+		 * 
+		 * @return False when the writer was too fast to get consistent values
+		 * or when the window does not cover the whole ring.
+		 */
+		public boolean hasStatistics() {
+			return hasStatistics;
+		}
+		
+		/** Get arithmetic mean of the samples.
+		 * 
+		 * @return Mean, NaN when there are no samples or no statistics.
+		 */
+		public double getMean() {
+			return mean;
+		}
+		
+		/** Get sum of squared differences from the mean.
+		 * 
+		 * @return M2, NaN when there are no samples or no statistics.
+		 */
+		public double getM2() {
+			return m2;
+		}
+	}
+	
+	/** Create ring keeping at most given number of samples.
+	 * 
+	 * @param maxSize Ring size (Integer.MAX_VALUE for virtually unlimited).
+	 */
+	public SampleRing(int maxSize) {
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("Ring size must be positive");
+		}
+		this.maxSize = Math.min(maxSize, MAX_CAPACITY);
+		this.capacity = (int) Math.min(MAX_CAPACITY, this.maxSize + this.maxSize / 8L + 16);
+		writerSamples = new AtomicLongArray(Math.min(capacity, INITIAL_CAPACITY));
+		samples = writerSamples;
+	}
+	
+	/** Add a sample, evicting the oldest one when the ring is full.
+	 * 
+	 * @param value Sample to add.
+	 */
+	public void add(double value) {
+		assert enterWriter();
+		AtomicLongArray buffer = writerSamples;
+		if (writeIndex == buffer.length()) {
+			if (buffer.length() < capacity) {
+				buffer = grow(buffer);
+			} else {
+				writeIndex = 0;
+			}
+		}
+		writeCount++;
+		claimed.lazySet(writeCount);
+		
+		/* Following stores are ordered, readers never see them before the claim. */
+		if (writeCount == 1) {
+			writerShift = value;
+			shift.lazySet(Double.doubleToRawLongBits(value));
+		}
+		double diff = value - writerShift;
+		boolean recompute = false;
+		if (writeCount <= maxSize) {
+			writerSum += diff;
+			writerSumOfSquares += diff * diff;
+		} else {
+			double evicted = Double.longBitsToDouble(buffer.get(evictIndex)) - writerShift;
+			evictIndex++;
+			if (evictIndex == buffer.length()) {
+				evictIndex = 0;
+			}
+			writerSum += diff - evicted;
+			writerSumOfSquares += diff * diff - evicted * evicted;
+			evictionsSinceRecompute++;
+			recompute = evictionsSinceRecompute == (long) RECOMPUTE_LAPS * maxSize;
+		}
+		
+		buffer.lazySet(writeIndex, Double.doubleToRawLongBits(value));
+		writeIndex++;
+		if (recompute) {
+			recomputeSums(buffer);
+		}
+		sum.lazySet(Double.doubleToRawLongBits(writerSum));
+		sumOfSquares.lazySet(Double.doubleToRawLongBits(writerSumOfSquares));
+		written.lazySet(writeCount);
+		assert exitWriter();
+	}
+	
+	/** Register the calling thread as the writer, fail when another thread is adding. */
+	private boolean enterWriter() {
+		if (activeWriters.getAndIncrement() != 0) {
+			activeWriters.decrementAndGet();
+			throw new AssertionError("Samples added to a single-writer ring by multiple threads");
+		}
+		return true;
+	}
+	
+	private boolean exitWriter() {
+		activeWriters.decrementAndGet();
+		return true;
+	}
+	
+	private AtomicLongArray grow(AtomicLongArray buffer) {
+		int newLength = (int) Math.min(capacity, 2L * buffer.length());
+		AtomicLongArray result = new AtomicLongArray(newLength);
+		for (int i = 0; i < buffer.length(); i++) {
+			result.lazySet(i, buffer.get(i));
+		}
+		writerSamples = result;
+		samples = result;
+		return result;
+	}
+	
+	/** Compute sums of a full ring from the samples, shifting by their mean. */
+	private void recomputeSums(AtomicLongArray buffer) {
+		int length = buffer.length();
+		double total = 0.0;
+		int index = evictIndex;
+		for (int i = 0; i < maxSize; i++) {
+			total += Double.longBitsToDouble(buffer.get(index));
+			index = index + 1 == length ? 0 : index + 1;
+		}
+		double newShift = total / maxSize;
+		double newSum = 0.0;
+		double newSumOfSquares = 0.0;
+		index = evictIndex;
+		for (int i = 0; i < maxSize; i++) {
+			double diff = Double.longBitsToDouble(buffer.get(index)) - newShift;
+			newSum += diff;
+			newSumOfSquares += diff * diff;
+			index = index + 1 == length ? 0 : index + 1;
+		}
+		writerShift = newShift;
+		writerSum = newSum;
+		writerSumOfSquares = newSumOfSquares;
+		shift.lazySet(Double.doubleToRawLongBits(newShift));
+		evictionsSinceRecompute = 0;
+	}
+	
+	/** Tell how many samples were ever added.
+	 * 
+	 * @return Number of samples added (including evicted ones).
+	 */
+	public long getWrittenCount() {
+		return written.get();
+	}
+	
+	/** Tell ring size.
+	 * 
+	 * @return Maximum number of samples kept.
+	 */
+	public int getRingSize() {
+		return maxSize;
+	}
+	
+	/** Copy samples currently in the ring.
+	 * 
+	 * <p>
+	 * Can be called concurrently with {@link #add(double)}, the oldest
+	 * samples may be missing when they were overwritten during the copy.
+	 * 
+	 * @return Samples from the oldest to the newest.
+	 */
+	public double[] toArray() {
+		while (true) {
+			long end = written.get();
+			long start = Math.max(0, end - maxSize);
+			double[] result = copyRange(start, end);
+			if ((result.length > 0) || (start == end)) {
+				return result;
+			}
+			/* The writer lapped us completely, try again. */
+		}
+	}
+	
+	/** Get window of all samples currently in the ring.
+	 * 
+	 * @return Window with the samples and their statistics.
+	 * @see #getWindow(long)
+	 */
+	public Window getWindow() {
+		return getWindow(0);
+	}
+	
+	/** Get window of samples in the ring starting at given sequence number.
+	 * 
+	 * <p>
+	 * Can be called concurrently with {@link #add(double)}. The cost does
+	 * not depend on the ring size as no sample is copied. The statistics
+	 * are maintained for the whole ring, thus they are not available
+	 * when older samples are excluded or when the writer keeps disturbing
+	 * the reader.
+	 * 
+	 * @param from Sequence number of the first sample of interest.
+	 * @return Window with the samples and (possibly) their statistics.
+	 */
+	public Window getWindow(long from) {
+		for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+			long end = written.get();
+			/* Volatile reads, the claim is checked only after the statistics are read. */
+			double currentShift = Double.longBitsToDouble(shift.get());
+			double currentSum = Double.longBitsToDouble(sum.get());
+			double currentSumOfSquares = Double.longBitsToDouble(sumOfSquares.get());
+			if (claimed.get() != end) {
+				continue;
+			}
+			
+			long ringStart = Math.max(0, end - maxSize);
+			long start = Math.max(ringStart, Math.min(from, end));
+			if (start == end) {
+				return new Window(this, start, end, true, Double.NaN, Double.NaN);
+			}
+			if (start > ringStart) {
+				return new Window(this, start, end, false, Double.NaN, Double.NaN);
+			}
+			double mean = currentSum / (end - start);
+			double m2 = Math.max(0.0, currentSumOfSquares - currentSum * mean);
+			return new Window(this, start, end, true, currentShift + mean, m2);
+		}
+		
+		long end = written.get();
+		long start = Math.max(Math.max(0, end - maxSize), Math.min(from, end));
+		return new Window(this, start, end, false, Double.NaN, Double.NaN);
+	}
+	
+	/** Copy samples [start, end) that were not overwritten yet. */
+	private double[] copyRange(long start, long end) {
+		AtomicLongArray buffer = samples;
+		double[] result = copy(buffer, start, end);
+		long validStart = getValidStart(buffer.length());
+		if (validStart <= start) {
+			return result;
+		}
+		if (validStart >= end) {
+			return new double[0];
+		}
+		return Arrays.copyOfRange(result, (int) (validStart - start), result.length);
+	}
+	
+	/** Copy published samples [start, end). */
+	private static double[] copy(AtomicLongArray buffer, long start, long end) {
+		int length = buffer.length();
+		double[] result = new double[(int) (end - start)];
+		int index = (int) (start % length);
+		for (int i = 0; i < result.length; i++) {
+			result[i] = Double.longBitsToDouble(buffer.get(index));
+			index++;
+			if (index == length) {
+				index = 0;
+			}
+		}
+		return result;
+	}
+	
+	/** Tell sequence number of the oldest sample whose slot in given array was surely not overwritten. */
+	private long getValidStart(int length) {
+		if (length < capacity) {
+			/* Writer never overwrites an array that is not full. */
+			return 0;
+		}
+		return claimed.get() - length;
+	}
+}
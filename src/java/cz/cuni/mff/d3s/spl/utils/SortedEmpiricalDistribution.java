@@ -0,0 +1,193 @@
+/*
+ * Copyright 2015 Charles University in Prague
+ * Copyright 2015 Vojtech Horky
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.cuni.mff.d3s.spl.utils;
+
+import java.util.Arrays;
+
+import org.apache.commons.math3.distribution.AbstractRealDistribution;
+import org.apache.commons.math3.exception.OutOfRangeException;
+import org.apache.commons.math3.random.RandomGenerator;
+
+/** Empirical distribution backed by sorted samples.
+ *
+ * <p>
+ * The cumulative distribution function linearly interpolates between
+ * the sorted samples, i.e. the i-th smallest of n samples is the
+ * (i / (n - 1)) quantile and the probability is spread uniformly
+ * between neighbouring samples. Building the distribution only sorts
+ * a copy of the samples, quantiles are computed in constant time and
+ * cumulative probabilities with a binary search.
+ *
+ * <p>
+ * Unlike commons-math EmpiricalDistribution, no bins with their
+ * own kernels are created, thus it remains cheap even for hundreds
+ * of thousands of samples.
+ */
+public class SortedEmpiricalDistribution extends AbstractRealDistribution {
+	private static final long serialVersionUID = 1L;
+	
+	private final double[] sorted;
+	
+	/* Computed on first use. */
+	private double mean = Double.NaN;
+	private double variance = Double.NaN;
+	
+	/** Create distribution from given samples.
+	 *
+	 * @param samples Samples (does not need to be distinct), the array is not modified.
+	 * @param rng Random generator used for sampling.
+	 */
+	public SortedEmpiricalDistribution(double[] samples, RandomGenerator rng) {
+		super(rng);
+		if (samples.length == 0) {
+			throw new IllegalArgumentException("At least one sample is needed");
+		}
+		sorted = samples.clone();
+		Arrays.sort(sorted);
+	}
+	
+	/** {@inheritDoc} */
+	@Override
+	public double inverseCumulativeProbability(double p) {
+		if (!(p >= 0.0) || !(p <= 1.0)) {
+			throw new OutOfRangeException(p, 0, 1);
+		}
+		double position = p * (sorted.length - 1);
+		int index = (int) position;
+		if (index >= sorted.length - 1) {
+			return sorted[sorted.length - 1];
+		}
+		return sorted[index] + (position - index) * (sorted[index + 1] - sorted[index]);
+	}
+	
+	/** {@inheritDoc} */
+	@Override
+	public double cumulativeProbability(double x) {
+		int index = lastNotAbove(x);
+		if (index < 0) {
+			return 0.0;
+		}
+		if (index == sorted.length - 1) {
+			return 1.0;
+		}
+		double fraction = (x - sorted[index]) / (sorted[index + 1] - sorted[index]);
+		return (index + fraction) / (sorted.length - 1);
+	}
+	
+	/** {@inheritDoc} */
+	@Override
+	public double density(double x) {
+		int index = lastNotAbove(x);
+		if ((index < 0) || (index == sorted.length - 1)) {
+			return 0.0;
+		}
+		return 1.0 / ((sorted.length - 1) * (sorted[index + 1] - sorted[index]));
+	}
+	
+	/** {@inheritDoc} */
+	@Override
+	public double sample() {
+		return inverseCumulativeProbability(random.nextDouble());
+	}
+	
+	/** {@inheritDoc} */
+	@Override
+	public double getNumericalMean() {
+		if (Double.isNaN(mean)) {
+			computeMoments();
+		}
+		return mean;
+	}
+	
+	/** {@inheritDoc} */
+	@Override
+	public double getNumericalVariance() {
+		if (Double.isNaN(variance)) {
+			computeMoments();
+		}
+		return variance;
+	}
+	
+	/** {@inheritDoc} */
+	@Override
+	public double getSupportLowerBound() {
+		return sorted[0];
+	}
+	
+	/** {@inheritDoc} */
+	@Override
+	public double getSupportUpperBound() {
+		return sorted[sorted.length - 1];
+	}
+	
+	/** {@inheritDoc} */
+	/* Deprecated in RealDistribution but still abstract in AbstractRealDistribution. */
+	@Override
+	@Deprecated
+	public boolean isSupportLowerBoundInclusive() {
+		return true;
+	}
+	
+	/** {@inheritDoc} */
+	/* Deprecated in RealDistribution but still abstract in AbstractRealDistribution. */
+	@Override
+	@Deprecated
+	public boolean isSupportUpperBoundInclusive() {
+		return true;
+	}
+	
+	/** {@inheritDoc} */
+	@Override
+	public boolean isSupportConnected() {
+		return true;
+	}
+	
+	/** Index of the last sample not greater than x, -1 when there is none. */
+	private int lastNotAbove(double x) {
+		int low = 0;
+		int high = sorted.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (sorted[middle] <= x) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low - 1;
+	}
+	
+	/** Compute moments of the uniform pieces between neighbouring samples. */
+	private void computeMoments() {
+		int segments = sorted.length - 1;
+		if (segments == 0) {
+			mean = sorted[0];
+			variance = 0.0;
+			return;
+		}
+		double sum = StatisticsUtils.sum(sorted, 0, sorted.length);
+		double m = (sum - (sorted[0] + sorted[segments]) / 2.0) / segments;
+		double squares = 0.0;
+		for (int i = 0; i < segments; i++) {
+			double a = sorted[i] - m;
+			double b = sorted[i + 1] - m;
+			squares += a * a + a * b + b * b;
+		}
+		mean = m;
+		variance = squares / (3.0 * segments);
+	}
+}
@@ -16,10 +16,10 @@
  */
 package cz.cuni.mff.d3s.spl.utils;
 
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Random;
-
-import org.apache.commons.math3.stat.descriptive.moment.Mean;
-import org.apache.commons.math3.stat.descriptive.moment.Variance;
+import java.util.SplittableRandom;
 
 /** Helper methods for common statistics.
  */
@@ -30,8 +30,7 @@ public class StatisticsUtils  {
 	 * @return Mean of the provided values.
 	 */
 	public static double mean(double... values) {
-		Mean mean = new Mean();
-		return mean.evaluate(values);
+		return mean(values, 0, values.length);
 	}
 	
 	/** Compute variance of given data with bias correction.
@@ -40,8 +39,7 @@ public class StatisticsUtils  {
 	 * @return Varince of the provided values.
 	 */
 	public static double variance(double... values) {
-		Variance var = new Variance();
-		return var.evaluate(values);
+		return variance(values, 0, values.length);
 	}
 	
 	/** Compute variance of given data without bias correction.
@@ -50,8 +48,197 @@ public class StatisticsUtils  {
 	 * @return Varince of the provided values.
 	 */
 	public static double varianceN(double... values) {
-		Variance var = new Variance(false);
-		return var.evaluate(values);
+		return varianceN(values, 0, values.length);
+	}
+	
+	/** Compute sum of a part of an array.
+	 * 
+	 * <p>
+	 * The loop is unrolled into four independent accumulators (so the
+	 * additions can overlap) and rounding errors of every addition are
+	 * compensated (Neumaier's variant of Kahan summation, computed
+	 * without branches), thus the result is as accurate as if the sum
+	 * was computed with twice the precision.
+	 * 
+	 * @param values Array of values.
+	 * @param offset Index of the first value to sum.
+	 * @param length Number of values to sum.
+	 * @return Sum of the values.
+	 */
+	public static double sum(double[] values, int offset, int length) {
+		checkRange(values, offset, length);
+		double s0 = 0.0, s1 = 0.0, s2 = 0.0, s3 = 0.0;
+		double c0 = 0.0, c1 = 0.0, c2 = 0.0, c3 = 0.0;
+		int end = offset + length;
+		int unrolledEnd = offset + (length & ~3);
+		int i = offset;
+		for (; i < unrolledEnd; i += 4) {
+			double x0 = values[i];
+			double x1 = values[i + 1];
+			double x2 = values[i + 2];
+			double x3 = values[i + 3];
+			double t0 = s0 + x0;
+			double t1 = s1 + x1;
+			double t2 = s2 + x2;
+			double t3 = s3 + x3;
+			c0 += twoSumError(s0, x0, t0);
+			c1 += twoSumError(s1, x1, t1);
+			c2 += twoSumError(s2, x2, t2);
+			c3 += twoSumError(s3, x3, t3);
+			s0 = t0;
+			s1 = t1;
+			s2 = t2;
+			s3 = t3;
+		}
+		for (; i < end; i++) {
+			double t0 = s0 + values[i];
+			c0 += twoSumError(s0, values[i], t0);
+			s0 = t0;
+		}
+		return combine(s0, s1, s2, s3, c0 + c1 + c2 + c3);
+	}
+	
+	/** Compute sum of squares of a part of an array.
+	 * 
+	 * <p>
+	 * Uses the same compensated and unrolled summation as
+	 * {@link #sum(double[], int, int)}.
+	 * 
+	 * @param values Array of values.
+	 * @param offset Index of the first value.
+	 * @param length Number of values.
+	 * @return Sum of squares of the values.
+	 */
+	public static double sumOfSquares(double[] values, int offset, int length) {
+		checkRange(values, offset, length);
+		double s0 = 0.0, s1 = 0.0, s2 = 0.0, s3 = 0.0;
+		double c0 = 0.0, c1 = 0.0, c2 = 0.0, c3 = 0.0;
+		int end = offset + length;
+		int unrolledEnd = offset + (length & ~3);
+		int i = offset;
+		for (; i < unrolledEnd; i += 4) {
+			double x0 = values[i] * values[i];
+			double x1 = values[i + 1] * values[i + 1];
+			double x2 = values[i + 2] * values[i + 2];
+			double x3 = values[i + 3] * values[i + 3];
+			double t0 = s0 + x0;
+			double t1 = s1 + x1;
+			double t2 = s2 + x2;
+			double t3 = s3 + x3;
+			c0 += twoSumError(s0, x0, t0);
+			c1 += twoSumError(s1, x1, t1);
+			c2 += twoSumError(s2, x2, t2);
+			c3 += twoSumError(s3, x3, t3);
+			s0 = t0;
+			s1 = t1;
+			s2 = t2;
+			s3 = t3;
+		}
+		for (; i < end; i++) {
+			double x0 = values[i] * values[i];
+			double t0 = s0 + x0;
+			c0 += twoSumError(s0, x0, t0);
+			s0 = t0;
+		}
+		return combine(s0, s1, s2, s3, c0 + c1 + c2 + c3);
+	}
+	
+	/** Compute arithmetic mean of a part of an array.
+	 * 
+	 * @param values Array of values.
+	 * @param offset Index of the first value.
+	 * @param length Number of values.
+	 * @return Mean of the values, NaN when length is zero.
+	 */
+	public static double mean(double[] values, int offset, int length) {
+		if (length == 0) {
+			checkRange(values, offset, length);
+			return Double.NaN;
+		}
+		return sum(values, offset, length) / length;
+	}
+	
+	/** Compute variance of a part of an array with bias correction.
+	 * 
+	 * @param values Array of values.
+	 * @param offset Index of the first value.
+	 * @param length Number of values.
+	 * @return Variance of the values, zero for single value and NaN when length is zero.
+	 */
+	public static double variance(double[] values, int offset, int length) {
+		if (length == 1) {
+			checkRange(values, offset, length);
+			return 0.0;
+		}
+		return sumOfSquaredDeviations(values, offset, length) / (length - 1);
+	}
+	
+	/** Compute variance of a part of an array without bias correction.
+	 * 
+	 * @param values Array of values.
+	 * @param offset Index of the first value.
+	 * @param length Number of values.
+	 * @return Variance of the values, NaN when length is zero.
+	 */
+	public static double varianceN(double[] values, int offset, int length) {
+		return sumOfSquaredDeviations(values, offset, length) / length;
+	}
+	
+	/** Compute sum of squared differences from the mean (corrected two-pass algorithm). */
+	private static double sumOfSquaredDeviations(double[] values, int offset, int length) {
+		double mean = mean(values, offset, length);
+		if (Double.isNaN(mean)) {
+			return Double.NaN;
+		}
+		double d0 = 0.0, d1 = 0.0, d2 = 0.0, d3 = 0.0;
+		double q0 = 0.0, q1 = 0.0, q2 = 0.0, q3 = 0.0;
+		int end = offset + length;
+		int unrolledEnd = offset + (length & ~3);
+		int i = offset;
+		for (; i < unrolledEnd; i += 4) {
+			double x0 = values[i] - mean;
+			double x1 = values[i + 1] - mean;
+			double x2 = values[i + 2] - mean;
+			double x3 = values[i + 3] - mean;
+			d0 += x0;
+			d1 += x1;
+			d2 += x2;
+			d3 += x3;
+			q0 += x0 * x0;
+			q1 += x1 * x1;
+			q2 += x2 * x2;
+			q3 += x3 * x3;
+		}
+		for (; i < end; i++) {
+			double x0 = values[i] - mean;
+			d0 += x0;
+			q0 += x0 * x0;
+		}
+		/* The deviations do not sum to zero exactly, compensate for that. */
+		double deviations = (d0 + d1) + (d2 + d3);
+		return ((q0 + q1) + (q2 + q3)) - deviations * deviations / length;
+	}
+	
+	/** Rounding error of t = a + b (Knuth's TwoSum, exact and without branches). */
+	private static double twoSumError(double a, double b, double t) {
+		double bVirtual = t - a;
+		return (a - (t - bVirtual)) + (b - bVirtual);
+	}
+	
+	/** Add partial sums of the accumulators with compensation. */
+	private static double combine(double s0, double s1, double s2, double s3, double compensation) {
+		double t01 = s0 + s1;
+		double t23 = s2 + s3;
+		double total = t01 + t23;
+		compensation += twoSumError(s0, s1, t01) + twoSumError(s2, s3, t23) + twoSumError(t01, t23, total);
+		return total + compensation;
+	}
+	
+	private static void checkRange(double[] values, int offset, int length) {
+		if ((offset < 0) || (length < 0) || (offset > values.length - length)) {
+			throw new IndexOutOfBoundsException(String.format(
+					"Range [%d, %d) outside of %d values.", offset, offset + length, values.length));
+		}
 	}
 	
 	/** Bootstrap from already known values.
@@ -71,4 +258,216 @@ public class StatisticsUtils  {
 			dest[i] = source[rnd.nextInt(source.length)];
 		}
 	}
+	
+	/** Bootstrap from already known values with a splittable generator.
+	 * 
+	 * @param source Array with original values to bootstrap from.
+	 * @param dest Array where to store the bootstrapped values.
+	 * @param rnd Random number generator to use.
+	 */
+	public static void bootstrap(double[] source, double dest[], SplittableRandom rnd) {
+		for (int i = 0; i < dest.length; i++) {
+			dest[i] = source[rnd.nextInt(source.length)];
+		}
+	}
+	
+	/** Bootstrap from weighted values.
+	 * 
+	 * <p>
+	 * Each value is selected with probability proportional to its weight,
+	 * weights are given as cumulative sums (i.e. the i-th item is the sum
+	 * of weights of the first i + 1 values).
+	 * 
+	 * @param values Array with original values to bootstrap from.
+	 * @param cumulativeWeights Cumulative weights of the values.
+	 * @param dest Array where to store the bootstrapped values.
+	 * @param rnd Random number generator to use.
+	 */
+	public static void bootstrap(double[] values, long[] cumulativeWeights, double dest[], Random rnd) {
+		long total = cumulativeWeights[cumulativeWeights.length - 1];
+		for (int i = 0; i < dest.length; i++) {
+			long position;
+			if (total <= Integer.MAX_VALUE) {
+				position = rnd.nextInt((int) total);
+			} else {
+				position = (long) (rnd.nextDouble() * total);
+			}
+			dest[i] = values[findCumulativeIndex(cumulativeWeights, position)];
+		}
+	}
+	
+	/** Compute mean of a bootstrapped sample without storing it.
+	 * 
+	 * <p>
+	 * Equivalent to bootstrapping into an array of given length and
+	 * computing its mean, but done in a single pass without allocation.
+	 * 
+	 * @param source Array with original values to bootstrap from.
+	 * @param length Number of values to select.
+	 * @param rnd Random number generator to use.
+	 * @return Mean of the selected values.
+	 */
+	public static double bootstrapMean(double[] source, int length, SplittableRandom rnd) {
+		int bound = source.length;
+		double sum = 0.0;
+		for (int i = 0; i < length; i++) {
+			sum += source[rnd.nextInt(bound)];
+		}
+		return sum / length;
+	}
+	
+	/** Compute mean of a sample bootstrapped from weighted values without storing it.
+	 * 
+	 * @param values Array with original values to bootstrap from.
+	 * @param cumulativeWeights Cumulative weights of the values.
+	 * @param length Number of values to select.
+	 * @param rnd Random number generator to use.
+	 * @return Mean of the selected values.
+	 */
+	public static double bootstrapMean(double[] values, long[] cumulativeWeights, int length, SplittableRandom rnd) {
+		long total = cumulativeWeights[cumulativeWeights.length - 1];
+		double sum = 0.0;
+		for (int i = 0; i < length; i++) {
+			sum += values[findCumulativeIndex(cumulativeWeights, rnd.nextLong(total))];
+		}
+		return sum / length;
+	}
+	
+	/** Find which item covers given position in cumulative weights.
+	 * 
+	 * @param cumulativeWeights Cumulative (non-decreasing) weights.
+	 * @param position Position between zero and total weight (exclusive).
+	 * @return Index of the first item with cumulative weight greater than position.
+	 */
+	public static int findCumulativeIndex(long[] cumulativeWeights, long position) {
+		int low = 0;
+		int high = cumulativeWeights.length - 1;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (cumulativeWeights[middle] > position) {
+				high = middle;
+			} else {
+				low = middle + 1;
+			}
+		}
+		return low;
+	}
+	
+	/** Compute arithmetic mean of weighted data.
+	 * 
+	 * @param values Array of values to compute the mean from.
+	 * @param weights How many times each value was observed.
+	 * @return Mean of the provided values.
+	 */
+	public static double mean(double[] values, long[] weights) {
+		checkWeights(values, weights);
+		double sum = 0.0;
+		long count = 0;
+		for (int i = 0; i < values.length; i++) {
+			sum += values[i] * weights[i];
+			count += weights[i];
+		}
+		return count == 0 ? Double.NaN : sum / count;
+	}
+	
+	/** Compute variance of weighted data with bias correction.
+	 * 
+	 * <p>
+	 * Weights are frequencies, i.e. the result is the same as for the
+	 * expanded data where each value is repeated weight times.
+	 * 
+	 * @param values Array of values to compute the variance from.
+	 * @param weights How many times each value was observed.
+	 * @return Variance of the provided values.
+	 */
+	public static double variance(double[] values, long[] weights) {
+		long count = sumOfWeights(values, weights);
+		if (count == 0) {
+			return Double.NaN;
+		} else if (count == 1) {
+			return 0.0;
+		}
+		return sumOfSquaredDeviations(values, weights) / (count - 1);
+	}
+	
+	/** Compute variance of weighted data without bias correction.
+	 * 
+	 * @param values Array of values to compute the variance from.
+	 * @param weights How many times each value was observed.
+	 * @return Variance of the provided values.
+	 */
+	public static double varianceN(double[] values, long[] weights) {
+		long count = sumOfWeights(values, weights);
+		if (count == 0) {
+			return Double.NaN;
+		}
+		return sumOfSquaredDeviations(values, weights) / count;
+	}
+	
+	/** Compute quantile of weighted data.
+	 * 
+	 * <p>
+	 * The result is the smallest value such that at least given fraction
+	 * of (expanded) samples is lower or equal to it.
+	 * 
+	 * @param values Array of values, does not need to be sorted.
+	 * @param weights How many times each value was observed.
+	 * @param probability Quantile to compute (between 0 and 1).
+	 * @return The quantile, NaN for empty data.
+	 */
+	public static double quantile(final double[] values, long[] weights, double probability) {
+		if ((probability < 0.0) || (probability > 1.0)) {
+			throw new IllegalArgumentException("Probability must be between 0 and 1");
+		}
+		long count = sumOfWeights(values, weights);
+		if (count == 0) {
+			return Double.NaN;
+		}
+		
+		Integer[] order = new Integer[values.length];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return Double.compare(values[a], values[b]);
+			}
+		});
+		
+		double threshold = probability * count;
+		long cumulative = 0;
+		for (int i : order) {
+			cumulative += weights[i];
+			if ((weights[i] > 0) && (cumulative >= threshold)) {
+				return values[i];
+			}
+		}
+		return values[order[order.length - 1]];
+	}
+	
+	private static void checkWeights(double[] values, long[] weights) {
+		if (values.length != weights.length) {
+			throw new IllegalArgumentException("Values and weights must have the same length");
+		}
+	}
+	
+	private static long sumOfWeights(double[] values, long[] weights) {
+		checkWeights(values, weights);
+		long count = 0;
+		for (long w : weights) {
+			count += w;
+		}
+		return count;
+	}
+	
+	private static double sumOfSquaredDeviations(double[] values, long[] weights) {
+		double mean = mean(values, weights);
+		double sum = 0.0;
+		for (int i = 0; i < values.length; i++) {
+			double diff = values[i] - mean;
+			sum += diff * diff * weights[i];
+		}
+		return sum;
+	}
 }
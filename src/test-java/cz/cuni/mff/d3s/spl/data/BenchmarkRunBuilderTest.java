@@ -16,6 +16,8 @@
  */
 package cz.cuni.mff.d3s.spl.data;
 
+import static org.junit.Assert.*;
+
 import org.junit.Before;
 import org.junit.Test;
 
@@ -78,4 +80,47 @@ public class BenchmarkRunBuilderTest {
 		TestUtils.assertBenchmarkRun(run1, 0, 1, 2);
 		TestUtils.assertBenchmarkRun(run2, 0, 1, 2, 3, 4, 5);
 	}
+	
+	@Test
+	public void bulkAdd() {
+		builder.addSamples(new double[] { 0, 1, 2, 3, 4 }, 1, 3);
+		builder.addSamples(new double[] { 5 }, 0, 1);
+		
+		TestUtils.assertBenchmarkRun(builder.create(), 1, 2, 3, 5);
+	}
+	
+	@Test
+	public void manySamples() {
+		double[] expected = new double[1000];
+		for (int i = 0; i < expected.length; i++) {
+			builder.addSamples(i);
+			expected[i] = i;
+		}
+		BenchmarkRun run = builder.create();
+		
+		builder.addSamples(1000);
+		
+		TestUtils.assertBenchmarkRun(run, expected);
+		assertEquals(1001, builder.create().getSampleCount());
+	}
+	
+	@Test
+	public void iterationsAreOptional() {
+		builder.addSamples(1, 2);
+		
+		assertNull(BenchmarkRunUtils.getIterationStarts(builder.create()));
+	}
+	
+	@Test
+	public void iterationStarts() {
+		builder.startIteration().addSamples(0, 1, 2);
+		builder.startIteration().addSamples(3, 4);
+		builder.startIteration().addSamples(5);
+		
+		assertArrayEquals(new int[] { 0, 3, 5 }, BenchmarkRunUtils.getIterationStarts(builder.create()));
+		assertArrayEquals(new int[] { 0, 2, 4 }, BenchmarkRunUtils.getIterationStarts(builder.create(1)));
+		assertArrayEquals(new int[] { 0, 2 }, BenchmarkRunUtils.getIterationStarts(builder.create(3)));
+		assertArrayEquals(new int[] { 0, 1 }, BenchmarkRunUtils.getIterationStarts(
+				BenchmarkRunUtils.skip(builder.create(), 4)));
+	}
 }
@@ -40,4 +40,12 @@ public class BenchmarkRunSummaryTest {
 		assertSummary(new ImmutableBenchmarkRun(10, 10, 16),
 				3, 12, 12);
 	}
+	
+	@Test
+	public void quantiles() {
+		BenchmarkRunSummary summary = new BenchmarkRunSummary(new ImmutableBenchmarkRun(1, 2, 3, 4, 5, 6, 7, 8, 9, 100));
+		assertEquals(5, summary.getQuantile(0.5), 5 * QuantileSketch.DEFAULT_RELATIVE_ACCURACY);
+		assertEquals(100, summary.getQuantile(1.0), EPSILON);
+		assertEquals(10, summary.getQuantileSketch().getCount());
+	}
 }
@@ -22,6 +22,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import cz.cuni.mff.d3s.spl.DataSnapshot;
+import cz.cuni.mff.d3s.spl.tests.TestUtils;
 
 public class DataSnapshotBuilderTest {
 	
@@ -45,4 +46,23 @@ public class DataSnapshotBuilderTest {
 		DataSnapshot snapshot = builder.create();
 		assertEquals(1, snapshot.getRunCount());
 	}
+	
+	@Test
+	public void skipSamples() {
+		builder.addRun(new ImmutableBenchmarkRun(0, 1, 2, 3, 4));
+		builder.addRun(new ImmutableBenchmarkRun(5, 6, 7, 8, 9));
+		
+		TestUtils.assertDataSnapshot(builder.create(2), new double[][] {
+			new double[] { 2, 3, 4 },
+			new double[] { 7, 8, 9 }
+		});
+		TestUtils.assertDataSnapshot(builder.create(0.8), new double[][] {
+			new double[] { 4 },
+			new double[] { 9 }
+		});
+		TestUtils.assertDataSnapshot(builder.create(), new double[][] {
+			new double[] { 0, 1, 2, 3, 4 },
+			new double[] { 5, 6, 7, 8, 9 }
+		});
+	}
 }
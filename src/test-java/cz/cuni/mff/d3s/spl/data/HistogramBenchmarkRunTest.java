@@ -0,0 +1,136 @@
+/*
+ * Copyright 2015 Charles University in Prague
+ * Copyright 2015 Vojtech Horky
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.cuni.mff.d3s.spl.data;
+
+import static org.junit.Assert.*;
+import static cz.cuni.mff.d3s.spl.tests.TestUtils.assertBenchmarkRun;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import cz.cuni.mff.d3s.spl.BenchmarkRun;
+import cz.cuni.mff.d3s.spl.SampleStatistics;
+
+public class HistogramBenchmarkRunTest {
+	private static final double EPSILON = 0.00001;
+	
+	private static final double[] EXPANDED = new double[] { 5, 5, 1, 3, 3, 3, 1 };
+	
+	private HistogramBenchmarkRun run;
+	
+	@Before
+	public void setUp() {
+		run = new HistogramBenchmarkRunBuilder()
+			.addSamples(5, 1)
+			.addSamples(5, 1)
+			.addSamples(1, 1)
+			.addSamples(7, 0)
+			.addSamples(3, 3)
+			.addSamples(1, 1)
+			.create();
+	}
+	
+	@Test
+	public void consecutiveSamplesShareBucket() {
+		assertEquals(4, run.getBucketCount());
+		assertEquals(5, run.getBucketValue(0), EPSILON);
+		assertEquals(2, run.getBucketSampleCount(0));
+		assertEquals(3, run.getBucketSampleCount(2));
+	}
+	
+	@Test
+	public void samplesAreExpandedLazily() {
+		assertEquals(EXPANDED.length, run.getSampleCount());
+		assertBenchmarkRun(run, EXPANDED);
+		for (int i = 0; i < EXPANDED.length; i++) {
+			assertEquals(EXPANDED[i], run.getSample(i), EPSILON);
+		}
+	}
+	
+	@Test(expected=IndexOutOfBoundsException.class)
+	public void sampleOutOfRange() {
+		run.getSample(EXPANDED.length);
+	}
+	
+	@Test
+	public void statisticsUseWeights() {
+		SampleStatistics expected = new ImmutableBenchmarkRun(EXPANDED).getStatistics();
+		SampleStatistics actual = run.getStatistics();
+		
+		assertEquals(expected.getCount(), actual.getCount());
+		assertEquals(expected.getMean(), actual.getMean(), EPSILON);
+		assertEquals(expected.getVariance(), actual.getVariance(), EPSILON);
+		assertEquals(expected.getMin(), actual.getMin(), EPSILON);
+		assertEquals(expected.getMax(), actual.getMax(), EPSILON);
+	}
+	
+	@Test
+	public void skipInsideBucket() {
+		assertBenchmarkRun(run.skip(4), 3, 3, 1);
+		assertBenchmarkRun(run.skip(3), 3, 3, 3, 1);
+		assertBenchmarkRun(BenchmarkRunUtils.skip(run, 1), 5, 1, 3, 3, 3, 1);
+		assertEquals(0, run.skip(EXPANDED.length).getSampleCount());
+	}
+	
+	@Test
+	public void sortedMergesEqualValues() {
+		HistogramBenchmarkRun sorted = run.sorted();
+		assertEquals(3, sorted.getBucketCount());
+		assertBenchmarkRun(sorted, 1, 1, 3, 3, 3, 5, 5);
+	}
+	
+	@Test
+	public void sortedHistogramOfMixedRuns() {
+		BenchmarkRun plain = new ImmutableBenchmarkRun(3, 2, 2);
+		HistogramBenchmarkRun merged = BenchmarkRunUtils.toSortedHistogram(
+				Arrays.<BenchmarkRun>asList(run, plain));
+		assertBenchmarkRun(merged, 1, 1, 2, 2, 3, 3, 3, 3, 5, 5);
+	}
+	
+	@Test
+	public void bootstrapFollowsWeights() {
+		HistogramBenchmarkRun skewed = new HistogramBenchmarkRun(new double[] { 1, 2, 3 }, new long[] { 1, 0, 9 });
+		double[] result = new double[10000];
+		skewed.bootstrap(result, new Random(0));
+		
+		int ones = 0;
+		for (double r : result) {
+			assertTrue((r == 1) || (r == 3));
+			if (r == 1) {
+				ones++;
+			}
+		}
+		assertEquals(1000, ones, 100);
+	}
+	
+	@Test
+	public void iterationStarts() {
+		assertNull(run.getIterationStarts());
+		
+		HistogramBenchmarkRun withIterations = new HistogramBenchmarkRunBuilder()
+			.startIteration().addSamples(1, 3).addSamples(2, 1)
+			.startIteration().addSamples(2, 2)
+			.create();
+		
+		assertArrayEquals(new int[] { 0, 4 }, withIterations.getIterationStarts());
+		assertArrayEquals(new int[] { 0, 1 }, withIterations.skip(3).getIterationStarts());
+		assertArrayEquals(new int[] { 0 }, withIterations.skip(4).getIterationStarts());
+	}
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2015 Charles University in Prague
+ * Copyright 2015 Vojtech Horky
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.cuni.mff.d3s.spl.data;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import cz.cuni.mff.d3s.spl.BenchmarkRun;
+
+public class QuantileSketchTest {
+	private static final double ACCURACY = QuantileSketch.DEFAULT_RELATIVE_ACCURACY;
+	
+	/** Run relying on the default statistics and sketch. */
+	@Ignore
+	private static class SamplesOnlyRun implements BenchmarkRun {
+		private final double[] samples;
+		
+		public SamplesOnlyRun(double... samples) {
+			this.samples = samples;
+		}
+		
+		@Override
+		public Iterable<Double> getSamples() {
+			Double[] result = new Double[samples.length];
+			for (int i = 0; i < samples.length; i++) {
+				result[i] = samples[i];
+			}
+			return Arrays.asList(result);
+		}
+		
+		@Override
+		public int getSampleCount() {
+			return samples.length;
+		}
+		
+		@Override
+		public double getSample(int index) {
+			return samples[index];
+		}
+	}
+	
+	private static double exactQuantile(double[] sorted, double quantile) {
+		return sorted[(int) Math.floor(quantile * (sorted.length - 1))];
+	}
+	
+	private static void assertQuantiles(QuantileSketch sketch, double... values) {
+		double[] sorted = Arrays.copyOf(values, values.length);
+		Arrays.sort(sorted);
+		assertEquals(values.length, sketch.getCount());
+		for (double quantile : new double[] { 0.0, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99, 0.999, 1.0 }) {
+			double expected = exactQuantile(sorted, quantile);
+			assertEquals("quantile " + quantile, expected, sketch.getQuantile(quantile),
+					ACCURACY * Math.abs(expected) + 1e-9);
+		}
+	}
+	
+	private static double[] randomLatencies(Random random, int count) {
+		double[] result = new double[count];
+		for (int i = 0; i < count; i++) {
+			result[i] = Math.exp(5 + 2 * random.nextGaussian());
+		}
+		return result;
+	}
+	
+	@Test
+	public void emptySketch() {
+		QuantileSketch sketch = new QuantileSketch();
+		assertEquals(0, sketch.getCount());
+		assertTrue(Double.isNaN(sketch.getQuantile(0.5)));
+	}
+	
+	@Test
+	public void smallSample() {
+		QuantileSketch sketch = new QuantileSketch().add(10, 20, 30, 40, 50);
+		assertQuantiles(sketch, 10, 20, 30, 40, 50);
+		assertEquals(10, sketch.getMin(), 0.0);
+		assertEquals(50, sketch.getMax(), 0.0);
+	}
+	
+	@Test
+	public void mixedSigns() {
+		double[] values = new double[] { -100, -5, -0.5, 0, 0, 0.25, 3, 70, 1000 };
+		assertQuantiles(new QuantileSketch().add(values), values);
+	}
+	
+	@Test
+	public void latenciesAreWithinAccuracy() {
+		double[] values = randomLatencies(new Random(42), 100000);
+		assertQuantiles(new QuantileSketch().add(values), values);
+	}
+	
+	@Test
+	public void mergedSketchEqualsSingleOne() {
+		Random random = new Random(1);
+		double[] first = randomLatencies(random, 5000);
+		double[] second = randomLatencies(random, 7000);
+		
+		QuantileSketch merged = new QuantileSketch().add(first).add(new QuantileSketch().add(second));
+		QuantileSketch single = new QuantileSketch().add(first).add(second);
+		for (double quantile = 0.0; quantile <= 1.0; quantile += 0.05) {
+			assertEquals(single.getQuantile(quantile), merged.getQuantile(quantile), 0.0);
+		}
+	}
+	
+	@Test
+	public void weightedSamples() {
+		QuantileSketch sketch = new QuantileSketch().add(1, 3).add(100, 1);
+		assertQuantiles(sketch, 1, 1, 1, 100);
+	}
+	
+	@Test
+	public void collapsingKeepsHighQuantiles() {
+		QuantileSketch sketch = new QuantileSketch(0.01, 100);
+		double[] values = new double[2000];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = Math.pow(1.01, i);
+			sketch.add(values[i]);
+		}
+		assertEquals(values[1999], sketch.getQuantile(1.0), ACCURACY * values[1999]);
+		assertEquals(values[1979], sketch.getQuantile(0.99), ACCURACY * values[1979]);
+		/* The lowest values were collapsed, only the minimum itself is exact. */
+		assertTrue(sketch.getQuantile(0.0) > values[1000]);
+		assertEquals(values[0], sketch.getMin(), 0.0);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void sketchesWithDifferentAccuracyCannotBeMerged() {
+		new QuantileSketch(0.01, 100).add(new QuantileSketch(0.02, 100));
+	}
+	
+	@Test
+	public void histogramRunSketch() {
+		HistogramBenchmarkRun run = new HistogramBenchmarkRun(new double[] { 5, 50 }, new long[] { 1000000, 10000 });
+		QuantileSketch sketch = run.getQuantileSketch();
+		assertEquals(1010000, sketch.getCount());
+		assertEquals(5, sketch.getQuantile(0.99), 5 * ACCURACY);
+		assertEquals(50, sketch.getQuantile(0.999), 50 * ACCURACY);
+	}
+	
+	@Test
+	public void runSketchIsComputedOnce() {
+		ImmutableBenchmarkRun run = new ImmutableBenchmarkRun(new double[] { 1, 2, 3 });
+		assertSame(run.getQuantileSketch(), run.getQuantileSketch());
+		assertEquals(3, run.getQuantileSketch().getCount());
+	}
+	
+	@Test
+	public void runWithSamplesOnlyHasDefaultSketchAndStatistics() {
+		BenchmarkRun run = new SamplesOnlyRun(1, 2, 3);
+		assertQuantiles(run.getQuantileSketch(), 1, 2, 3);
+		assertEquals(3, run.getStatistics().getCount());
+		assertEquals(2, run.getStatistics().getMean(), 1e-9);
+	}
+}
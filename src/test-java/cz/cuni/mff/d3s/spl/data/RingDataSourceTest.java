@@ -16,11 +16,71 @@
  */
 package cz.cuni.mff.d3s.spl.data;
 
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Ignore;
 import org.junit.Test;
 
+import cz.cuni.mff.d3s.spl.BenchmarkRun;
+import cz.cuni.mff.d3s.spl.DataSnapshot;
+
 import cz.cuni.mff.d3s.spl.tests.TestUtils;
 
 public class RingDataSourceTest {	
+	@Ignore
+	private static class Recorder extends Thread {
+		private final RingDataSource source;
+		private final CountDownLatch start;
+		private final int base;
+		private final int count;
+		
+		public Recorder(RingDataSource source, CountDownLatch start, int base, int count) {
+			this.source = source;
+			this.start = start;
+			this.base = base;
+			this.count = count;
+		}
+		
+		@Override
+		public void run() {
+			try {
+				start.await();
+			} catch (InterruptedException e) {
+				return;
+			}
+			for (int i = 0; i < count; i++) {
+				source.addSample(base + i);
+			}
+		}
+	}
+	
+	private static Recorder[] startRecorders(RingDataSource source, int threads, int count) {
+		CountDownLatch start = new CountDownLatch(1);
+		Recorder[] recorders = new Recorder[threads];
+		for (int i = 0; i < threads; i++) {
+			recorders[i] = new Recorder(source, start, i * count, count);
+			recorders[i].start();
+		}
+		start.countDown();
+		return recorders;
+	}
+	
+	private static void recordConcurrently(RingDataSource source, int threads) throws InterruptedException {
+		for (Recorder recorder : startRecorders(source, threads, 1000)) {
+			recorder.join();
+		}
+	}
+	
+	private static double sum(BenchmarkRun run) {
+		double result = 0;
+		for (int i = 0; i < run.getSampleCount(); i++) {
+			result += run.getSample(i);
+		}
+		return result;
+	}
+	
 	
 	@Test
 	public void singleRunSingleSample() {
@@ -147,4 +207,219 @@ public class RingDataSourceTest {
 			new double[] { 14, 16, 18, 20 }
 		});
 	}
+	
+	@Test
+	public void skipSamples() {
+		RingDataSource src = RingDataSource.createWithLimitedNumberOfRuns(2);
+		
+		src.startRun();
+		src.addSamples(1, 2, 3, 4);
+		
+		src.startRun();
+		src.addSamples(5, 6, 7, 8, 9);
+		
+		TestUtils.assertDataSnapshot(src.makeSnapshot(2), new double[][] {
+			new double[] { 3, 4 },
+			new double[] { 7, 8, 9 }
+		});
+		TestUtils.assertDataSnapshot(src.makeSnapshot(0.5), new double[][] {
+			new double[] { 3, 4 },
+			new double[] { 7, 8, 9 }
+		});
+		TestUtils.assertDataSnapshot(src.makeSnapshot(), new double[][] {
+			new double[] { 1, 2, 3, 4 },
+			new double[] { 5, 6, 7, 8, 9 }
+		});
+	}
+	
+	@Test
+	public void stripedRunMergesThreads() throws InterruptedException {
+		RingDataSource src = RingDataSource.createStriped(0, 2, Integer.MAX_VALUE, false);
+		src.startRun();
+		recordConcurrently(src, 4);
+		
+		DataSnapshot snapshot = src.makeSnapshot();
+		assertEquals(1, snapshot.getRunCount());
+		assertEquals(4000, snapshot.getRun(0).getSampleCount());
+		assertEquals(3999.0 * 4000 / 2, sum(snapshot.getRun(0)), 0.1);
+		
+		src.startRun();
+		src.addSamples(1, 2);
+		TestUtils.assertBenchmarkRun(src.makeSnapshot().getRun(1), 1, 2);
+		assertEquals(4000, src.makeSnapshot().getRun(0).getSampleCount());
+	}
+	
+	@Test
+	public void stripedRunKeepsLastSamples() throws InterruptedException {
+		RingDataSource src = RingDataSource.createStriped(0, 1, 1500, false);
+		recordConcurrently(src, 3);
+		assertEquals(1500, src.makeSnapshot().getRun(0).getSampleCount());
+	}
+	
+	@Test
+	public void runPerStripe() throws InterruptedException {
+		RingDataSource src = RingDataSource.createStriped(0, 10, Integer.MAX_VALUE, true);
+		recordConcurrently(src, 3);
+		src.startRun();
+		
+		DataSnapshot snapshot = src.makeSnapshot();
+		assertEquals(3, snapshot.getRunCount());
+		double total = 0;
+		for (BenchmarkRun run : snapshot.getRuns()) {
+			assertEquals(1000, run.getSampleCount());
+			/* Each thread records consecutive values. */
+			assertEquals(run.getSample(0) + 999, run.getSample(999), 0.1);
+			total += sum(run);
+		}
+		assertEquals(2999.0 * 3000 / 2, total, 0.1);
+	}
+	
+	@Test
+	public void epochsAreLinkedFromNewest() {
+		RingDataSource src = RingDataSource.create(2, 2, Integer.MAX_VALUE);
+		
+		src.addSamples(1, 2);
+		src.startEpoch();
+		src.addSamples(3, 4);
+		src.startEpoch();
+		src.addSamples(5);
+		
+		TestUtils.assertDataSnapshot(src.makeSnapshot(), new double[][] {
+			new double[] { 5 },
+			null,
+			new double[] { 3, 4 },
+			null,
+			new double[] { 1, 2 }
+		});
+		
+		src.startEpoch();
+		src.addSamples(6);
+		
+		TestUtils.assertDataSnapshot(src.makeSnapshot(1), new double[][] {
+			new double[] { },
+			null,
+			new double[] { },
+			null,
+			new double[] { 4 }
+		});
+	}
+	
+	@Test
+	public void finishedDataAreReused() {
+		RingDataSource src = RingDataSource.create(1, 3, Integer.MAX_VALUE);
+		src.addSamples(1, 2);
+		src.startEpoch();
+		src.addSamples(3, 4);
+		src.startRun();
+		src.addSamples(5);
+		
+		DataSnapshot first = src.makeSnapshot();
+		src.addSamples(6);
+		DataSnapshot second = src.makeSnapshot();
+		
+		assertSame(first.getPreviousEpoch(), second.getPreviousEpoch());
+		assertSame(first.getRun(0), second.getRun(0));
+		TestUtils.assertBenchmarkRun(second.getRun(1), 5, 6);
+		TestUtils.assertBenchmarkRun(first.getRun(1), 5);
+	}
+	
+	@Test
+	public void openRunComesWithStatistics() {
+		RingDataSource source = RingDataSource.createUnlimited();
+		source.addSamples(3, 4, 5, 6);
+		
+		BenchmarkRun run = source.makeSnapshot().getRun(0);
+		TestUtils.assertBenchmarkRun(run, 3, 4, 5, 6);
+		assertEquals(4, run.getStatistics().getCount());
+		assertEquals(4.5, run.getStatistics().getMean(), 0.0001);
+		assertEquals(5.0 / 3.0, run.getStatistics().getVariance(), 0.0001);
+		/* The ring does not maintain them. */
+		assertTrue(Double.isNaN(run.getStatistics().getMin()));
+		assertTrue(Double.isNaN(run.getStatistics().getMax()));
+	}
+	
+	@Test
+	public void snapshotCopiesSamplesOnlyWhenRead() {
+		RingDataSource source = RingDataSource.createUnlimited();
+		source.addSamples(1, 2, 3, 4);
+		
+		BenchmarkRun run = source.makeSnapshot().getRun(0);
+		assertEquals(2.5, run.getStatistics().getMean(), 0.0001);
+		source.addSamples(5, 6);
+		TestUtils.assertBenchmarkRun(run, 1, 2, 3, 4);
+		TestUtils.assertBenchmarkRun(source.makeSnapshot().getRun(0), 1, 2, 3, 4, 5, 6);
+	}
+	
+	@Test
+	public void boundedSnapshotIsNotChangedByLaterSamples() {
+		RingDataSource source = RingDataSource.create(1, 5, 100);
+		for (int i = 0; i < 100; i++) {
+			source.addSample(i);
+		}
+		BenchmarkRun run = source.makeSnapshot().getRun(0);
+		for (int i = 100; i < 160; i++) {
+			source.addSample(i);
+		}
+		
+		assertEquals(100, run.getStatistics().getCount());
+		assertEquals(49.5, run.getStatistics().getMean(), 0.0001);
+		assertEquals(100, run.getSampleCount());
+		assertEquals(99.0 * 100 / 2, sum(run), 0.0001);
+	}
+	
+	@Test
+	public void finishedRunHasExactStatistics() {
+		RingDataSource source = RingDataSource.createWithLimitedNumberOfRuns(2);
+		source.addSamples(1, 2, 3, 4);
+		source.startRun();
+		
+		BenchmarkRun run = source.makeSnapshot().getRun(0);
+		assertEquals(1, run.getStatistics().getMin(), 0.0001);
+		assertEquals(4, run.getStatistics().getMax(), 0.0001);
+	}
+	
+	@Test
+	public void stripedRunMergesStatistics() throws InterruptedException {
+		RingDataSource source = RingDataSource.createStriped(1, 1, 10000, false);
+		recordConcurrently(source, 3);
+		
+		StatisticsAccumulator statistics = BenchmarkRunUtils.accumulate(source.makeSnapshot().getRuns());
+		assertEquals(3000, statistics.getCount());
+		assertEquals(1499.5, statistics.getMean(), 0.0001);
+	}
+	
+	@Test
+	public void stripedRunLosesNoSamplesAtRunBoundaries() throws InterruptedException {
+		RingDataSource source = RingDataSource.createStriped(0, Integer.MAX_VALUE, Integer.MAX_VALUE, false);
+		Recorder[] recorders = startRecorders(source, 3, 200000);
+		for (Recorder recorder : recorders) {
+			while (recorder.isAlive()) {
+				source.startRun();
+			}
+		}
+		source.startRun();
+		
+		long total = 0;
+		for (BenchmarkRun run : source.makeSnapshot().getRuns()) {
+			total += run.getSampleCount();
+		}
+		assertEquals(600000, total);
+	}
+	
+	@Test
+	public void stripesOfTerminatedThreadsAreDroppedAfterTheirRun() throws InterruptedException {
+		RingDataSource source = RingDataSource.createStriped(0, Integer.MAX_VALUE, Integer.MAX_VALUE, false);
+		source.addSample(-1);
+		recordConcurrently(source, 3);
+		assertEquals(4, source.getStripeCount());
+		
+		source.startRun();
+		assertEquals(1, source.getStripeCount());
+		assertEquals(3001, source.makeSnapshot().getRun(0).getSampleCount());
+		
+		source.addSample(-2);
+		source.startRun();
+		assertEquals(1, source.getStripeCount());
+		TestUtils.assertBenchmarkRun(source.makeSnapshot().getRun(1), -2);
+	}
 }
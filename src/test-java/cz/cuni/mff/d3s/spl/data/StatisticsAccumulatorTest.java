@@ -0,0 +1,103 @@
+/*
+ * Copyright 2015 Charles University in Prague
+ * Copyright 2015 Vojtech Horky
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.cuni.mff.d3s.spl.data;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import cz.cuni.mff.d3s.spl.BenchmarkRun;
+import cz.cuni.mff.d3s.spl.SampleStatistics;
+
+public class StatisticsAccumulatorTest {
+	private static final double EPSILON = 0.00001;
+
+	private static final double[] VALUES = new double[] { 1, 2, 4, 4, 7, 10, 11, 25 };
+
+	/* Reference values computed with population definitions. */
+	private static final double MEAN = 8.0;
+	private static final double VARIANCE_N = 52.5;
+	private static final double SKEWNESS = 1.399847278;
+	private static final double KURTOSIS = 0.983129252;
+
+	private static void assertStatistics(StatisticsAccumulator stats) {
+		assertEquals(VALUES.length, stats.getCount());
+		assertEquals(MEAN, stats.getMean(), EPSILON);
+		assertEquals(MEAN * VALUES.length, stats.getSum(), EPSILON);
+		assertEquals(VARIANCE_N, stats.getVarianceN(), EPSILON);
+		assertEquals(VARIANCE_N * VALUES.length / (VALUES.length - 1), stats.getVariance(), EPSILON);
+		assertEquals(SKEWNESS, stats.getSkewness(), EPSILON);
+		assertEquals(KURTOSIS, stats.getKurtosis(), EPSILON);
+		assertEquals(1, stats.getMin(), EPSILON);
+		assertEquals(25, stats.getMax(), EPSILON);
+	}
+
+	@Test
+	public void emptyAccumulator() {
+		StatisticsAccumulator stats = new StatisticsAccumulator();
+		assertEquals(0, stats.getCount());
+		assertTrue(Double.isNaN(stats.getMean()));
+		assertTrue(Double.isNaN(stats.getVariance()));
+	}
+
+	@Test
+	public void singleSample() {
+		StatisticsAccumulator stats = new StatisticsAccumulator().add(5);
+		assertEquals(1, stats.getCount());
+		assertEquals(5, stats.getMean(), EPSILON);
+		assertEquals(0, stats.getVariance(), EPSILON);
+	}
+
+	@Test
+	public void sampleBySample() {
+		assertStatistics(new StatisticsAccumulator().add(VALUES));
+	}
+
+	@Test
+	public void mergeOfParts() {
+		for (int split = 0; split <= VALUES.length; split++) {
+			StatisticsAccumulator left = new StatisticsAccumulator().add(Arrays.copyOfRange(VALUES, 0, split));
+			StatisticsAccumulator right = new StatisticsAccumulator().add(Arrays.copyOfRange(VALUES, split, VALUES.length));
+			assertStatistics(left.add(right));
+		}
+	}
+
+	@Test
+	public void multipleRuns() {
+		BenchmarkRun[] runs = new BenchmarkRun[] {
+			new ImmutableBenchmarkRun(1, 2, 4),
+			new ImmutableBenchmarkRun(),
+			new ImmutableBenchmarkRun(4, 7, 10, 11, 25)
+		};
+		assertStatistics(BenchmarkRunUtils.accumulate(Arrays.asList(runs)));
+	}
+
+	@Test
+	public void runStatisticsAreComputedOnce() {
+		BenchmarkRun run = new ImmutableBenchmarkRun(VALUES);
+		SampleStatistics stats = run.getStatistics();
+
+		assertSame(stats, run.getStatistics());
+		assertEquals(VALUES.length, stats.getCount());
+		assertEquals(MEAN, stats.getMean(), EPSILON);
+		assertEquals(1 + 4 + 16 + 16 + 49 + 100 + 121 + 625, stats.getSumOfSquares(), EPSILON);
+		assertEquals(1, stats.getMin(), EPSILON);
+		assertEquals(25, stats.getMax(), EPSILON);
+	}
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2015 Charles University in Prague
+ * Copyright 2015 Vojtech Horky
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.cuni.mff.d3s.spl.data.readers;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import cz.cuni.mff.d3s.spl.BenchmarkRun;
+import cz.cuni.mff.d3s.spl.DataReader.ReaderException;
+import cz.cuni.mff.d3s.spl.DataSnapshot;
+import cz.cuni.mff.d3s.spl.DataSource;
+import cz.cuni.mff.d3s.spl.data.BenchmarkRunBuilder;
+import cz.cuni.mff.d3s.spl.data.BenchmarkRunUtils;
+import cz.cuni.mff.d3s.spl.data.BuilderDataSource;
+import cz.cuni.mff.d3s.spl.data.DataSnapshotBuilder;
+import cz.cuni.mff.d3s.spl.data.DoubleBufferBenchmarkRun;
+import cz.cuni.mff.d3s.spl.data.HistogramBenchmarkRun;
+import cz.cuni.mff.d3s.spl.data.ImmutableBenchmarkRun;
+import cz.cuni.mff.d3s.spl.tests.TestUtils;
+
+public class BinaryRevisionReaderTest {
+	private File file;
+	
+	@Before
+	public void createFile() throws IOException {
+		file = File.createTempFile("spl-binary", ".bin");
+	}
+	
+	@After
+	public void deleteFile() {
+		file.delete();
+	}
+	
+	private static DataSource makeSource(BenchmarkRun... runs) {
+		DataSnapshotBuilder builder = new DataSnapshotBuilder();
+		for (BenchmarkRun run : runs) {
+			builder.addRun(run);
+		}
+		return new BuilderDataSource(builder);
+	}
+	
+	@Test
+	public void roundTrip() throws IOException, ReaderException {
+		Map<String, DataSource> data = new HashMap<>();
+		data.put("first", makeSource(new ImmutableBenchmarkRun(1, 2, 3), new ImmutableBenchmarkRun(0.5)));
+		data.put("second", makeSource(
+				new HistogramBenchmarkRun(new double[] { 10, 20 }, new long[] { 2, 1 }),
+				new ImmutableBenchmarkRun()));
+		
+		BinaryRevisionWriter.write(file, "rev-\u0161", data);
+		assertEquals("rev-\u0161", BinaryRevisionReader.readRevisionName(file));
+		
+		Map<String, DataSource> result = new BinaryRevisionReader().readRevision(file);
+		assertEquals(2, result.size());
+		
+		DataSnapshot first = result.get("first").makeSnapshot();
+		assertEquals(2, first.getRunCount());
+		assertTrue(first.getRun(0) instanceof DoubleBufferBenchmarkRun);
+		TestUtils.assertBenchmarkRun(first.getRun(0), 1, 2, 3);
+		TestUtils.assertBenchmarkRun(first.getRun(1), 0.5);
+		assertEquals(2, first.getRun(0).getStatistics().getMean(), 0.0001);
+		
+		DataSnapshot second = result.get("second").makeSnapshot();
+		assertEquals(2, second.getRunCount());
+		assertTrue(second.getRun(0) instanceof HistogramBenchmarkRun);
+		TestUtils.assertBenchmarkRun(second.getRun(0), 10, 10, 20);
+		assertEquals(0, second.getRun(1).getSampleCount());
+	}
+	
+	@Test
+	public void iterationStartsAreKept() throws IOException, ReaderException {
+		BenchmarkRunBuilder samples = new BenchmarkRunBuilder();
+		samples.startIteration().addSamples(1, 2, 3).startIteration().addSamples(4, 5);
+		Map<String, DataSource> data = new HashMap<>();
+		data.put("bench", makeSource(samples.create(),
+				new HistogramBenchmarkRun(new double[] { 10, 20 }, new long[] { 2, 1 }, new int[] { 0, 1, 2 }),
+				new ImmutableBenchmarkRun(6, 7)));
+		BinaryRevisionWriter.write(file, "rev", data);
+		
+		DataSnapshot snapshot = new BinaryRevisionReader().readRevision(file).get("bench").makeSnapshot();
+		assertArrayEquals(new int[] { 0, 3 }, BenchmarkRunUtils.getIterationStarts(snapshot.getRun(0)));
+		assertArrayEquals(new int[] { 0, 1, 2 }, BenchmarkRunUtils.getIterationStarts(snapshot.getRun(1)));
+		assertNull(BenchmarkRunUtils.getIterationStarts(snapshot.getRun(2)));
+		TestUtils.assertBenchmarkRun(snapshot.getRun(0), 1, 2, 3, 4, 5);
+		TestUtils.assertBenchmarkRun(snapshot.getRun(2), 6, 7);
+		
+		assertArrayEquals(new int[] { 0, 1 }, BenchmarkRunUtils.getIterationStarts(
+				((DoubleBufferBenchmarkRun) snapshot.getRun(0)).skip(2)));
+	}
+	
+	@Test
+	public void runsBeyondTwoGigabytesAreRead() throws IOException, ReaderException {
+		/* Sparse file with a single run far behind the header. */
+		long offset = 3L * 1024 * 1024 * 1024;
+		byte[] key = "bench".getBytes(StandardCharsets.UTF_8);
+		ByteBuffer header = ByteBuffer.allocate(256).order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(BinaryRevisionWriter.MAGIC).putInt(BinaryRevisionWriter.VERSION);
+		header.putInt(0).putInt(1);
+		header.putInt(key.length).put(key).putInt(1);
+		header.putInt(BinaryRevisionWriter.KIND_SAMPLES).putInt(2).putLong(offset);
+		header.putInt(BinaryRevisionWriter.NO_ITERATIONS).putLong(0);
+		header.flip();
+		ByteBuffer samples = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+		samples.putDouble(1.5).putDouble(2.5).flip();
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			FileChannel channel = raf.getChannel();
+			channel.write(header, 0);
+			channel.write(samples, offset);
+		}
+		
+		BenchmarkRun run = new BinaryRevisionReader().readRevision(file).get("bench").makeSnapshot().getRun(0);
+		TestUtils.assertBenchmarkRun(run, 1.5, 2.5);
+	}
+	
+	@Test
+	public void filesAreMerged() throws IOException, ReaderException {
+		File other = File.createTempFile("spl-binary", ".bin");
+		try {
+			Map<String, DataSource> data = new HashMap<>();
+			data.put("bench", makeSource(new ImmutableBenchmarkRun(1, 2)));
+			BinaryRevisionWriter.write(file, "rev", data);
+			data.put("bench", makeSource(new ImmutableBenchmarkRun(3)));
+			BinaryRevisionWriter.write(other, "rev", data);
+			
+			DataSnapshot snapshot = new BinaryRevisionReader().readRevision(file, other).get("bench").makeSnapshot();
+			assertEquals(2, snapshot.getRunCount());
+			TestUtils.assertBenchmarkRun(snapshot.getRun(0), 1, 2);
+			TestUtils.assertBenchmarkRun(snapshot.getRun(1), 3);
+		} finally {
+			other.delete();
+		}
+	}
+	
+	@Test
+	public void runViewIsReadOnly() throws IOException, ReaderException {
+		Map<String, DataSource> data = new HashMap<>();
+		data.put("bench", makeSource(new ImmutableBenchmarkRun(1, 2, 3, 4)));
+		BinaryRevisionWriter.write(file, "rev", data);
+		
+		BenchmarkRun run = new BinaryRevisionReader().readRevision(file).get("bench").makeSnapshot().getRun(0);
+		TestUtils.assertBenchmarkRun(((DoubleBufferBenchmarkRun) run).skip(2), 3, 4);
+		TestUtils.assertBenchmarkRun(run, 1, 2, 3, 4);
+	}
+	
+	@Test(expected = ReaderException.class)
+	public void otherFilesAreRejected() throws IOException, ReaderException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.writeBytes("{\"not\": \"binary\"}");
+		}
+		new BinaryRevisionReader().readRevision(file);
+	}
+	
+	@Test(expected = ReaderException.class)
+	public void truncatedFileIsRejected() throws IOException, ReaderException {
+		Map<String, DataSource> data = new HashMap<>();
+		data.put("bench", makeSource(new ImmutableBenchmarkRun(1, 2, 3, 4)));
+		BinaryRevisionWriter.write(file, "rev", data);
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.setLength(raf.length() - 8);
+		}
+		new BinaryRevisionReader().readRevision(file);
+	}
+}
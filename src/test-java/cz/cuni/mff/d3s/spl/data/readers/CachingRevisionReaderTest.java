@@ -0,0 +1,142 @@
+/*
+ * Copyright 2015 Charles University in Prague
+ * Copyright 2015 Vojtech Horky
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.cuni.mff.d3s.spl.data.readers;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import cz.cuni.mff.d3s.spl.BenchmarkRun;
+import cz.cuni.mff.d3s.spl.DataReader.ReaderException;
+import cz.cuni.mff.d3s.spl.DataSource;
+import cz.cuni.mff.d3s.spl.data.DoubleBufferBenchmarkRun;
+import cz.cuni.mff.d3s.spl.tests.TestUtils;
+
+public class CachingRevisionReaderTest {
+	@Ignore
+	private static class CountingReader implements RevisionReader {
+		private final LineOrientedRevisionReader reader = new LineOrientedRevisionReader();
+		private int parsed = 0;
+		
+		@Override
+		public Map<String, DataSource> readRevision(File... files) throws ReaderException {
+			parsed++;
+			return reader.readRevision(files);
+		}
+	}
+	
+	private File cacheDir;
+	private File input;
+	private CountingReader parser;
+	private CachingRevisionReader reader;
+	
+	@Before
+	public void setUp() throws IOException {
+		cacheDir = Files.createTempDirectory("spl-cache").toFile();
+		input = File.createTempFile("spl-revision", ".dat");
+		parser = new CountingReader();
+		reader = new CachingRevisionReader(parser, cacheDir);
+	}
+	
+	@After
+	public void tearDown() {
+		for (File file : cacheDir.listFiles()) {
+			file.delete();
+		}
+		cacheDir.delete();
+		input.delete();
+	}
+	
+	private void writeInput(String content) throws IOException {
+		Files.write(input.toPath(), content.getBytes(StandardCharsets.US_ASCII));
+	}
+	
+	private BenchmarkRun readRun() throws ReaderException {
+		return reader.readRevision(input).get("default").makeSnapshot().getRun(0);
+	}
+	
+	@Test
+	public void secondReadUsesCache() throws IOException, ReaderException {
+		writeInput("1\n2\n3\n");
+		TestUtils.assertBenchmarkRun(readRun(), 1, 2, 3);
+		assertEquals(1, parser.parsed);
+		
+		BenchmarkRun cached = readRun();
+		assertEquals(1, parser.parsed);
+		assertTrue(cached instanceof DoubleBufferBenchmarkRun);
+		TestUtils.assertBenchmarkRun(cached, 1, 2, 3);
+	}
+	
+	@Test
+	public void onlyCachedFilesAreIndexed() throws IOException, ReaderException {
+		writeInput("1\n2\n3\n");
+		assertFalse(reader.isIndexed(input));
+		readRun();
+		assertTrue(reader.isIndexed(input));
+		writeInput("4\n5\n");
+		assertFalse(reader.isIndexed(input));
+		assertFalse(reader.isIndexed(new File(cacheDir, "missing")));
+	}
+	
+	@Test
+	public void changedContentIsParsedAgain() throws IOException, ReaderException {
+		writeInput("1\n2\n3\n");
+		readRun();
+		writeInput("4\n5\n");
+		TestUtils.assertBenchmarkRun(readRun(), 4, 5);
+		assertEquals(2, parser.parsed);
+	}
+	
+	@Test
+	public void sameContentWithNewTimestampIsNotParsed() throws IOException, ReaderException {
+		writeInput("1\n2\n3\n");
+		readRun();
+		assertTrue(input.setLastModified(input.lastModified() - 60000));
+		TestUtils.assertBenchmarkRun(readRun(), 1, 2, 3);
+		assertEquals(1, parser.parsed);
+	}
+	
+	@Test
+	public void damagedEntryIsReplaced() throws IOException, ReaderException {
+		writeInput("1\n2\n3\n");
+		readRun();
+		for (File file : cacheDir.listFiles()) {
+			if (file.getName().endsWith(".bin")) {
+				Files.write(file.toPath(), new byte[] { 1, 2, 3 });
+			}
+		}
+		TestUtils.assertBenchmarkRun(readRun(), 1, 2, 3);
+		assertEquals(2, parser.parsed);
+		TestUtils.assertBenchmarkRun(readRun(), 1, 2, 3);
+		assertEquals(2, parser.parsed);
+	}
+	
+	@Test(expected = ReaderException.class)
+	public void missingFileIsReported() throws ReaderException {
+		input.delete();
+		readRun();
+	}
+}
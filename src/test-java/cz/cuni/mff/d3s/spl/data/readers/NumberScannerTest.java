@@ -0,0 +1,97 @@
+/*
+ * Copyright 2015 Charles University in Prague
+ * Copyright 2015 Vojtech Horky
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.cuni.mff.d3s.spl.data.readers;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.Test;
+
+import cz.cuni.mff.d3s.spl.BenchmarkRun;
+import cz.cuni.mff.d3s.spl.data.BenchmarkRunBuilder;
+import cz.cuni.mff.d3s.spl.tests.TestUtils;
+
+public class NumberScannerTest {
+	private static NumberScanner makeScanner(String input, int bufferSize) {
+		byte[] bytes = input.getBytes(StandardCharsets.US_ASCII);
+		return new NumberScanner(Channels.newChannel(new ByteArrayInputStream(bytes)), bufferSize);
+	}
+	
+	private static BenchmarkRun readAll(String input, int bufferSize, boolean stopAtInvalid) throws IOException {
+		BenchmarkRunBuilder builder = new BenchmarkRunBuilder();
+		try (NumberScanner scanner = makeScanner(input, bufferSize)) {
+			scanner.readAll(builder, stopAtInvalid);
+		}
+		return builder.create();
+	}
+	
+	@Test
+	public void integersAndHeaders() throws IOException {
+		String input = "#count=3\n#begin\n27320368\r\n\n-5\n  +7 #trailing\n";
+		for (int bufferSize = 1; bufferSize < 10; bufferSize++) {
+			TestUtils.assertBenchmarkRun(readAll(input, bufferSize, false), 27320368, -5, 7);
+		}
+	}
+	
+	@Test
+	public void decimalNumbers() throws IOException {
+		TestUtils.assertBenchmarkRun(readAll("0.5 1.25e2 -3E-1 .5 7. 1e400 NaN", 4, false),
+				0.5, 125, -0.3, 0.5, 7, Double.POSITIVE_INFINITY, Double.NaN);
+	}
+	
+	@Test
+	public void sameValuesAsParseDouble() throws IOException {
+		Random rnd = new Random(0);
+		StringBuilder input = new StringBuilder();
+		double[] expected = new double[2000];
+		for (int i = 0; i < expected.length; i++) {
+			String token;
+			switch (i % 4) {
+			case 0:
+				token = Long.toString(rnd.nextLong());
+				break;
+			case 1:
+				token = Double.toString(rnd.nextDouble() * 1000);
+				break;
+			case 2:
+				token = String.format("%.6f", rnd.nextGaussian());
+				break;
+			default:
+				token = Double.toString(rnd.nextGaussian() * Math.pow(10, rnd.nextInt(60) - 30));
+			}
+			expected[i] = Double.parseDouble(token);
+			input.append(token).append('\n');
+		}
+		
+		TestUtils.assertBenchmarkRun(readAll(input.toString(), 100, false), expected);
+	}
+	
+	@Test(expected=NumberFormatException.class)
+	public void invalidNumber() throws IOException {
+		readAll("1 2 abc 3", 16, false);
+	}
+	
+	@Test
+	public void stopAtInvalidNumber() throws IOException {
+		TestUtils.assertBenchmarkRun(readAll("1 2 abc 3", 16, true), 1, 2);
+	}
+}
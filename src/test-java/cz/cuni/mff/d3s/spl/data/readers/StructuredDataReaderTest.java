@@ -0,0 +1,218 @@
+/*
+ * Copyright 2015 Charles University in Prague
+ * Copyright 2015 Vojtech Horky
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.cuni.mff.d3s.spl.data.readers;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import cz.cuni.mff.d3s.spl.DataReader.ReaderException;
+import cz.cuni.mff.d3s.spl.DataSnapshot;
+import cz.cuni.mff.d3s.spl.DataSource;
+import cz.cuni.mff.d3s.spl.data.BuilderDataSource;
+import cz.cuni.mff.d3s.spl.data.DataSnapshotBuilder;
+import cz.cuni.mff.d3s.spl.data.ImmutableBenchmarkRun;
+import cz.cuni.mff.d3s.spl.data.LazyDataSource;
+import cz.cuni.mff.d3s.spl.data.Revision;
+import cz.cuni.mff.d3s.spl.tests.TestUtils;
+
+public class StructuredDataReaderTest {
+	private File dataDir;
+	private File cacheDir = null;
+	
+	private void writeRevision(String name, double... samples) throws IOException {
+		writeRevision(name, new String[] { "a", "b" }, samples);
+	}
+	
+	private void writeRevision(String name, String[] benchmarks, double... samples) throws IOException {
+		Map<String, DataSource> data = new HashMap<>();
+		for (String benchmark : benchmarks) {
+			DataSnapshotBuilder builder = new DataSnapshotBuilder();
+			builder.addRun(new ImmutableBenchmarkRun(samples));
+			data.put(benchmark, new BuilderDataSource(builder));
+		}
+		BinaryRevisionWriter.write(new File(dataDir, name), name, data);
+	}
+	
+	@Before
+	public void setUp() throws IOException {
+		dataDir = Files.createTempDirectory("spl-data").toFile();
+		writeRevision("r1", 1, 2);
+		writeRevision("r2", 3);
+		writeRevision("r3", 4, 5, 6);
+	}
+	
+	@After
+	public void tearDown() {
+		deleteDirectory(dataDir);
+		if (cacheDir != null) {
+			deleteDirectory(cacheDir);
+		}
+	}
+	
+	private static void deleteDirectory(File dir) {
+		for (File file : dir.listFiles()) {
+			file.delete();
+		}
+		dir.delete();
+	}
+	
+	private Map<String, List<Revision>> read(boolean lazy, String... revisions) throws ReaderException {
+		StructuredDataReader<BinaryRevisionReader> reader =
+				new StructuredDataReader<>(new BinaryRevisionReader.RevisionFactory());
+		reader.setRevisionFilter(revisions.length == 0 ? null : Arrays.asList(revisions));
+		reader.setLazy(lazy);
+		return reader.readData(new String[] { dataDir.getPath() });
+	}
+	
+	@Test
+	public void allRevisionsAreRead() throws ReaderException {
+		Map<String, List<Revision>> data = read(false);
+		assertEquals(2, data.size());
+		assertEquals(3, data.get("a").size());
+		assertEquals("r1", data.get("a").get(0).name);
+		TestUtils.assertBenchmarkRun(data.get("b").get(2).data.makeSnapshot().getRun(0), 4, 5, 6);
+	}
+	
+	@Test
+	public void onlySelectedRevisionsAreRead() throws ReaderException {
+		Map<String, List<Revision>> data = read(false, "r3", "r1", "unknown");
+		assertEquals(2, data.get("a").size());
+		assertEquals("r1", data.get("a").get(0).name);
+		assertEquals("r3", data.get("a").get(1).name);
+	}
+	
+	@Test
+	public void skippedRevisionsAreNotOpened() throws IOException, ReaderException {
+		Files.write(new File(dataDir, "broken").toPath(), new byte[] { 1, 2, 3 });
+		writeRevision("r4", new String[] { "c" }, 7);
+		Map<String, List<Revision>> data = read(false, "r1");
+		assertEquals(2, data.size());
+		assertEquals(1, data.get("a").size());
+	}
+	
+	@Test
+	public void benchmarksOfSkippedRevisionsAreListed() throws IOException, ReaderException {
+		writeRevision("r4", new String[] { "c" }, 7);
+		StructuredDataReader<BinaryRevisionReader> reader =
+				new StructuredDataReader<>(new BinaryRevisionReader.RevisionFactory());
+		reader.setRevisionFilter(Arrays.asList("r1"));
+		reader.setListSkippedBenchmarks(true);
+		Map<String, List<Revision>> data = reader.readData(new String[] { dataDir.getPath() });
+		assertEquals(3, data.size());
+		assertEquals(1, data.get("a").size());
+		assertTrue(data.get("c").isEmpty());
+	}
+	
+	@Test
+	public void emptyFilterCanListAllBenchmarks() throws ReaderException {
+		StructuredDataReader<BinaryRevisionReader> reader =
+				new StructuredDataReader<>(new BinaryRevisionReader.RevisionFactory());
+		reader.setRevisionFilter(Collections.<String>emptyList());
+		reader.setListSkippedBenchmarks(true);
+		Map<String, List<Revision>> data = reader.readData(new String[] { dataDir.getPath() });
+		assertEquals(2, data.size());
+		assertTrue(data.get("a").isEmpty());
+		assertTrue(data.get("b").isEmpty());
+	}
+	
+	@Test
+	public void jsonRevisionsAreLoadedOnFirstUse() throws IOException, ReaderException {
+		File jsonDir = Files.createTempDirectory("spl-json").toFile();
+		try {
+			String json = "[{\"benchmark\": \"x.Bench.run\", \"mode\": \"avgt\","
+					+ " \"primaryMetric\": {\"score\": 2.0, \"rawData\": [[1.0, 2.0], [3.0]]}}]";
+			File revision = new File(jsonDir, "base");
+			Files.write(revision.toPath(), json.getBytes(StandardCharsets.UTF_8));
+			
+			StructuredDataReader<JmhJsonRevisionReader> reader =
+					new StructuredDataReader<>(new JmhJsonRevisionReader.RevisionFactory());
+			reader.setLazy(true);
+			Map<String, List<Revision>> data = reader.readData(new String[] { jsonDir.getPath() });
+			
+			LazyDataSource source = (LazyDataSource) data.get("x.Bench.run@avgt").get(0).data;
+			assertFalse(source.isLoaded());
+			DataSnapshot snapshot = source.makeSnapshot();
+			assertEquals(2, snapshot.getRunCount());
+			TestUtils.assertBenchmarkRun(snapshot.getRun(0), 1, 2);
+			TestUtils.assertBenchmarkRun(snapshot.getRun(1), 3);
+		} finally {
+			deleteDirectory(jsonDir);
+		}
+	}
+	
+	@Test
+	public void uncachedRevisionsAreParsedOnce() throws IOException, ReaderException {
+		cacheDir = Files.createTempDirectory("spl-cache").toFile();
+		StructuredDataReader<CachingRevisionReader> reader = new StructuredDataReader<>(
+				new CachingRevisionReader.RevisionFactory(new BinaryRevisionReader.RevisionFactory(), cacheDir),
+				2, StructuredDataReader.DEFAULT_MEMORY_BUDGET);
+		reader.setRevisionFilter(Arrays.asList("r1", "r3"));
+		reader.setLazy(true);
+		
+		Map<String, List<Revision>> data = reader.readData(new String[] { dataDir.getPath() });
+		assertFalse(data.get("a").get(0).data instanceof LazyDataSource);
+		TestUtils.assertBenchmarkRun(data.get("a").get(1).data.makeSnapshot().getRun(0), 4, 5, 6);
+		
+		data = reader.readData(new String[] { dataDir.getPath() });
+		assertEquals("r3", data.get("a").get(1).name);
+		assertTrue(data.get("a").get(1).data instanceof LazyDataSource);
+		TestUtils.assertBenchmarkRun(data.get("a").get(1).data.makeSnapshot().getRun(0), 4, 5, 6);
+	}
+	
+	@Test
+	public void lazyRevisionsAreLoadedOnFirstUse() throws ReaderException {
+		Map<String, List<Revision>> data = read(true, "r1", "r2");
+		assertEquals(2, data.size());
+		
+		LazyDataSource a1 = (LazyDataSource) data.get("a").get(0).data;
+		LazyDataSource a2 = (LazyDataSource) data.get("a").get(1).data;
+		LazyDataSource b1 = (LazyDataSource) data.get("b").get(0).data;
+		assertFalse(a1.isLoaded());
+		
+		TestUtils.assertBenchmarkRun(a1.makeSnapshot().getRun(0), 1, 2);
+		assertTrue(a1.isLoaded());
+		assertFalse(a2.isLoaded());
+		
+		TestUtils.assertBenchmarkRun(b1.makeSnapshot().getRun(0), 1, 2);
+		TestUtils.assertBenchmarkRun(a2.makeSnapshot().getRun(0), 3);
+	}
+	
+	@Test
+	public void lazyLoadingFailureIsReported() throws ReaderException {
+		Map<String, List<Revision>> data = read(true, "r1");
+		new File(dataDir, "r1").delete();
+		try {
+			data.get("a").get(0).data.makeSnapshot();
+			fail("Missing file must be reported");
+		} catch (IllegalStateException e) {
+			assertTrue(e.getCause() instanceof ReaderException);
+		}
+	}
+}
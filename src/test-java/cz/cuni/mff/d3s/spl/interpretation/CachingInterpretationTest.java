@@ -0,0 +1,120 @@
+/*
+ * Copyright 2015 Charles University in Prague
+ * Copyright 2015 Vojtech Horky
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.cuni.mff.d3s.spl.interpretation;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import cz.cuni.mff.d3s.spl.ComparisonResult;
+import cz.cuni.mff.d3s.spl.DataSnapshot;
+import cz.cuni.mff.d3s.spl.Interpretation;
+import cz.cuni.mff.d3s.spl.data.BuilderDataSource;
+import cz.cuni.mff.d3s.spl.data.DataSnapshotBuilder;
+import cz.cuni.mff.d3s.spl.data.ImmutableBenchmarkRun;
+import cz.cuni.mff.d3s.spl.tests.DataForTest;
+import cz.cuni.mff.d3s.spl.tests.InterpretationForTests;
+
+public class CachingInterpretationTest {
+	@Ignore
+	private static class CountingInterpretation implements Interpretation {
+		private Interpretation actual = new InterpretationForTests();
+		public int counter = 0;
+		
+		@Override
+		public ComparisonResult compare(DataSnapshot left, DataSnapshot right) {
+			counter++;
+			return actual.compare(left, right);
+		}
+
+		@Override
+		public ComparisonResult compare(DataSnapshot data, double value) {
+			counter++;
+			return actual.compare(data, value);
+		}
+	}
+	
+	private CountingInterpretation counting;
+	private CachingInterpretation caching;
+	
+	@Before
+	public void setUp() {
+		counting = new CountingInterpretation();
+		caching = new CachingInterpretation(counting, 2);
+	}
+	
+	@Test
+	public void samePairIsComparedOnce() {
+		DataSnapshot a = new DataForTest(4, 100).makeSnapshot();
+		DataSnapshot b = new DataForTest(5, 100).makeSnapshot();
+		
+		ComparisonResult first = caching.compare(a, b);
+		ComparisonResult second = caching.compare(a, b);
+		
+		assertSame(first, second);
+		assertEquals(1, counting.counter);
+		
+		caching.compare(b, a);
+		assertEquals(2, counting.counter);
+	}
+	
+	@Test
+	public void constantIsPartOfTheKey() {
+		DataSnapshot a = new DataForTest(4, 100).makeSnapshot();
+		
+		caching.compare(a, 3);
+		caching.compare(a, 3);
+		assertEquals(1, counting.counter);
+		
+		caching.compare(a, 5);
+		assertEquals(2, counting.counter);
+	}
+	
+	@Test
+	public void oldestResultIsEvicted() {
+		DataSnapshot a = new DataForTest(4, 100).makeSnapshot();
+		
+		caching.compare(a, 1);
+		caching.compare(a, 2);
+		caching.compare(a, 1);
+		caching.compare(a, 3);
+		assertEquals(3, counting.counter);
+		
+		/* 1 was used recently, 2 was evicted. */
+		caching.compare(a, 1);
+		assertEquals(3, counting.counter);
+		caching.compare(a, 2);
+		assertEquals(4, counting.counter);
+	}
+	
+	@Test
+	public void newDataAreNotCached() {
+		DataSnapshotBuilder builder = new DataSnapshotBuilder();
+		BuilderDataSource source = new BuilderDataSource(builder);
+		builder.addRun(new ImmutableBenchmarkRun(4, 4, 4, 4, 4, 4, 4, 4, 4, 4));
+		
+		caching.compare(source.makeSnapshot(), 3);
+		caching.compare(source.makeSnapshot(), 3);
+		assertEquals(1, counting.counter);
+		
+		builder.addRun(new ImmutableBenchmarkRun(2, 2, 2, 2, 2, 2, 2, 2, 2, 2));
+		caching.compare(source.makeSnapshot(), 3);
+		assertEquals(2, counting.counter);
+	}
+}
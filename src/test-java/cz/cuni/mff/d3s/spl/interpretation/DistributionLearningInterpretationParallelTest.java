@@ -16,7 +16,19 @@
  */
 package cz.cuni.mff.d3s.spl.interpretation;
 
+import static org.junit.Assert.*;
+
+import java.util.concurrent.ForkJoinPool;
+
 import org.junit.Before;
+import org.junit.Test;
+
+import cz.cuni.mff.d3s.spl.BenchmarkRun;
+import cz.cuni.mff.d3s.spl.ComparisonResult;
+import cz.cuni.mff.d3s.spl.DataSnapshot;
+import cz.cuni.mff.d3s.spl.Interpretation;
+import cz.cuni.mff.d3s.spl.data.DataSnapshotBuilder;
+import cz.cuni.mff.d3s.spl.data.ImmutableBenchmarkRun;
 
 /** Test for the distribution-learning interpretation.
  *
@@ -29,4 +41,46 @@ public class DistributionLearningInterpretationParallelTest extends Distribution
 	public void prepareInterpretation() {
 		interpretation = new DistributionLearningInterpretationParallel();
 	}
+	
+	private static DataSnapshot makeSnapshot(double base, int runs, DataSnapshot previousEpoch) {
+		DataSnapshotBuilder builder = new DataSnapshotBuilder();
+		for (int i = 0; i < runs; i++) {
+			double[] samples = new double[500];
+			for (int j = 0; j < samples.length; j++) {
+				samples[j] = base + ((i * 31 + j * 17) % 23) / 10.0;
+			}
+			BenchmarkRun run = new ImmutableBenchmarkRun(samples);
+			builder.addRun(run);
+		}
+		builder.setPreviousEpoch(previousEpoch);
+		return builder.create();
+	}
+	
+	private static double[] getCriticalValues(Interpretation interpretation, DataSnapshot left, DataSnapshot right) {
+		ComparisonResult result = interpretation.compare(left, right);
+		return new double[] { result.getCriticalValue(0.05), result.getCriticalValue(0.5), result.getCriticalValue(0.95) };
+	}
+	
+	@Test
+	public void resultDoesNotDependOnParallelism() {
+		DataSnapshot left = makeSnapshot(10, 4, makeSnapshot(10, 5, null));
+		DataSnapshot right = makeSnapshot(11, 3, makeSnapshot(11, 6, null));
+		
+		ForkJoinPool single = new ForkJoinPool(1);
+		ForkJoinPool multi = new ForkJoinPool(4);
+		try {
+			double[] expected = getCriticalValues(DistributionLearningInterpretationParallel.getReasonable(single, 42), left, right);
+			double[] actual = getCriticalValues(DistributionLearningInterpretationParallel.getReasonable(multi, 42), left, right);
+			assertArrayEquals(expected, actual, 0.0);
+			
+			actual = getCriticalValues(DistributionLearningInterpretationParallel.getReasonable(multi, 42), left, right);
+			assertArrayEquals(expected, actual, 0.0);
+			
+			actual = getCriticalValues(DistributionLearningInterpretationParallel.getReasonable(multi, 43), left, right);
+			assertFalse(expected[0] == actual[0]);
+		} finally {
+			single.shutdown();
+			multi.shutdown();
+		}
+	}
 }
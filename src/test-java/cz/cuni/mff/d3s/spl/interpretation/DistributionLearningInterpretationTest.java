@@ -92,6 +92,15 @@ public class DistributionLearningInterpretationTest  {
 		assertEquals(ComparisonResult.Relation.LESS_THAN, result.get(0.01));
 	}
 	
+	@Test
+	public void repeatedComparisonGivesSameResult() {
+		ComparisonResult first = interpretation.compare(SNAPSHOT_1, SNAPSHOT_2);
+		ComparisonResult second = interpretation.compare(SNAPSHOT_1, SNAPSHOT_2);
+		
+		assertEquals(first.getCriticalValue(0.05), second.getCriticalValue(0.05), 0.0);
+		assertEquals(first.getCriticalValue(0.95), second.getCriticalValue(0.95), 0.0);
+	}
+	
 	@Test
 	public void smokeTestForOneSnapshot() {
 		@SuppressWarnings("unused")
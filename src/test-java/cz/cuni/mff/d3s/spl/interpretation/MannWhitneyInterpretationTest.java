@@ -18,6 +18,9 @@ package cz.cuni.mff.d3s.spl.interpretation;
 
 import static org.junit.Assert.*;
 
+import java.util.Random;
+
+import org.apache.commons.math3.stat.inference.MannWhitneyUTest;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -25,6 +28,7 @@ import cz.cuni.mff.d3s.spl.BenchmarkRun;
 import cz.cuni.mff.d3s.spl.ComparisonResult;
 import cz.cuni.mff.d3s.spl.DataSnapshot;
 import cz.cuni.mff.d3s.spl.data.DataSnapshotBuilder;
+import cz.cuni.mff.d3s.spl.data.HistogramBenchmarkRunBuilder;
 import cz.cuni.mff.d3s.spl.data.ImmutableBenchmarkRun;
 
 public class MannWhitneyInterpretationTest  {
@@ -50,8 +54,10 @@ public class MannWhitneyInterpretationTest  {
 	}
 	
 	private DataSnapshot makeSnapshotFromSingleRun(double... samples) {
-		BenchmarkRun run = new ImmutableBenchmarkRun(samples);
-		
+		return makeSnapshot(new ImmutableBenchmarkRun(samples));
+	}
+	
+	private DataSnapshot makeSnapshot(BenchmarkRun run) {
 		DataSnapshotBuilder builder = new DataSnapshotBuilder();
 		builder.addRun(run);
 		
@@ -82,4 +88,33 @@ public class MannWhitneyInterpretationTest  {
 		
 		// FIXME - compute
 	}
+	
+	@Test
+	public void histogramsMatchPlainSamples() {
+		Random rnd = new Random(0);
+		double[] plainLeft = new double[200];
+		double[] plainRight = new double[300];
+		HistogramBenchmarkRunBuilder histogramLeft = new HistogramBenchmarkRunBuilder();
+		HistogramBenchmarkRunBuilder histogramRight = new HistogramBenchmarkRunBuilder();
+		for (int i = 0; i < plainLeft.length; i++) {
+			plainLeft[i] = rnd.nextInt(20);
+			histogramLeft.addSamples(plainLeft[i], 1);
+		}
+		for (int i = 0; i < plainRight.length; i++) {
+			plainRight[i] = rnd.nextInt(20) + 1;
+			histogramRight.addSamples(plainRight[i], 1);
+		}
+		
+		ComparisonResult plain = interpretation.compare(makeSnapshotFromSingleRun(plainLeft),
+				makeSnapshotFromSingleRun(plainRight));
+		ComparisonResult histogram = interpretation.compare(makeSnapshot(histogramLeft.create()),
+				makeSnapshot(histogramRight.create()));
+		
+		double uStatMin = plainLeft.length * plainRight.length - new MannWhitneyUTest().mannWhitneyU(plainLeft, plainRight);
+		double meanU = plainLeft.length * plainRight.length / 2.0;
+		double varU = plainLeft.length * plainRight.length * (plainLeft.length + plainRight.length + 1) / 12.0;
+		
+		assertEquals((uStatMin - meanU) / Math.sqrt(varU), plain.getStatistic(), 0.000001);
+		assertEquals(plain.getStatistic(), histogram.getStatistic(), 0.000001);
+	}
 }
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2015 Charles University in Prague
+ * Copyright 2015 Vojtech Horky
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.cuni.mff.d3s.spl.interpretation;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import cz.cuni.mff.d3s.spl.ComparisonResult;
+import cz.cuni.mff.d3s.spl.DataSnapshot;
+import cz.cuni.mff.d3s.spl.Interpretation;
+import cz.cuni.mff.d3s.spl.data.DataSnapshotBuilder;
+import cz.cuni.mff.d3s.spl.data.HistogramBenchmarkRun;
+import cz.cuni.mff.d3s.spl.data.ImmutableBenchmarkRun;
+
+public class QuantileInterpretationTest {
+	private static DataSnapshot makeSnapshot(double tail) {
+		DataSnapshotBuilder builder = new DataSnapshotBuilder();
+		builder.addRun(new HistogramBenchmarkRun(new double[] { 10, tail }, new long[] { 990000, 10000 }));
+		builder.addRun(new ImmutableBenchmarkRun(10, 11, 12));
+		return builder.create();
+	}
+	
+	@Test
+	public void tailDecides() {
+		Interpretation interpretation = new QuantileInterpretation(0.995);
+		ComparisonResult result = interpretation.compare(makeSnapshot(100), makeSnapshot(200));
+		assertEquals(ComparisonResult.Relation.LESS_THAN, result.get(0.05));
+		assertEquals(-100, result.getStatistic(), 2);
+		
+		result = interpretation.compare(makeSnapshot(100), makeSnapshot(100));
+		assertEquals(ComparisonResult.Relation.EQUAL, result.get(0.05));
+	}
+	
+	@Test
+	public void medianIgnoresTail() {
+		Interpretation interpretation = new QuantileInterpretation(0.5);
+		ComparisonResult result = interpretation.compare(makeSnapshot(100), makeSnapshot(200));
+		assertEquals(ComparisonResult.Relation.EQUAL, result.get(0.05));
+	}
+	
+	@Test
+	public void compareWithConstant() {
+		Interpretation interpretation = new QuantileInterpretation(0.999);
+		assertEquals(ComparisonResult.Relation.GREATER_THAN, interpretation.compare(makeSnapshot(100), 50).get(0.05));
+		assertEquals(ComparisonResult.Relation.EQUAL, interpretation.compare(makeSnapshot(100), 100).get(0.05));
+	}
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2015 Charles University in Prague
+ * Copyright 2015 Vojtech Horky
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.cuni.mff.d3s.spl.utils;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class DoubleRingBufferTest {
+	private static final double EPSILON = 0.00001;
+	
+	@Test
+	public void smokeTest() {
+		DoubleRingBuffer buffer = new DoubleRingBuffer(3);
+		assertArrayEquals(new double[0], buffer.toArray(), EPSILON);
+		buffer.add(0, 1);
+		assertArrayEquals(new double[] { 0, 1 }, buffer.toArray(), EPSILON);
+		buffer.add(2, 3, 4);
+		assertArrayEquals(new double[] { 2, 3, 4 }, buffer.toArray(), EPSILON);
+		buffer.add(5);
+		assertArrayEquals(new double[] { 3, 4, 5 }, buffer.toArray(), EPSILON);
+		assertEquals(3, buffer.size());
+	}
+	
+	@Test
+	public void unlimitedBufferGrows() {
+		DoubleRingBuffer buffer = new DoubleRingBuffer();
+		for (int i = 0; i < 1000; i++) {
+			buffer.add(i);
+		}
+		double[] samples = buffer.toArray();
+		assertEquals(1000, samples.length);
+		assertEquals(999, samples[999], EPSILON);
+	}
+	
+	@Test
+	public void clearKeepsRingSize() {
+		DoubleRingBuffer buffer = new DoubleRingBuffer(2);
+		buffer.add(1, 2, 3);
+		buffer.clear();
+		assertEquals(0, buffer.size());
+		buffer.add(4, 5, 6);
+		assertArrayEquals(new double[] { 5, 6 }, buffer.toArray(), EPSILON);
+	}
+}
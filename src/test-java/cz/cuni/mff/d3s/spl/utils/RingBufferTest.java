@@ -47,4 +47,47 @@ public class RingBufferTest {
 		buffer.add(3);
 		assertRBContent(buffer, 1, 2, 3);
 	}
+	
+	@Test
+	public void contentIsSnapshot() {
+		RingBuffer<Integer> buffer = new RingBuffer<>(2);
+		buffer.add(0);
+		buffer.add(1);
+		Collection<Integer> before = buffer.get();
+		buffer.add(2);
+		assertArrayEquals(new Integer[] { 0, 1 }, before.toArray(INTEGER_ARRAY_TYPE));
+		assertRBContent(buffer, 1, 2);
+	}
+	
+	@Test
+	public void unlimitedBufferGrows() {
+		RingBuffer<Integer> buffer = new RingBuffer<>();
+		Integer[] expected = new Integer[1000];
+		for (int i = 0; i < expected.length; i++) {
+			buffer.add(i);
+			expected[i] = i;
+		}
+		assertRBContent(buffer, expected);
+		assertEquals(1000, buffer.size());
+	}
+	
+	@Test
+	public void evictionWrapsAround() {
+		RingBuffer<Integer> buffer = new RingBuffer<>(100);
+		for (int i = 0; i < 1050; i++) {
+			buffer.add(i);
+		}
+		Integer[] expected = new Integer[100];
+		for (int i = 0; i < expected.length; i++) {
+			expected[i] = 950 + i;
+		}
+		assertRBContent(buffer, expected);
+	}
+	
+	@Test
+	public void emptyBufferKeepsNothing() {
+		RingBuffer<Integer> buffer = RingBuffer.createEmpty();
+		buffer.add(1);
+		assertRBContent(buffer);
+	}
 }
@@ -0,0 +1,260 @@
+/*
+ * Copyright 2015 Charles University in Prague
+ * Copyright 2015 Vojtech Horky
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.cuni.mff.d3s.spl.utils;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+public class SampleRingTest {
+	private static final double EPSILON = 0.00001;
+	
+	@Ignore
+	private static class Writer extends Thread {
+		private final SampleRing ring;
+		private final AtomicBoolean stop = new AtomicBoolean(false);
+		private volatile AssertionError failure = null;
+		
+		public Writer(SampleRing ring) {
+			this.ring = ring;
+		}
+		
+		@Override
+		public void run() {
+			long value = 0;
+			try {
+				while (!stop.get()) {
+					ring.add(value);
+					value++;
+				}
+			} catch (AssertionError e) {
+				failure = e;
+			}
+		}
+	}
+	
+	private static void assertRingContent(SampleRing ring, double... expected) {
+		assertArrayEquals(expected, ring.toArray(), EPSILON);
+	}
+	
+	@Test
+	public void smokeTest() {
+		SampleRing ring = new SampleRing(3);
+		assertRingContent(ring);
+		ring.add(0);
+		assertRingContent(ring, 0);
+		ring.add(1);
+		ring.add(2);
+		assertRingContent(ring, 0, 1, 2);
+		ring.add(3);
+		assertRingContent(ring, 1, 2, 3);
+		ring.add(4);
+		ring.add(5);
+		ring.add(6);
+		assertRingContent(ring, 4, 5, 6);
+		assertEquals(7, ring.getWrittenCount());
+	}
+	
+	@Test
+	public void singleSampleRing() {
+		SampleRing ring = new SampleRing(1);
+		ring.add(1);
+		assertRingContent(ring, 1);
+		ring.add(2);
+		assertRingContent(ring, 2);
+	}
+	
+	@Test
+	public void ringGrowsUpToItsSize() {
+		SampleRing ring = new SampleRing(5000);
+		for (int i = 0; i < 4000; i++) {
+			ring.add(i);
+		}
+		double[] samples = ring.toArray();
+		assertEquals(4000, samples.length);
+		assertEquals(3999, samples[3999], EPSILON);
+		
+		for (int i = 4000; i < 12000; i++) {
+			ring.add(i);
+		}
+		samples = ring.toArray();
+		assertEquals(5000, samples.length);
+		assertEquals(7000, samples[0], EPSILON);
+		assertEquals(11999, samples[4999], EPSILON);
+	}
+	
+	@Test
+	public void readersSeeContiguousSamples() throws InterruptedException {
+		SampleRing ring = new SampleRing(100);
+		Writer writer = new Writer(ring);
+		writer.start();
+		try {
+			for (int i = 0; i < 10000; i++) {
+				long before = ring.getWrittenCount();
+				double[] samples = ring.toArray();
+				long after = ring.getWrittenCount();
+				assertTrue(samples.length <= 100);
+				for (int j = 1; j < samples.length; j++) {
+					assertEquals(samples[j - 1] + 1, samples[j], EPSILON);
+				}
+				if (samples.length > 0) {
+					assertTrue(samples[samples.length - 1] >= before - 1);
+					assertTrue(samples[samples.length - 1] < after);
+				}
+			}
+		} finally {
+			writer.stop.set(true);
+			writer.join();
+		}
+	}
+	
+	private static void assertWindowStatistics(SampleRing.Window window) {
+		assertWindowStatistics(window, window.copySamples());
+	}
+	
+	private static void assertWindowStatistics(SampleRing.Window window, double[] samples) {
+		double mean = 0.0;
+		for (double sample : samples) {
+			mean += sample;
+		}
+		mean /= samples.length;
+		double m2 = 0.0;
+		for (double sample : samples) {
+			m2 += (sample - mean) * (sample - mean);
+		}
+		assertTrue(window.hasStatistics());
+		assertEquals(mean, window.getMean(), EPSILON);
+		assertEquals(m2, window.getM2(), EPSILON * Math.max(1.0, m2));
+	}
+	
+	@Test
+	public void windowStatisticsFollowEvictions() {
+		SampleRing ring = new SampleRing(3);
+		SampleRing.Window window = ring.getWindow();
+		assertEquals(0, window.copySamples().length);
+		assertTrue(Double.isNaN(window.getMean()));
+		
+		ring.add(1);
+		ring.add(2);
+		window = ring.getWindow();
+		assertEquals(1.5, window.getMean(), EPSILON);
+		assertEquals(0.5, window.getM2(), EPSILON);
+		
+		ring.add(6);
+		ring.add(10);
+		window = ring.getWindow();
+		assertArrayEquals(new double[] { 2, 6, 10 }, window.copySamples(), EPSILON);
+		assertEquals(6, window.getMean(), EPSILON);
+		assertEquals(32, window.getM2(), EPSILON);
+		assertEquals(3, window.getCount());
+		assertEquals(1, window.getStart());
+	}
+	
+	@Test
+	public void windowFromSequenceNumber() {
+		SampleRing ring = new SampleRing(4);
+		ring.add(1);
+		ring.add(2);
+		ring.add(3);
+		
+		SampleRing.Window window = ring.getWindow(1);
+		assertArrayEquals(new double[] { 2, 3 }, window.copySamples(), EPSILON);
+		assertEquals(3, window.getEnd());
+		assertFalse(window.hasStatistics());
+		
+		ring.add(4);
+		ring.add(5);
+		ring.add(6);
+		assertArrayEquals(new double[] { 4, 5, 6 }, ring.getWindow(3).copySamples(), EPSILON);
+		/* Evicted samples are not returned. */
+		assertArrayEquals(new double[] { 3, 4, 5, 6 }, ring.getWindow(1).copySamples(), EPSILON);
+		assertTrue(ring.getWindow(1).hasStatistics());
+		assertEquals(0, ring.getWindow(6).copySamples().length);
+	}
+	
+	@Test
+	public void windowStatisticsStayAccurate() {
+		SampleRing ring = new SampleRing(1000);
+		for (int i = 0; i < 100000; i++) {
+			ring.add(1e6 + (i * 7919) % 1013);
+			if (i % 9973 == 0) {
+				assertWindowStatistics(ring.getWindow());
+			}
+		}
+		assertWindowStatistics(ring.getWindow());
+	}
+	
+	@Test
+	public void windowStatisticsDescribeSamplesUnderConcurrentWrites() throws InterruptedException {
+		SampleRing ring = new SampleRing(100);
+		Writer writer = new Writer(ring);
+		writer.start();
+		try {
+			for (int i = 0; i < 10000; i++) {
+				SampleRing.Window window = ring.getWindow();
+				double[] samples = window.copyRemainingSamples();
+				/* Samples overwritten before the copy are missing. */
+				if (window.hasStatistics() && (samples.length > 0) && (samples.length == window.getCount())) {
+					assertWindowStatistics(window, samples);
+				}
+			}
+		} finally {
+			writer.stop.set(true);
+			writer.join();
+		}
+	}
+	
+	@Test
+	public void concurrentWritersAreDetectedWithAssertions() throws InterruptedException {
+		boolean assertionsEnabled = false;
+		assert assertionsEnabled = true;
+		assumeTrue(assertionsEnabled);
+		
+		SampleRing ring = new SampleRing(100);
+		Writer first = new Writer(ring);
+		Writer second = new Writer(ring);
+		first.start();
+		second.start();
+		long deadline = System.currentTimeMillis() + 10000;
+		while ((first.failure == null) && (second.failure == null) && (System.currentTimeMillis() < deadline)) {
+			Thread.sleep(10);
+		}
+		first.stop.set(true);
+		second.stop.set(true);
+		first.join();
+		second.join();
+		assertTrue((first.failure != null) || (second.failure != null));
+	}
+	
+	@Test(expected=IllegalStateException.class)
+	public void copyingOverwrittenWindowFails() {
+		SampleRing ring = new SampleRing(10);
+		for (int i = 0; i < 10; i++) {
+			ring.add(i);
+		}
+		SampleRing.Window window = ring.getWindow();
+		for (int i = 10; i < 40; i++) {
+			ring.add(i);
+		}
+		assertEquals(0, window.copyRemainingSamples().length);
+		window.copySamples();
+	}
+}
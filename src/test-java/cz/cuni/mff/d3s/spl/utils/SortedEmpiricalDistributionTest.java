@@ -0,0 +1,102 @@
+/*
+ * Copyright 2015 Charles University in Prague
+ * Copyright 2015 Vojtech Horky
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.cuni.mff.d3s.spl.utils;
+
+import static org.junit.Assert.*;
+
+import org.apache.commons.math3.exception.OutOfRangeException;
+import org.apache.commons.math3.random.JDKRandomGenerator;
+import org.junit.Test;
+
+public class SortedEmpiricalDistributionTest {
+	private static final double EPSILON = 0.00001;
+	
+	private SortedEmpiricalDistribution make(double... samples) {
+		return new SortedEmpiricalDistribution(samples, new JDKRandomGenerator(0));
+	}
+	
+	@Test
+	public void quantilesInterpolateSortedSamples() {
+		SortedEmpiricalDistribution distr = make(4., 1., 3., 2., 5.);
+		assertEquals(1., distr.inverseCumulativeProbability(0.), EPSILON);
+		assertEquals(1.5, distr.inverseCumulativeProbability(0.125), EPSILON);
+		assertEquals(3., distr.inverseCumulativeProbability(0.5), EPSILON);
+		assertEquals(5., distr.inverseCumulativeProbability(1.), EPSILON);
+	}
+	
+	@Test
+	public void cumulativeProbabilityIsInverseOfQuantile() {
+		SortedEmpiricalDistribution distr = make(10., 1., 1., 7., 2., 4.);
+		assertEquals(0., distr.cumulativeProbability(0.), EPSILON);
+		assertEquals(1., distr.cumulativeProbability(10.), EPSILON);
+		assertEquals(1., distr.cumulativeProbability(11.), EPSILON);
+		for (double p = 0.21; p < 1.; p += 0.1) {
+			double x = distr.inverseCumulativeProbability(p);
+			assertEquals(p, distr.cumulativeProbability(x), EPSILON);
+		}
+	}
+	
+	@Test
+	public void densityIntegratesToOne() {
+		SortedEmpiricalDistribution distr = make(0., 1., 3., 7.);
+		assertEquals(1. / 3., distr.density(0.5), EPSILON);
+		assertEquals(1. / 6., distr.density(2.), EPSILON);
+		assertEquals(1. / 12., distr.density(5.), EPSILON);
+		assertEquals(0., distr.density(8.), EPSILON);
+	}
+	
+	@Test
+	public void momentsMatchInterpolatedDistribution() {
+		SortedEmpiricalDistribution distr = make(2., 0., 1.);
+		/* Uniform distribution on [0, 2]. */
+		assertEquals(1., distr.getNumericalMean(), EPSILON);
+		assertEquals(1. / 3., distr.getNumericalVariance(), EPSILON);
+	}
+	
+	@Test
+	public void singleSampleIsPointMass() {
+		SortedEmpiricalDistribution distr = make(3.);
+		assertEquals(3., distr.inverseCumulativeProbability(0.3), EPSILON);
+		assertEquals(0., distr.cumulativeProbability(2.9), EPSILON);
+		assertEquals(1., distr.cumulativeProbability(3.), EPSILON);
+		assertEquals(3., distr.sample(), EPSILON);
+		assertEquals(0., distr.getNumericalVariance(), EPSILON);
+	}
+	
+	@Test
+	public void samplesStayWithinSupportAndAreDeterministic() {
+		double[] first = make(1., 2., 3.).sample(1000);
+		double[] second = make(1., 2., 3.).sample(1000);
+		assertArrayEquals(first, second, 0.);
+		assertEquals(2., StatisticsUtils.mean(first), 0.1);
+		for (double value : first) {
+			assertTrue(value >= 1. && value <= 3.);
+		}
+	}
+	
+	@Test
+	public void inputIsNotModified() {
+		double[] samples = new double[] { 3., 1., 2. };
+		make(samples);
+		assertArrayEquals(new double[] { 3., 1., 2. }, samples, 0.);
+	}
+	
+	@Test(expected = OutOfRangeException.class)
+	public void probabilityIsChecked() {
+		make(1., 2.).inverseCumulativeProbability(1.5);
+	}
+}
@@ -18,6 +18,9 @@ package cz.cuni.mff.d3s.spl.utils;
 
 import static org.junit.Assert.*;
 
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
 import org.junit.Test;
 
 public class StatisticsUtilsTest {
@@ -37,4 +40,96 @@ public class StatisticsUtilsTest {
 	public void varianceWithBiasWorks() {
 		assertEquals(5./4., StatisticsUtils.varianceN(1., 2., 3., 4.), EPSILON);
 	}
+	
+	@Test
+	public void weightedMeanWorks() {
+		assertEquals(2.0, StatisticsUtils.mean(new double[] { 1., 4. }, new long[] { 2, 1 }), EPSILON);
+	}
+	
+	@Test
+	public void weightedVarianceWorks() {
+		double[] values = new double[] { 1., 2., 4. };
+		long[] weights = new long[] { 2, 0, 2 };
+		assertEquals(StatisticsUtils.variance(1., 1., 4., 4.), StatisticsUtils.variance(values, weights), EPSILON);
+		assertEquals(StatisticsUtils.varianceN(1., 1., 4., 4.), StatisticsUtils.varianceN(values, weights), EPSILON);
+	}
+	
+	@Test
+	public void weightedQuantileWorks() {
+		double[] values = new double[] { 10., 1., 5. };
+		long[] weights = new long[] { 1, 2, 1 };
+		assertEquals(1., StatisticsUtils.quantile(values, weights, 0.0), EPSILON);
+		assertEquals(1., StatisticsUtils.quantile(values, weights, 0.5), EPSILON);
+		assertEquals(5., StatisticsUtils.quantile(values, weights, 0.75), EPSILON);
+		assertEquals(10., StatisticsUtils.quantile(values, weights, 1.0), EPSILON);
+	}
+	
+	@Test
+	public void bootstrapMeanIsDeterministic() {
+		double[] values = new double[] { 1., 2., 3., 10. };
+		double first = StatisticsUtils.bootstrapMean(values, 100, new SplittableRandom(7));
+		double second = StatisticsUtils.bootstrapMean(values, 100, new SplittableRandom(7));
+		assertEquals(first, second, 0.0);
+		assertEquals(5., StatisticsUtils.bootstrapMean(new double[] { 5. }, 10, new SplittableRandom(7)), EPSILON);
+	}
+	
+	@Test
+	public void bootstrapMeanConverges() {
+		double[] values = new double[] { 1., 2., 3., 10. };
+		assertEquals(4., StatisticsUtils.bootstrapMean(values, 1000000, new SplittableRandom(1)), 0.05);
+	}
+	
+	@Test
+	public void weightedBootstrapMeanConverges() {
+		double[] values = new double[] { 1., 4., 100. };
+		long[] cumulativeWeights = new long[] { 2, 3, 3 };
+		assertEquals(2., StatisticsUtils.bootstrapMean(values, cumulativeWeights, 1000000, new SplittableRandom(1)), 0.02);
+	}
+	
+	@Test
+	public void sliceKernelsMatchNaiveLoops() {
+		SplittableRandom random = new SplittableRandom(3);
+		double[] values = new double[103];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = 1000. + random.nextDouble();
+		}
+		for (int length = 0; length < 11; length++) {
+			double sum = 0.;
+			double sumOfSquares = 0.;
+			for (int i = 5; i < 5 + length; i++) {
+				sum += values[i];
+				sumOfSquares += values[i] * values[i];
+			}
+			assertEquals(sum, StatisticsUtils.sum(values, 5, length), EPSILON);
+			assertEquals(sumOfSquares, StatisticsUtils.sumOfSquares(values, 5, length), 1e-6);
+		}
+		double[] slice = Arrays.copyOfRange(values, 7, 100);
+		assertEquals(StatisticsUtils.mean(slice), StatisticsUtils.mean(values, 7, 93), 0.0);
+		assertEquals(StatisticsUtils.variance(slice), StatisticsUtils.variance(values, 7, 93), 0.0);
+		assertEquals(StatisticsUtils.varianceN(slice), StatisticsUtils.varianceN(values, 7, 93), 0.0);
+	}
+	
+	@Test
+	public void sumIsCompensated() {
+		double[] values = new double[] { 1e16, 1., -1e16, 1., 1., 1., 1. };
+		assertEquals(5., StatisticsUtils.sum(values, 0, values.length), 0.0);
+	}
+	
+	@Test
+	public void varianceIsStableForLargeOffsets() {
+		assertEquals(30., StatisticsUtils.variance(1e9 + 4., 1e9 + 7., 1e9 + 13., 1e9 + 16.), 0.0);
+	}
+	
+	@Test
+	public void degenerateInputs() {
+		assertTrue(Double.isNaN(StatisticsUtils.mean()));
+		assertTrue(Double.isNaN(StatisticsUtils.variance()));
+		assertEquals(0., StatisticsUtils.variance(4.), 0.0);
+		assertEquals(0., StatisticsUtils.varianceN(4.), 0.0);
+	}
+	
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void rangeIsChecked() {
+		StatisticsUtils.sum(new double[3], 2, 2);
+	}
 }